@@ -17,7 +17,12 @@ android {
     }
 
     buildTypes {
+        debug {
+            buildConfigField("boolean", "DEBUG_LOGGING", "true")
+        }
         release {
+            // Compile-time constant: DebugLog calls become no-ops in release
+            buildConfigField("boolean", "DEBUG_LOGGING", "false")
             isMinifyEnabled = false
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
@@ -25,6 +30,9 @@ android {
             )
         }
     }
+    buildFeatures {
+        buildConfig = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -45,6 +53,9 @@ dependencies {
     // Fragment support
     implementation("androidx.fragment:fragment:1.6.1")
     
+    // Lists (ListAdapter/DiffUtil, getBindingAdapterPosition)
+    implementation("androidx.recyclerview:recyclerview:1.3.2")
+    
     // SharedPreferences (comes with AppCompat)
     implementation("androidx.preference:preference:1.2.1")
     
@@ -53,6 +64,9 @@ dependencies {
     implementation("com.squareup.retrofit2:converter-gson:2.9.0")
     implementation("com.squareup.okhttp3:logging-interceptor:4.11.0")
     
+    // Background order sync
+    implementation("androidx.work:work-runtime:2.9.1")
+    
     // Animation dependencies
     implementation("com.airbnb.android:lottie:6.1.0")
     
@@ -63,4 +77,7 @@ dependencies {
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    // Local HTTP server for the catalog sync tests; matches the OkHttp version above
+    androidTestImplementation("com.squareup.okhttp3:mockwebserver:4.11.0")
+    androidTestImplementation("androidx.work:work-testing:2.9.1")
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.models.CartItem;
+import com.example.grocerystore.models.Order;
+import com.example.grocerystore.models.Product;
+import com.example.grocerystore.network.OrderSyncService;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fills a cart, checks it out as one order and uploads it, using its own
+ * database file so the cart can be reopened as a new session would.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CartCheckoutTest {
+    private static final String DATABASE_NAME = "cart_test.db";
+    private static final int USER_ID = 42;
+    private static final int LINES = 20;
+    private static final int STOCK = 10;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private final List<Integer> productIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        databaseHelper = new DatabaseHelper(context, DATABASE_NAME);
+        for (int i = 0; i < LINES; i++) {
+            productIds.add((int) databaseHelper.addProduct(new Product(0, "Cart product " + i, "Cart",
+                    1.0 + i, STOCK, "")));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void cart_survivesReopeningAndMergesRepeatedAdds() {
+        assertTrue(databaseHelper.addToCart(USER_ID, productIds.get(0), 2));
+        assertTrue(databaseHelper.addToCart(USER_ID, productIds.get(1), 1));
+        assertTrue(databaseHelper.addToCart(USER_ID, productIds.get(0), 3));
+
+        databaseHelper.close();
+        databaseHelper = new DatabaseHelper(context, DATABASE_NAME);
+
+        List<CartItem> items = databaseHelper.getCartItems(USER_ID);
+        assertEquals(2, items.size());
+        assertEquals((int) productIds.get(0), items.get(0).getProductId());
+        assertEquals(5, items.get(0).getQuantity());
+        assertEquals(6, databaseHelper.getCartItemCount(USER_ID));
+        assertTrue(databaseHelper.getCartItems(USER_ID + 1).isEmpty());
+
+        assertTrue(databaseHelper.setCartQuantity(USER_ID, productIds.get(1), 0));
+        assertEquals(5, databaseHelper.getCartItemCount(USER_ID));
+
+        // Adding can't shrink a line or start an empty one
+        assertFalse(databaseHelper.addToCart(USER_ID, productIds.get(0), -2));
+        assertFalse(databaseHelper.addToCart(USER_ID, productIds.get(2), 0));
+        assertEquals(5, databaseHelper.getCartItemCount(USER_ID));
+    }
+
+    @Test
+    public void checkout_placesEveryLineInOneOrder() {
+        for (int productId : productIds) {
+            assertTrue(databaseHelper.addToCart(USER_ID, productId, 2));
+        }
+
+        long headerId = databaseHelper.checkoutCart(USER_ID, "home", "1 Main St");
+        assertTrue("checkout returned " + headerId, headerId > 0);
+
+        List<Order> lines = databaseHelper.getUserOrders(USER_ID);
+        assertEquals(LINES, lines.size());
+        Set<String> checkoutKeys = new HashSet<>();
+        Set<String> orderKeys = new HashSet<>();
+        for (Order line : lines) {
+            checkoutKeys.add(line.getCheckoutKey());
+            orderKeys.add(line.getOrderKey());
+            assertEquals("pending", line.getStatus());
+            assertEquals("1 Main St", line.getDeliveryAddress());
+            assertEquals(STOCK - 2, databaseHelper.getProductById(line.getProductId()).getStockQuantity());
+        }
+        assertEquals(1, checkoutKeys.size());
+        assertNotNull(checkoutKeys.iterator().next());
+        assertEquals(LINES, orderKeys.size());
+        assertEquals(0, databaseHelper.getCartItemCount(USER_ID));
+    }
+
+    @Test
+    public void checkout_withOneShortLine_writesNothing() {
+        for (int productId : productIds) {
+            assertTrue(databaseHelper.addToCart(USER_ID, productId, 1));
+        }
+        // The last line asks for more than there is
+        assertTrue(databaseHelper.setCartQuantity(USER_ID, productIds.get(LINES - 1), STOCK + 1));
+
+        assertEquals(-2, databaseHelper.checkoutCart(USER_ID, "pickup", null));
+        assertTrue(databaseHelper.getUserOrders(USER_ID).isEmpty());
+        for (int productId : productIds) {
+            assertEquals(STOCK, databaseHelper.getProductById(productId).getStockQuantity());
+        }
+        assertEquals(LINES - 1 + STOCK + 1, databaseHelper.getCartItemCount(USER_ID));
+        assertEquals(-1, databaseHelper.checkoutCart(USER_ID + 1, "pickup", null));
+    }
+
+    @Test
+    public void checkout_uploadsAsOneRequestEvenAboveBatchSize() throws Exception {
+        for (int productId : productIds) {
+            assertTrue(databaseHelper.addToCart(USER_ID, productId, 1));
+        }
+        assertTrue(databaseHelper.checkoutCart(USER_ID, "pickup", null) > 0);
+
+        MockWebServer server = new MockWebServer();
+        try {
+            server.enqueue(new MockResponse().setResponseCode(201));
+            server.start();
+            String baseUrl = server.url("/").toString().replaceAll("/$", "");
+            OrderSyncService syncService = new OrderSyncService(context, databaseHelper, baseUrl);
+            syncService.setBatchSize(LINES / 2);
+
+            OrderSyncService.SyncResult result = syncService.uploadPendingOrders();
+            assertTrue(result.success);
+            assertEquals(LINES, result.syncedCount);
+            assertEquals(1, server.getRequestCount());
+            JSONArray sent = new JSONArray(OrderSyncServiceTest.gunzip(server.takeRequest().getBody()));
+            assertEquals(LINES, sent.length());
+            assertTrue(sent.getJSONObject(0).has("checkoutKey"));
+        } finally {
+            server.shutdown();
+        }
+    }
+}
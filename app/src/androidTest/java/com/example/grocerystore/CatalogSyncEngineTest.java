@@ -0,0 +1,134 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.api.ApiService;
+import com.example.grocerystore.database.CatalogChanges;
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.models.Product;
+import com.example.grocerystore.network.CatalogSyncEngine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the catalog sync against a local mock server and an in-memory
+ * database: a first full download, a 304 that changes nothing, and a second
+ * catalog that edits, drops and leaves products alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogSyncEngineTest {
+    private static final String FIRST_CATALOG = "[" +
+            "{\"id\":1,\"category\":\"Fruits\",\"name\":\"Fresh Bananas\",\"price\":1.99,\"stock\":80,\"image_url\":\"https://cdn.example.com/bananas.jpg\",\"offer\":false}," +
+            "{\"id\":2,\"category\":\"Bakery\",\"name\":\"Sourdough\",\"price\":5.5,\"stock\":10,\"image_url\":\"https://cdn.example.com/sourdough.jpg\",\"offer\":true}," +
+            "{\"id\":3,\"category\":\"Dairy\",\"name\":\"Butter\",\"price\":3.0,\"stock\":20,\"image_url\":\"https://cdn.example.com/butter.jpg\",\"offer\":false}" +
+            "]";
+    // Bananas unchanged, Sourdough repriced and off offer, Butter gone
+    private static final String SECOND_CATALOG = "[" +
+            "{\"id\":1,\"category\":\"Fruits\",\"name\":\"Fresh Bananas\",\"price\":1.99,\"stock\":80,\"image_url\":\"https://cdn.example.com/bananas.jpg\",\"offer\":false}," +
+            "{\"id\":2,\"category\":\"Bakery\",\"name\":\"Sourdough\",\"price\":4.5,\"stock\":10,\"image_url\":\"https://cdn.example.com/sourdough.jpg\",\"offer\":false}" +
+            "]";
+
+    private MockWebServer server;
+    private DatabaseHelper databaseHelper;
+    private CatalogSyncEngine engine;
+    private int seededProducts;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        ApiService apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(ApiService.class);
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        databaseHelper = new DatabaseHelper(context, null);
+        seededProducts = databaseHelper.getAllProducts().size();
+        engine = new CatalogSyncEngine(apiService, databaseHelper);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        databaseHelper.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void sync_downloadsOnlyWhenChangedAndWritesOnlyChangedRows() throws Exception {
+        server.enqueue(new MockResponse().setBody(FIRST_CATALOG).setHeader("ETag", "\"v1\""));
+        CatalogSyncEngine.Result first = engine.sync();
+        assertTrue(first.success);
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+        // Bananas take over the seeded row instead of being added twice
+        assertChanges(first.changes, 2, 1, 0, 0);
+        assertEquals(seededProducts + 2, databaseHelper.getAllProducts().size());
+        assertEquals(1.99, findProduct("Fresh Bananas").getPrice(), 0.001);
+        assertEquals(1, databaseHelper.getActiveOffers().size());
+
+        server.enqueue(new MockResponse().setResponseCode(304));
+        CatalogSyncEngine.Result second = engine.sync();
+        RecordedRequest conditional = server.takeRequest();
+        assertEquals("\"v1\"", conditional.getHeader("If-None-Match"));
+        assertTrue(second.success);
+        assertTrue(second.notModified);
+        assertEquals(0, second.changes.getChangedCount());
+
+        server.enqueue(new MockResponse().setBody(SECOND_CATALOG).setHeader("ETag", "\"v2\""));
+        CatalogSyncEngine.Result third = engine.sync();
+        assertTrue(third.success);
+        assertChanges(third.changes, 0, 1, 1, 1);
+        assertEquals(4.5, findProduct("Sourdough").getPrice(), 0.001);
+        assertFalse(findProduct("Butter").isAvailable());
+        assertEquals(0, databaseHelper.getActiveOffers().size());
+        assertEquals("\"v2\"", databaseHelper.getSyncState(DatabaseHelper.SYNC_CATALOG_ETAG));
+    }
+
+    @Test
+    public void failedRequest_keepsPreviousSyncState() throws Exception {
+        server.enqueue(new MockResponse().setBody(FIRST_CATALOG).setHeader("ETag", "\"v1\""));
+        assertTrue(engine.sync().success);
+
+        server.enqueue(new MockResponse().setResponseCode(500));
+        CatalogSyncEngine.Result failed = engine.sync();
+        assertFalse(failed.success);
+        assertEquals("\"v1\"", databaseHelper.getSyncState(DatabaseHelper.SYNC_CATALOG_ETAG));
+
+        server.enqueue(new MockResponse().setBody("not json").setHeader("ETag", "\"v2\""));
+        assertFalse(engine.sync().success);
+        assertEquals("\"v1\"", databaseHelper.getSyncState(DatabaseHelper.SYNC_CATALOG_ETAG));
+        assertEquals(seededProducts + 2, databaseHelper.getAllProducts().size());
+    }
+
+    private static void assertChanges(CatalogChanges changes, int inserted, int updated, int unchanged, int removed) {
+        assertEquals("inserted", inserted, changes.getInserted());
+        assertEquals("updated", updated, changes.getUpdated());
+        assertEquals("unchanged", unchanged, changes.getUnchanged());
+        assertEquals("removed", removed, changes.getRemoved());
+    }
+
+    private Product findProduct(String name) {
+        for (Product product : databaseHelper.getAllProducts()) {
+            if (product.getName().equals(name)) {
+                return product;
+            }
+        }
+        fail("No product named " + name);
+        return null;
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.ProductPager;
+import com.example.grocerystore.database.ProductQuery;
+import com.example.grocerystore.model.User;
+import com.example.grocerystore.models.Product;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rough timings for the catalog queries, run against an in-memory database so
+ * the app's real data is never touched. Results are logged under the
+ * "DatabaseBenchmark" tag; assertions only check the queries agree.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseBenchmarkTest {
+    private static final String TAG = "DatabaseBenchmark";
+    private static final int USER_ID = 42;
+    private static final int[] CATALOG_SIZES = {100, 1000, 5000};
+    private static final int MAPPER_ROWS = 100_000;
+    private static final int USER_ROWS = 20_000;
+    private static final int[] BULK_SIZES = {10_000, 100_000};
+    // One commit per row is too slow to time at 100k
+    private static final int PER_ROW_LIMIT = 10_000;
+    private static final String BULK_DATABASE_NAME = "bulk_benchmark.db";
+
+    private DatabaseHelper databaseHelper;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        databaseHelper = new DatabaseHelper(context, null);
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+    }
+
+    @Test
+    public void favoriteLookup_singlePassMatchesPerProductQueries() {
+        int inserted = 0;
+        for (int size : CATALOG_SIZES) {
+            for (; inserted < size; inserted++) {
+                long id = databaseHelper.addProduct(new Product(0, "Bench product " + inserted,
+                        "Bench", 1.0 + inserted, 10, ""));
+                // Favorite every tenth product
+                if (inserted % 10 == 0) {
+                    databaseHelper.addToFavorites(USER_ID, (int) id);
+                }
+            }
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            List<Product> perProduct = databaseHelper.getAllProducts();
+            for (Product product : perProduct) {
+                product.setFavorite(databaseHelper.isProductFavorite(USER_ID, product.getId()));
+            }
+            long perProductNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            List<Product> singlePass = databaseHelper.getAllProductsWithFavorites(USER_ID);
+            long singlePassNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+            Log.i(TAG, "products=" + perProduct.size()
+                    + " perProductMs=" + perProductNanos / 1_000_000
+                    + " singlePassMs=" + singlePassNanos / 1_000_000);
+
+            assertEquals(perProduct.size(), singlePass.size());
+            Map<Integer, Boolean> expected = new HashMap<>();
+            for (Product product : perProduct) {
+                expected.put(product.getId(), product.isFavorite());
+            }
+            for (Product product : singlePass) {
+                assertEquals(expected.get(product.getId()), product.isFavorite());
+            }
+        }
+    }
+
+    @Test
+    public void productPages_coverCatalogInOrderAndFirstPageStaysFast() {
+        ProductQuery query = ProductQuery.builder().build();
+        int inserted = 0;
+        for (int size : CATALOG_SIZES) {
+            for (; inserted < size; inserted++) {
+                // Repeat names so keyset paging has to break ties on id
+                databaseHelper.addProduct(new Product(0, "Bench product " + (inserted % 250),
+                        "Bench", 1.0 + inserted, 10, ""));
+            }
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            List<Product> all = databaseHelper.getAllProducts();
+            long fullLoadNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            List<Product> firstPage = databaseHelper.getProductsPage(query, USER_ID, null, 0,
+                    ProductPager.PAGE_SIZE, null);
+            long firstPageNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+            Log.i(TAG, "products=" + all.size()
+                    + " fullLoadMs=" + fullLoadNanos / 1_000_000
+                    + " firstPageMs=" + firstPageNanos / 1_000_000);
+
+            // Walking every page must visit each product exactly once
+            Set<Integer> seen = new HashSet<>();
+            List<Product> page = firstPage;
+            while (!page.isEmpty()) {
+                for (Product product : page) {
+                    assertTrue(seen.add(product.getId()));
+                }
+                Product last = page.get(page.size() - 1);
+                page = databaseHelper.getProductsPage(query, USER_ID, last, seen.size(),
+                        ProductPager.PAGE_SIZE, null);
+            }
+            assertEquals(all.size(), seen.size());
+            assertEquals(all.size(), databaseHelper.countProducts(query, null));
+        }
+    }
+
+    @Test
+    public void filteredQuery_matchesFilteringInJava() {
+        for (int i = 0; i < CATALOG_SIZES[CATALOG_SIZES.length - 1]; i++) {
+            databaseHelper.addProduct(new Product(0, "Bench product " + i,
+                    i % 2 == 0 ? "Bench" : "Other", i % 100, i % 25, ""));
+        }
+        ProductQuery query = ProductQuery.builder()
+                .category("Bench")
+                .priceBetween(10.0, 60.0)
+                .stockLevels(EnumSet.of(ProductQuery.StockLevel.LOW_STOCK, ProductQuery.StockLevel.OUT_OF_STOCK))
+                .build();
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        List<Product> inJava = new ArrayList<>();
+        for (Product product : databaseHelper.getAllProducts()) {
+            if (product.getCategory().equals("Bench")
+                    && product.getPrice() >= 10.0 && product.getPrice() <= 60.0
+                    && product.getStockQuantity() <= ProductQuery.LOW_STOCK_THRESHOLD) {
+                inJava.add(product);
+            }
+        }
+        long inJavaNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        List<Product> inSql = databaseHelper.queryProducts(query);
+        long inSqlNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, "matches=" + inSql.size()
+                + " inJavaMs=" + inJavaNanos / 1_000_000
+                + " inSqlMs=" + inSqlNanos / 1_000_000);
+
+        Set<Integer> expected = new HashSet<>();
+        for (Product product : inJava) {
+            expected.add(product.getId());
+        }
+        Set<Integer> actual = new HashSet<>();
+        for (Product product : inSql) {
+            actual.add(product.getId());
+        }
+        assertEquals(expected, actual);
+        assertEquals(inSql.size(), databaseHelper.countProducts(query, null));
+    }
+
+    @Test
+    public void rowMapper_readsLargeTableFasterThanPerRowLookups() {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < MAPPER_ROWS; i++) {
+                databaseHelper.addProduct(new Product(0, "Bench product " + i, "Bench", 1.0 + i, 10, ""));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Before: every column looked up by name on every row, as cursorToProduct used to
+        Cursor cursor = db.rawQuery("SELECT * FROM products", null);
+        List<Product> perRow = new ArrayList<>();
+        long start = SystemClock.elapsedRealtimeNanos();
+        while (cursor.moveToNext()) {
+            Product product = new Product();
+            product.setId(cursor.getInt(cursor.getColumnIndexOrThrow("id")));
+            product.setName(cursor.getString(cursor.getColumnIndexOrThrow("name")));
+            product.setCategory(cursor.getString(cursor.getColumnIndexOrThrow("category")));
+            product.setPrice(cursor.getDouble(cursor.getColumnIndexOrThrow("price")));
+            product.setStockQuantity(cursor.getInt(cursor.getColumnIndexOrThrow("stock_quantity")));
+            product.setImageUrl(cursor.getString(cursor.getColumnIndexOrThrow("image_url")));
+            product.setDescription(cursor.getString(cursor.getColumnIndexOrThrow("description")));
+            product.setAvailable(cursor.getInt(cursor.getColumnIndexOrThrow("is_available")) == 1);
+            perRow.add(product);
+        }
+        long perRowNanos = SystemClock.elapsedRealtimeNanos() - start;
+        cursor.close();
+
+        // After: indexes resolved once per cursor
+        cursor = db.rawQuery("SELECT * FROM products", null);
+        List<Product> mapped = new ArrayList<>();
+        start = SystemClock.elapsedRealtimeNanos();
+        DatabaseHelper.ProductRowMapper mapper = new DatabaseHelper.ProductRowMapper(cursor);
+        while (cursor.moveToNext()) {
+            mapped.add(mapper.map(cursor));
+        }
+        long mappedNanos = SystemClock.elapsedRealtimeNanos() - start;
+        cursor.close();
+
+        Log.i(TAG, "rows=" + mapped.size()
+                + " perRowLookupRowsPerSec=" + rowsPerSecond(perRow.size(), perRowNanos)
+                + " rowMapperRowsPerSec=" + rowsPerSecond(mapped.size(), mappedNanos));
+
+        assertEquals(perRow.size(), mapped.size());
+        for (int i = 0; i < mapped.size(); i++) {
+            assertEquals(perRow.get(i).getId(), mapped.get(i).getId());
+            assertEquals(perRow.get(i).getName(), mapped.get(i).getName());
+        }
+    }
+
+    @Test
+    public void userLookup_isCaseInsensitiveAndIndexed() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USER_ROWS; i++) {
+            users.add(new User("customer" + i + "@example.com", "First" + i, "Last" + i,
+                    "secret", "Female", "Ramallah", "+970599" + i));
+        }
+        assertEquals(USER_ROWS, databaseHelper.addUsers(users));
+
+        // Emails differing only in case are the same account
+        assertEquals(-1, databaseHelper.addUser(new User("CUSTOMER7@Example.com", "Dup", "User",
+                "secret", "Male", "Nablus", "+970599000")));
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < USER_ROWS; i += 100) {
+            User user = databaseHelper.getUserByEmail("Customer" + i + "@EXAMPLE.com");
+            assertNotNull(user);
+            assertEquals("First" + i, user.getFirstName());
+        }
+        long lookupNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, "users=" + databaseHelper.getUserCount()
+                + " lookups=" + USER_ROWS / 100
+                + " lookupMs=" + lookupNanos / 1_000_000);
+        assertEquals(USER_ROWS, databaseHelper.getUserCount());
+    }
+
+    @Test
+    public void bulkUpsert_insertsThenUpdatesInPlace() {
+        // A file database, so every commit pays for the write to storage
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(BULK_DATABASE_NAME);
+        DatabaseHelper fileHelper = new DatabaseHelper(context, BULK_DATABASE_NAME);
+        try {
+            for (int size : BULK_SIZES) {
+                fileHelper.getWritableDatabase().execSQL("DELETE FROM products");
+                List<Product> products = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    products.add(new Product(0, "Bulk product " + i, "Bulk", 1.0 + i, 10, ""));
+                }
+
+                long perRowNanos = 0;
+                if (size <= PER_ROW_LIMIT) {
+                    // Before: one addProduct, and so one transaction, per row
+                    long start = SystemClock.elapsedRealtimeNanos();
+                    for (Product product : products) {
+                        fileHelper.addProduct(product);
+                    }
+                    perRowNanos = SystemClock.elapsedRealtimeNanos() - start;
+                    fileHelper.getWritableDatabase().execSQL("DELETE FROM products");
+                }
+
+                long start = SystemClock.elapsedRealtimeNanos();
+                int inserted = fileHelper.upsertProducts(products);
+                long insertNanos = SystemClock.elapsedRealtimeNanos() - start;
+                assertEquals(size, inserted);
+
+                // Same keys again: every row is updated, none added
+                for (Product product : products) {
+                    product.setStockQuantity(3);
+                }
+                start = SystemClock.elapsedRealtimeNanos();
+                assertEquals(0, fileHelper.upsertProducts(products));
+                long updateNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+                Log.i(TAG, "bulkRows=" + size
+                        + " perRowInsertRowsPerSec=" + (perRowNanos == 0 ? "skipped" : rowsPerSecond(size, perRowNanos))
+                        + " bulkInsertRowsPerSec=" + rowsPerSecond(size, insertNanos)
+                        + " bulkUpdateRowsPerSec=" + rowsPerSecond(size, updateNanos));
+
+                ProductQuery bulk = ProductQuery.builder().category("Bulk").build();
+                assertEquals(size, fileHelper.countProducts(bulk, null));
+                ProductQuery restocked = ProductQuery.builder().category("Bulk")
+                        .stockLevels(EnumSet.of(ProductQuery.StockLevel.LOW_STOCK)).build();
+                assertEquals(size, fileHelper.countProducts(restocked, null));
+            }
+        } finally {
+            fileHelper.close();
+            context.deleteDatabase(BULK_DATABASE_NAME);
+        }
+    }
+
+    private static long rowsPerSecond(int rows, long nanos) {
+        return nanos == 0 ? 0 : rows * 1_000_000_000L / nanos;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.models.Order;
+import com.example.grocerystore.models.Product;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hammers one shared, WAL-mode DatabaseHelper from several threads at once:
+ * order placement, favorite toggling, order sync and catalog reads, and
+ * hundreds of orders and cancellations racing for the same scarce stock. Uses
+ * its own database file so the app's data is never touched.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseConcurrencyTest {
+    private static final String TAG = "DatabaseConcurrency";
+    private static final String DATABASE_NAME = "concurrency_test.db";
+    private static final int PRODUCTS = 50;
+    private static final int ORDER_WRITERS = 3;
+    private static final int ORDERS_PER_WRITER = 100;
+    private static final int FAVORITE_TOGGLES = 300;
+    private static final int READERS = 4;
+    private static final int READS_PER_READER = 100;
+    private static final int SCARCE_STOCK = 100;
+    private static final int BUYERS = 8;
+    private static final int ORDERS_PER_BUYER = 50;
+    private static final int CANCELLERS = 4;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private final List<Integer> productIds = new ArrayList<>();
+    private int catalogSize;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        databaseHelper = new DatabaseHelper(context, DATABASE_NAME);
+        for (int i = 0; i < PRODUCTS; i++) {
+            // Enough stock that no order is refused
+            productIds.add((int) databaseHelper.addProduct(new Product(0, "Stress product " + i,
+                    "Stress", 2.0 + i, 1_000_000, "")));
+        }
+        // Includes the products seeded on create
+        catalogSize = databaseHelper.getAllProducts().size();
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void concurrentReadersAndWriters_completeWithoutLockErrors() throws Exception {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger ordersPlaced = new AtomicInteger();
+        AtomicInteger ordersSynced = new AtomicInteger();
+        AtomicInteger writersDone = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        int threads = ORDER_WRITERS + 2 + READERS;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch finished = new CountDownLatch(threads);
+
+        for (int w = 0; w < ORDER_WRITERS; w++) {
+            final int userId = 100 + w;
+            pool.execute(worker(start, finished, failures, () -> {
+                try {
+                    for (int i = 0; i < ORDERS_PER_WRITER; i++) {
+                        int productId = productIds.get(i % PRODUCTS);
+                        Order order = new Order(userId, productId, "Stress product", 1, 2.0, "Pickup");
+                        long id = databaseHelper.addOrder(order);
+                        assertTrue("addOrder returned " + id, id > 0);
+                        ordersPlaced.incrementAndGet();
+                    }
+                } finally {
+                    // Let the sync loop finish even if this writer failed
+                    writersDone.incrementAndGet();
+                }
+            }));
+        }
+
+        pool.execute(worker(start, finished, failures, () -> {
+            for (int i = 0; i < FAVORITE_TOGGLES; i++) {
+                int productId = productIds.get(i % PRODUCTS);
+                if (!databaseHelper.addToFavorites(7, productId)) {
+                    databaseHelper.removeFromFavorites(7, productId);
+                }
+            }
+        }));
+
+        // Sync keeps going until every writer has finished and nothing is left
+        pool.execute(worker(start, finished, failures, () -> {
+            while (true) {
+                boolean writersFinished = writersDone.get() == ORDER_WRITERS;
+                List<Order> unsynced = databaseHelper.getUnsyncedOrders();
+                for (Order order : unsynced) {
+                    if (databaseHelper.markOrderAsSynced(order.getId())) {
+                        ordersSynced.incrementAndGet();
+                    }
+                }
+                if (writersFinished && unsynced.isEmpty()) {
+                    break;
+                }
+            }
+        }));
+
+        for (int r = 0; r < READERS; r++) {
+            pool.execute(worker(start, finished, failures, () -> {
+                for (int i = 0; i < READS_PER_READER; i++) {
+                    assertEquals(catalogSize, databaseHelper.getAllProductsWithFavorites(7).size());
+                    databaseHelper.getUserOrders(100);
+                }
+            }));
+        }
+
+        start.countDown();
+        assertTrue("workers timed out", finished.await(2, TimeUnit.MINUTES));
+        pool.shutdown();
+
+        for (Throwable failure : failures) {
+            Log.e(TAG, "Worker failed", failure);
+        }
+        assertTrue(failures.size() + " worker(s) failed; first: " + failures.peek(), failures.isEmpty());
+
+        int expectedOrders = ORDER_WRITERS * ORDERS_PER_WRITER;
+        Log.i(TAG, "ordersPlaced=" + ordersPlaced.get() + " ordersSynced=" + ordersSynced.get());
+        assertEquals(expectedOrders, ordersPlaced.get());
+        assertEquals(expectedOrders, ordersSynced.get());
+        assertEquals(expectedOrders, databaseHelper.getTotalOrdersCount());
+        assertTrue(databaseHelper.getUnsyncedOrders().isEmpty());
+    }
+
+    @Test
+    public void concurrentOrdersForScarceStock_neverOversell() throws Exception {
+        int productId = (int) databaseHelper.addProduct(new Product(0, "Scarce product", "Stress",
+                3.0, SCARCE_STOCK, ""));
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        Queue<Integer> placed = new ConcurrentLinkedQueue<>();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(BUYERS + CANCELLERS);
+        CountDownLatch finished = new CountDownLatch(BUYERS);
+
+        for (int b = 0; b < BUYERS; b++) {
+            final int userId = 200 + b;
+            pool.execute(worker(start, finished, failures, () -> {
+                for (int i = 0; i < ORDERS_PER_BUYER; i++) {
+                    long id = databaseHelper.addOrder(new Order(userId, productId, "Scarce product", 1, 3.0, "Pickup"));
+                    if (id > 0) {
+                        placed.add((int) id);
+                    } else {
+                        assertEquals(-2, id);
+                        refused.incrementAndGet();
+                    }
+                    assertTrue(databaseHelper.getProductById(productId).getStockQuantity() >= 0);
+                }
+            }));
+        }
+        // Several threads cancel the same orders at once; each must put stock back only once
+        CountDownLatch cancellersDone = new CountDownLatch(CANCELLERS);
+        for (int c = 0; c < CANCELLERS; c++) {
+            pool.execute(worker(start, cancellersDone, failures, () -> {
+                for (int i = 0; i < 20; i++) {
+                    Integer orderId = placed.peek();
+                    if (orderId != null) {
+                        assertTrue(databaseHelper.updateOrderStatus(orderId, "cancelled"));
+                    }
+                }
+            }));
+        }
+
+        start.countDown();
+        assertTrue("buyers timed out", finished.await(2, TimeUnit.MINUTES));
+        assertTrue("cancellers timed out", cancellersDone.await(1, TimeUnit.MINUTES));
+        pool.shutdown();
+        for (Throwable failure : failures) {
+            Log.e(TAG, "Worker failed", failure);
+        }
+        assertTrue(failures.size() + " worker(s) failed; first: " + failures.peek(), failures.isEmpty());
+
+        int cancelledOrders = 0;
+        for (int b = 0; b < BUYERS; b++) {
+            for (Order order : databaseHelper.getUserOrders(200 + b)) {
+                if ("cancelled".equals(order.getStatus())) {
+                    cancelledOrders++;
+                }
+            }
+        }
+        Product product = databaseHelper.getProductById(productId);
+        Log.i(TAG, "placed=" + placed.size() + " refused=" + refused.get() + " cancelled=" + cancelledOrders
+                + " stockLeft=" + product.getStockQuantity());
+        assertEquals(BUYERS * ORDERS_PER_BUYER, placed.size() + refused.get());
+        // Every unit is either in a live order or back on the shelf, never both or neither
+        assertEquals(SCARCE_STOCK, placed.size() - cancelledOrders + product.getStockQuantity());
+        assertTrue(product.getStockQuantity() >= 0);
+        assertEquals(product.getStockQuantity() > 0, product.isAvailable());
+    }
+
+    private static Runnable worker(CountDownLatch start, CountDownLatch finished,
+                                   Queue<Throwable> failures, Runnable body) {
+        return () -> {
+            try {
+                start.await();
+                body.run();
+            } catch (Throwable t) {
+                failures.add(t);
+            } finally {
+                finished.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.utils.ImageIngest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ingests a camera-sized photo and checks both renditions are WebP files no
+ * larger than their target size, with the aspect ratio kept.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageIngestTest {
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    private ImageIngest imageIngest;
+    private File source;
+    private ImageIngest.Renditions renditions;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        imageIngest = new ImageIngest(context);
+        source = new File(context.getCacheDir(), "ingest_source.jpg");
+        Bitmap photo = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        photo.eraseColor(0xFF4CAF50);
+        try (OutputStream out = new FileOutputStream(source)) {
+            assertTrue(photo.compress(Bitmap.CompressFormat.JPEG, 90, out));
+        }
+        photo.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        source.delete();
+        if (renditions != null) {
+            new File(renditions.thumbnailPath).delete();
+            new File(renditions.detailPath).delete();
+        }
+    }
+
+    @Test
+    public void ingest_writesDownsampledRenditions() throws IOException {
+        renditions = imageIngest.ingestNow(Uri.fromFile(source));
+
+        assertRendition(renditions.detailPath, ImageIngest.DETAIL_SIZE);
+        assertRendition(renditions.thumbnailPath, ImageIngest.THUMBNAIL_SIZE);
+        assertTrue(new File(renditions.thumbnailPath).length() < new File(renditions.detailPath).length());
+    }
+
+    @Test
+    public void deleteRenditions_onlyTouchesRenditionFiles() throws IOException {
+        renditions = imageIngest.ingestNow(Uri.fromFile(source));
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        ImageIngest.deleteRenditions(context, Arrays.asList(renditions.detailPath, source.getAbsolutePath(),
+                "drawable://product_apples", null));
+        assertFalse(new File(renditions.detailPath).exists());
+        assertTrue(new File(renditions.thumbnailPath).exists());
+        assertTrue(source.exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void ingest_rejectsNonImages() throws IOException {
+        try (OutputStream out = new FileOutputStream(source)) {
+            out.write("not an image".getBytes());
+        }
+        imageIngest.ingestNow(Uri.fromFile(source));
+    }
+
+    private static void assertRendition(String path, int maxEdge) {
+        assertTrue(path.endsWith(".webp"));
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+        assertEquals("image/webp", bounds.outMimeType);
+        assertEquals(maxEdge, bounds.outWidth);
+        assertEquals(maxEdge * HEIGHT / WIDTH, bounds.outHeight);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.grocerystore;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.utils.ImageSourceResolver;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * The stored imageUrl forms each resolve to the right Glide model, and a
+ * string is only looked up once.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageSourceResolverTest {
+    private ImageSourceResolver resolver;
+
+    @Before
+    public void setUp() {
+        resolver = ImageSourceResolver.getInstance(
+                InstrumentationRegistry.getInstrumentation().getTargetContext());
+    }
+
+    @Test
+    public void resolve_mapsEachFormToItsModel() {
+        assertEquals(R.drawable.product_apples, resolver.resolve("drawable://product_apples"));
+        assertEquals(R.drawable.product_apples, resolver.resolve("product_apples"));
+        assertEquals("https://example.com/apple.jpg", resolver.resolve("https://example.com/apple.jpg"));
+        assertEquals(Uri.parse("content://media/external/images/media/7"),
+                resolver.resolve("content://media/external/images/media/7"));
+        assertEquals(new File("/data/offer_images/1_thumb.webp"), resolver.resolve("/data/offer_images/1_thumb.webp"));
+
+        assertNull(resolver.resolve(null));
+        assertNull(resolver.resolve("  "));
+        assertNull(resolver.resolve("drawable://no_such_drawable"));
+    }
+
+    @Test
+    public void resolve_remembersHitsAndMisses() {
+        resolver.resolve("drawable://product_bananas");
+        resolver.resolve("drawable://still_no_such_drawable");
+        int size = resolver.size();
+
+        assertEquals(R.drawable.product_bananas, resolver.resolve("drawable://product_bananas"));
+        assertNull(resolver.resolve("drawable://still_no_such_drawable"));
+        assertEquals(size, resolver.size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.work.Configuration;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import com.example.grocerystore.network.OrderSyncScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that sync triggers coalesce instead of stacking jobs. Uses the
+ * WorkManager test harness, whose constraints are never met on their own,
+ * so no worker actually runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OrderSyncSchedulerTest {
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Configuration config = new Configuration.Builder()
+                .setMinimumLoggingLevel(Log.DEBUG)
+                .setExecutor(new SynchronousExecutor())
+                .build();
+        WorkManagerTestInitHelper.initializeTestWorkManager(context, config);
+    }
+
+    @Test
+    public void repeatedRequests_collapseIntoOnePendingSync() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            OrderSyncScheduler.requestSync(context);
+        }
+
+        List<WorkInfo> infos = WorkManager.getInstance(context)
+                .getWorkInfosForUniqueWork(OrderSyncScheduler.UNIQUE_SYNC_WORK).get();
+        assertEquals(1, infos.size());
+        assertEquals(WorkInfo.State.ENQUEUED, infos.get(0).getState());
+    }
+
+    @Test
+    public void periodicSync_isScheduledOnce() throws Exception {
+        OrderSyncScheduler.schedulePeriodicSync(context);
+        OrderSyncScheduler.schedulePeriodicSync(context);
+
+        List<WorkInfo> infos = WorkManager.getInstance(context)
+                .getWorkInfosForUniqueWork(OrderSyncScheduler.UNIQUE_PERIODIC_SYNC_WORK).get();
+        assertEquals(1, infos.size());
+    }
+}
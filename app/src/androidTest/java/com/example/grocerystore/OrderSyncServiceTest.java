@@ -0,0 +1,241 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.models.Order;
+import com.example.grocerystore.models.Product;
+import com.example.grocerystore.network.OrderSyncService;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Uploads orders in batches to a local mock server backed by an in-memory
+ * database, including a server that rejects part of a batch and one whose
+ * reply is lost after it booked the orders.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OrderSyncServiceTest {
+    private static final int ORDERS = 25;
+    private static final int BATCH_SIZE = 10;
+    // The mock server refuses orders with this quantity
+    private static final int REJECTED_QUANTITY = 2;
+
+    private MockWebServer server;
+    private DatabaseHelper databaseHelper;
+    private OrderSyncService syncService;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        databaseHelper = new DatabaseHelper(context, null);
+        int productId = (int) databaseHelper.addProduct(new Product(0, "Sync product", "Sync", 2.0, 1000, ""));
+        for (int i = 0; i < ORDERS; i++) {
+            int quantity = i % 12 == 5 ? REJECTED_QUANTITY : 1;
+            assertTrue(databaseHelper.addOrder(new Order(7, productId, "Sync product", quantity, 2.0, "Pickup")) > 0);
+        }
+
+        String baseUrl = server.url("/").toString().replaceAll("/$", "");
+        syncService = new OrderSyncService(context, databaseHelper, baseUrl);
+        syncService.setBatchSize(BATCH_SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        databaseHelper.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void uploadPendingOrders_sendsBatchesAndKeepsRejectedOrdersQueued() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                try {
+                    // Clone so the test can read the body again afterwards
+                    return partialAcceptance(new JSONArray(gunzip(request.getBody().clone())));
+                } catch (IOException | JSONException e) {
+                    return new MockResponse().setResponseCode(400);
+                }
+            }
+        });
+
+        OrderSyncService.SyncResult result = syncService.uploadPendingOrders();
+
+        assertEquals(3, server.getRequestCount());
+        for (int i = 0; i < 3; i++) {
+            RecordedRequest request = server.takeRequest();
+            assertEquals("/api/orders/sync-batch", request.getPath());
+            assertEquals("gzip", request.getHeader("Content-Encoding"));
+            int batch = new JSONArray(gunzip(request.getBody())).length();
+            assertEquals(i < 2 ? BATCH_SIZE : ORDERS - 2 * BATCH_SIZE, batch);
+        }
+        assertTrue(result.success);
+        assertEquals(ORDERS - 2, result.syncedCount);
+        List<Order> left = databaseHelper.getUnsyncedOrders();
+        assertEquals(2, left.size());
+        for (Order order : left) {
+            assertEquals(REJECTED_QUANTITY, order.getQuantity());
+        }
+    }
+
+    @Test
+    public void uploadPendingOrders_stopsAtFailedBatch() {
+        server.enqueue(new MockResponse().setBody("{\"accepted\":[]}"));
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        OrderSyncService.SyncResult result = syncService.uploadPendingOrders();
+        assertFalse(result.success);
+        assertEquals(0, result.syncedCount);
+        // The third batch is never sent once the second fails
+        assertEquals(2, server.getRequestCount());
+        assertEquals(ORDERS, databaseHelper.getUnsyncedOrders().size());
+    }
+
+    @Test
+    public void bodyWithoutAcceptedList_acknowledgesWholeBatch() {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(201));
+        }
+
+        OrderSyncService.SyncResult result = syncService.uploadPendingOrders();
+        assertTrue(result.success);
+        assertEquals(ORDERS, result.syncedCount);
+        assertTrue(databaseHelper.getUnsyncedOrders().isEmpty());
+    }
+
+    @Test
+    public void lostReply_resendsSameOrderKeysAndClearsOutboxOnceAcknowledged() throws Exception {
+        syncService.setBatchSize(ORDERS);
+        // The server gets the batch but the connection drops before it answers
+        AtomicBoolean replying = new AtomicBoolean(false);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return replying.get()
+                        ? new MockResponse().setResponseCode(200)
+                        : new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+        });
+
+        assertFalse(syncService.uploadPendingOrders().success);
+        List<Order> pending = databaseHelper.getUnsyncedOrders();
+        assertEquals(ORDERS, pending.size());
+        for (Order order : pending) {
+            assertEquals(1, databaseHelper.getOrderSyncAttempts(order.getOrderKey()));
+        }
+        int droppedRequests = server.getRequestCount();
+
+        replying.set(true);
+        OrderSyncService.SyncResult retry = syncService.uploadPendingOrders();
+        assertTrue(retry.success);
+        assertEquals(ORDERS, retry.syncedCount);
+
+        // Every request, including OkHttp's own retries, carried the same keys
+        List<String> firstKeys = orderKeys(server.takeRequest());
+        assertEquals(ORDERS, new HashSet<>(firstKeys).size());
+        for (int i = 1; i <= droppedRequests; i++) {
+            assertEquals(firstKeys, orderKeys(server.takeRequest()));
+        }
+        for (String orderKey : firstKeys) {
+            assertEquals(0, databaseHelper.getOrderSyncAttempts(orderKey));
+        }
+    }
+
+    @Test
+    public void statusPushes_useOneKeyPerChange() throws Exception {
+        assumeTrue(syncService.isNetworkAvailable());
+        int orderId = databaseHelper.getUnsyncedOrders().get(0).getId();
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200));
+        }
+
+        // Back to a status it had before: a deduplicating server must not replay the first push
+        List<String> keys = new ArrayList<>();
+        for (String status : new String[]{"approved", "pending", "approved"}) {
+            updateStatus(orderId, status);
+            RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+            assertNotNull(request);
+            assertEquals(status, new JSONObject(gunzip(request.getBody())).getString("status"));
+            keys.add(request.getHeader("Idempotency-Key"));
+        }
+        assertEquals(3, new HashSet<>(keys).size());
+        assertEquals(keys.get(2), databaseHelper.getStatusChangeKey(orderId));
+
+        // Only the latest change marks the order synced
+        assertFalse(databaseHelper.markStatusChangeSynced(orderId, keys.get(0)));
+        assertTrue(databaseHelper.markStatusChangeSynced(orderId, keys.get(2)));
+    }
+
+    private void updateStatus(int orderId, String status) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        syncService.updateOrderStatus(orderId, status, (success, message) -> {
+            assertTrue(message, success);
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static List<String> orderKeys(RecordedRequest request) throws IOException, JSONException {
+        JSONArray orders = new JSONArray(gunzip(request.getBody()));
+        List<String> keys = new ArrayList<>(orders.length());
+        for (int i = 0; i < orders.length(); i++) {
+            keys.add(orders.getJSONObject(i).getString("orderKey"));
+        }
+        return keys;
+    }
+
+    static String gunzip(Buffer body) throws IOException {
+        try (BufferedSource source = Okio.buffer(new GzipSource(body))) {
+            return source.readUtf8();
+        }
+    }
+
+    private static MockResponse partialAcceptance(JSONArray orders) throws JSONException {
+        JSONArray accepted = new JSONArray();
+        JSONArray rejected = new JSONArray();
+        for (int i = 0; i < orders.length(); i++) {
+            JSONObject order = orders.getJSONObject(i);
+            if (order.getInt("quantity") == REJECTED_QUANTITY) {
+                rejected.put(new JSONObject().put("orderKey", order.getString("orderKey")).put("error", "out of stock"));
+            } else {
+                accepted.put(order.getString("orderKey"));
+            }
+        }
+        JSONObject body = new JSONObject().put("accepted", accepted).put("rejected", rejected);
+        return new MockResponse().setBody(body.toString());
+    }
+}
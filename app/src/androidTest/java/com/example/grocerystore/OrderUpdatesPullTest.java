@@ -0,0 +1,208 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.models.Order;
+import com.example.grocerystore.models.Product;
+import com.example.grocerystore.network.OrderSyncService;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pulls order status changes from a fake server that keeps a change log and
+ * hands out the log position as its cursor ("v" + index).
+ */
+@RunWith(AndroidJUnit4.class)
+public class OrderUpdatesPullTest {
+    private static final int ORDERS = 5;
+    private static final int STOCK = 100;
+
+    private MockWebServer server;
+    private DatabaseHelper databaseHelper;
+    private OrderSyncService syncService;
+    private int productId;
+    private final List<Order> orders = new ArrayList<>();
+    private final List<Integer> orderIds = new ArrayList<>();
+    // Entries are {orderKey, status}, oldest first
+    private final List<String[]> changeLog = new ArrayList<>();
+    private volatile boolean failing;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (failing) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                try {
+                    return changesSince(request.getRequestUrl());
+                } catch (JSONException e) {
+                    return new MockResponse().setResponseCode(500);
+                }
+            }
+        });
+        server.start();
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        databaseHelper = new DatabaseHelper(context, null);
+        productId = (int) databaseHelper.addProduct(new Product(0, "Pull product", "Sync", 2.0, STOCK, ""));
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order(7, productId, "Pull product", 1, 2.0, "Pickup");
+            orderIds.add((int) databaseHelper.addOrder(order));
+            orders.add(order);
+        }
+        // Everything is on the server already
+        databaseHelper.markOrdersAsSynced(orderIds);
+
+        String baseUrl = server.url("/").toString().replaceAll("/$", "");
+        syncService = new OrderSyncService(context, databaseHelper, baseUrl);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        databaseHelper.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void pull_pagesThroughChangesThenAsksOnlyForNewOnes() throws Exception {
+        // More than one page, with a later change overriding an earlier one
+        for (int i = 0; i < OrderSyncService.UPDATES_PAGE_SIZE + 10; i++) {
+            log(orders.get(i % ORDERS), i % 2 == 0 ? "approved" : "delivered");
+        }
+        log(orders.get(0), "delivered");
+
+        assertEquals(ORDERS, syncService.fetchOrderUpdatesFromServer());
+        assertEquals(2, server.getRequestCount());
+        assertNull(server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertEquals("v" + OrderSyncService.UPDATES_PAGE_SIZE,
+                server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertEquals("v" + changeLog.size(),
+                databaseHelper.getSyncState(DatabaseHelper.SYNC_ORDER_UPDATES_TOKEN));
+        assertEquals("delivered", stored(0).getStatus());
+        assertTrue(databaseHelper.getUnsyncedOrders().isEmpty());
+
+        // Nothing new: one request, nothing written
+        assertEquals(0, syncService.fetchOrderUpdatesFromServer());
+        assertEquals("v" + changeLog.size(), server.takeRequest().getRequestUrl().queryParameter("since"));
+
+        log(orders.get(1), "cancelled");
+        assertEquals(1, syncService.fetchOrderUpdatesFromServer());
+        assertEquals("cancelled", stored(1).getStatus());
+        // A server cancellation puts the stock back
+        assertEquals(STOCK - ORDERS + 1, databaseHelper.getProductById(productId).getStockQuantity());
+    }
+
+    @Test
+    public void pull_uncancellingAnOrderTakesItsStockAgain() {
+        log(orders.get(0), "cancelled");
+        assertEquals(1, syncService.fetchOrderUpdatesFromServer());
+        assertEquals(STOCK - ORDERS + 1, databaseHelper.getProductById(productId).getStockQuantity());
+
+        log(orders.get(0), "approved");
+        assertEquals(1, syncService.fetchOrderUpdatesFromServer());
+        assertEquals("approved", stored(0).getStatus());
+        assertEquals(STOCK - ORDERS, databaseHelper.getProductById(productId).getStockQuantity());
+    }
+
+    @Test
+    public void pull_uncancellingWithoutStock_keepsServerStatusAndStopsAtZero() {
+        log(orders.get(1), "cancelled");
+        assertEquals(1, syncService.fetchOrderUpdatesFromServer());
+        // Someone else buys everything that was put back
+        int left = databaseHelper.getProductById(productId).getStockQuantity();
+        assertTrue(databaseHelper.addOrder(new Order(8, productId, "Pull product", left, 2.0, "Pickup")) > 0);
+
+        log(orders.get(1), "approved");
+        assertEquals(1, syncService.fetchOrderUpdatesFromServer());
+        assertEquals("approved", stored(1).getStatus());
+        Product product = databaseHelper.getProductById(productId);
+        assertEquals(0, product.getStockQuantity());
+        assertFalse(product.isAvailable());
+    }
+
+    @Test
+    public void pull_keepsLocalChangeThatHasNotUploadedYet() {
+        assertTrue(databaseHelper.updateOrderStatus(orderIds.get(2), "approved"));
+        log(orders.get(2), "delivered");
+
+        assertEquals(0, syncService.fetchOrderUpdatesFromServer());
+        Order stored = stored(2);
+        assertEquals("approved", stored.getStatus());
+        assertFalse(stored.isSynced());
+    }
+
+    @Test
+    public void failedPull_keepsCursor() {
+        log(orders.get(3), "approved");
+        assertEquals(1, syncService.fetchOrderUpdatesFromServer());
+        String token = databaseHelper.getSyncState(DatabaseHelper.SYNC_ORDER_UPDATES_TOKEN);
+
+        log(orders.get(4), "approved");
+        failing = true;
+        assertEquals(-1, syncService.fetchOrderUpdatesFromServer());
+        assertEquals(token, databaseHelper.getSyncState(DatabaseHelper.SYNC_ORDER_UPDATES_TOKEN));
+
+        failing = false;
+        assertEquals(1, syncService.fetchOrderUpdatesFromServer());
+        assertEquals("approved", stored(4).getStatus());
+    }
+
+    private Order stored(int index) {
+        for (Order order : databaseHelper.getUserOrders(7)) {
+            if (order.getId() == orderIds.get(index)) {
+                return order;
+            }
+        }
+        throw new AssertionError("Order " + orderIds.get(index) + " not found");
+    }
+
+    private void log(Order order, String status) {
+        synchronized (changeLog) {
+            changeLog.add(new String[]{order.getOrderKey(), status});
+        }
+    }
+
+    private MockResponse changesSince(HttpUrl url) throws JSONException {
+        String since = url.queryParameter("since");
+        int from = since == null ? 0 : Integer.parseInt(since.substring(1));
+        int limit = Integer.parseInt(url.queryParameter("limit"));
+        JSONArray updates = new JSONArray();
+        int to;
+        synchronized (changeLog) {
+            to = Math.min(from + limit, changeLog.size());
+            for (int i = from; i < to; i++) {
+                String[] change = changeLog.get(i);
+                updates.put(new JSONObject().put("orderKey", change[0]).put("status", change[1]));
+            }
+            JSONObject body = new JSONObject()
+                    .put("updates", updates)
+                    .put("nextToken", "v" + to)
+                    .put("hasMore", to < changeLog.size());
+            return new MockResponse().setBody(body.toString());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.ProductQuery;
+import com.example.grocerystore.models.Order;
+import com.example.grocerystore.models.Product;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stock holds taken while the order dialog is open: they shrink what others
+ * can order or reserve, the holder's order consumes them, and expired ones
+ * stop counting and get swept.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StockReservationTest {
+    private static final String DATABASE_NAME = "reservation_test.db";
+    private static final long TTL = DatabaseHelper.DEFAULT_RESERVATION_TTL_MS;
+    private static final int STOCK = 5;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private int productId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        databaseHelper = new DatabaseHelper(context, DATABASE_NAME);
+        productId = (int) databaseHelper.addProduct(new Product(0, "Held product", "Hold", 4.0, STOCK, ""));
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void holds_blockOtherShoppersUntilTheHolderOrders() {
+        long hold = databaseHelper.reserveStock(1, productId, 4, TTL);
+        assertTrue(hold > 0);
+        assertEquals(1, databaseHelper.getAvailableStock(productId));
+        assertEquals(-2, databaseHelper.reserveStock(2, productId, 2, TTL));
+        assertEquals(-1, databaseHelper.reserveStock(2, productId + 1000, 1, TTL));
+
+        // Someone else can take only what isn't held
+        assertEquals(-2, databaseHelper.addOrder(order(2, 2)));
+        assertTrue(databaseHelper.addOrder(order(2, 1)) > 0);
+
+        // The holder's order uses the hold
+        assertTrue(databaseHelper.addOrder(order(1, 4), hold) > 0);
+        assertEquals(0, databaseHelper.getProductById(productId).getStockQuantity());
+        assertEquals(0, databaseHelper.getAvailableStock(productId));
+        assertFalse(databaseHelper.releaseReservation(hold));
+    }
+
+    @Test
+    public void orders_cannotConsumeSomeoneElsesHold() {
+        long hold = databaseHelper.reserveStock(1, productId, 4, TTL);
+        assertTrue(hold > 0);
+
+        // Another shopper quoting the id gets only free stock, and the hold stays
+        assertEquals(-2, databaseHelper.addOrder(order(2, 2), hold));
+        assertTrue(databaseHelper.addOrder(order(2, 1), hold) > 0);
+        assertEquals(0, databaseHelper.getAvailableStock(productId));
+        assertTrue(databaseHelper.addOrder(order(1, 4), hold) > 0);
+    }
+
+    @Test
+    public void orders_withNonPositiveQuantity_areRejectedWithoutTouchingStock() {
+        assertEquals(-3, databaseHelper.addOrder(order(1, 0)));
+        assertEquals(-3, databaseHelper.addOrder(order(1, -3)));
+        assertEquals(STOCK, databaseHelper.getProductById(productId).getStockQuantity());
+        assertTrue(databaseHelper.getUserOrders(1).isEmpty());
+    }
+
+    @Test
+    public void holds_withNonPositiveQuantity_areRejected() {
+        assertEquals(-3, databaseHelper.reserveStock(1, productId, 0, TTL));
+        assertEquals(-3, databaseHelper.reserveStock(1, productId, -2, TTL));
+        long hold = databaseHelper.reserveStock(1, productId, 2, TTL);
+        try {
+            databaseHelper.updateReservation(hold, -1, TTL);
+            fail("Negative hold accepted");
+        } catch (IllegalArgumentException expected) {
+            // The hold is left as it was
+        }
+        assertEquals(STOCK - 2, databaseHelper.getAvailableStock(productId));
+    }
+
+    @Test
+    public void updateReservation_growsOnlyIntoFreeStock() {
+        long mine = databaseHelper.reserveStock(1, productId, 1, TTL);
+        assertTrue(databaseHelper.reserveStock(2, productId, 2, TTL) > 0);
+
+        assertTrue(databaseHelper.updateReservation(mine, 3, TTL));
+        assertEquals(0, databaseHelper.getAvailableStock(productId));
+        assertFalse(databaseHelper.updateReservation(mine, 4, TTL));
+        assertTrue(databaseHelper.updateReservation(mine, 2, TTL));
+        assertEquals(1, databaseHelper.getAvailableStock(productId));
+
+        assertTrue(databaseHelper.releaseReservation(mine));
+        assertEquals(STOCK - 2, databaseHelper.getAvailableStock(productId));
+    }
+
+    @Test
+    public void productLists_showStockLessHolds() {
+        assertTrue(databaseHelper.reserveStock(1, productId, 3, TTL) > 0);
+        for (Product product : databaseHelper.getAllProductsWithFavorites(9)) {
+            if (product.getId() == productId) {
+                assertEquals(STOCK, product.getStockQuantity());
+                assertEquals(STOCK - 3, product.getAvailableQuantity());
+                return;
+            }
+        }
+        fail("Held product not listed");
+    }
+
+    @Test
+    public void stockFilters_countOnlyUnheldStock() {
+        assertTrue(databaseHelper.reserveStock(1, productId, STOCK, TTL) > 0);
+        assertTrue(stockLevel(ProductQuery.StockLevel.LOW_STOCK).isEmpty());
+        assertEquals(1, stockLevel(ProductQuery.StockLevel.OUT_OF_STOCK).size());
+    }
+
+    @Test
+    public void expiredHolds_stopCountingAndAreSweptInBatches() {
+        for (int i = 0; i < 25; i++) {
+            // Already expired when written
+            assertTrue(databaseHelper.reserveStock(i, productId, 1, -1) > 0);
+        }
+        long live = databaseHelper.reserveStock(99, productId, 2, TTL);
+        assertEquals(STOCK - 2, databaseHelper.getAvailableStock(productId));
+
+        assertEquals(25, databaseHelper.expireReservations(10));
+        assertEquals(0, databaseHelper.expireReservations(10));
+        assertTrue(databaseHelper.releaseReservation(live));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expireReservations_rejectsEmptyBatches() {
+        databaseHelper.expireReservations(0);
+    }
+
+    @Test
+    public void concurrentReservations_neverHoldMoreThanStock() throws Exception {
+        int shoppers = 40;
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(shoppers);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < shoppers; i++) {
+            final int userId = i;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    long id = databaseHelper.reserveStock(userId, productId, 1, TTL);
+                    (id > 0 ? held : refused).incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(finished.await(1, TimeUnit.MINUTES));
+        pool.shutdown();
+
+        assertEquals(STOCK, held.get());
+        assertEquals(shoppers - STOCK, refused.get());
+        assertEquals(0, databaseHelper.getAvailableStock(productId));
+    }
+
+    private Order order(int userId, int quantity) {
+        return new Order(userId, productId, "Held product", quantity, 4.0, "Pickup");
+    }
+
+    private List<Product> stockLevel(ProductQuery.StockLevel level) {
+        return databaseHelper.queryProducts(ProductQuery.builder()
+                .category("Hold")
+                .stockLevels(EnumSet.of(level))
+                .build());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.grocerystore;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.models.Order;
+import com.example.grocerystore.models.Product;
+import com.example.grocerystore.network.OrderSyncService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bytes on the wire and wall time for an order upload against a local mock
+ * server: one order per request (the old protocol's shape) against full
+ * batches, both over the shared pooled client. Results are logged under the
+ * "SyncNetworkBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncNetworkBenchmarkTest {
+    private static final String TAG = "SyncNetworkBenchmark";
+    private static final int ORDERS = 500;
+
+    private MockWebServer server;
+    private DatabaseHelper databaseHelper;
+    private OrderSyncService syncService;
+    private long bytesSent;
+    private long uncompressedBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        // Every batch is acknowledged whole; tallies what was sent
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                synchronized (SyncNetworkBenchmarkTest.this) {
+                    bytesSent += request.getBodySize();
+                    try {
+                        uncompressedBytes += OrderSyncServiceTest.gunzip(request.getBody()).length();
+                    } catch (IOException e) {
+                        return new MockResponse().setResponseCode(400);
+                    }
+                }
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        server.start();
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        databaseHelper = new DatabaseHelper(context, null);
+        String baseUrl = server.url("/").toString().replaceAll("/$", "");
+        syncService = new OrderSyncService(context, databaseHelper, baseUrl);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        databaseHelper.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void batchedUpload_sendsFewerRequestsAndBytes() {
+        long perOrderNanos = upload(1);
+        long perOrderBytes = bytesSent;
+        int perOrderRequests = server.getRequestCount();
+
+        long batchedNanos = upload(OrderSyncService.DEFAULT_BATCH_SIZE);
+        long batchedBytes = bytesSent - perOrderBytes;
+        int batchedRequests = server.getRequestCount() - perOrderRequests;
+
+        Log.i(TAG, "orders=" + ORDERS
+                + " perOrderRequests=" + perOrderRequests
+                + " perOrderBytes=" + perOrderBytes
+                + " perOrderMs=" + perOrderNanos / 1_000_000
+                + " batchedRequests=" + batchedRequests
+                + " batchedBytes=" + batchedBytes
+                + " batchedMs=" + batchedNanos / 1_000_000
+                + " uncompressedBytesBothRuns=" + uncompressedBytes);
+
+        assertEquals(ORDERS, perOrderRequests);
+        assertEquals(ORDERS / OrderSyncService.DEFAULT_BATCH_SIZE, batchedRequests);
+        assertTrue(batchedBytes < perOrderBytes);
+    }
+
+    // Places ORDERS fresh orders and times uploading them with the given batch size
+    private long upload(int batchSize) {
+        int productId = (int) databaseHelper.addProduct(new Product(0, "Network product", "Sync", 2.0, 1_000_000, ""));
+        for (int i = 0; i < ORDERS; i++) {
+            databaseHelper.addOrder(new Order(7, productId, "Network product", 1 + i % 3, 2.0, "Pickup"));
+        }
+        syncService.setBatchSize(batchSize);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        OrderSyncService.SyncResult result = syncService.uploadPendingOrders();
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        assertTrue(result.success);
+        assertEquals(ORDERS, result.syncedCount);
+        return nanos;
+    }
+}
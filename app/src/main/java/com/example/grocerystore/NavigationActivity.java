@@ -21,6 +21,8 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
+import com.example.grocerystore.database.GroceryRepository;
+import com.example.grocerystore.database.ReservationSweepWorker;
 import com.example.grocerystore.fragments.ContactUsFragment;
 import com.example.grocerystore.fragments.HomeFragment;
 import com.example.grocerystore.fragments.MyFavoritesFragment;
@@ -36,6 +38,7 @@ import com.example.grocerystore.fragments.ManageOrdersFragment;
 import com.example.grocerystore.fragments.AddAdminFragment;
 import com.example.grocerystore.fragments.AddSpecialOfferFragment;
 import com.example.grocerystore.model.User;
+import com.example.grocerystore.network.OrderSyncScheduler;
 import com.example.grocerystore.utils.PreferencesManager;
 import com.example.grocerystore.utils.UserManager;
 import com.google.android.material.navigation.NavigationView;
@@ -60,13 +63,14 @@ public class NavigationActivity extends AppCompatActivity implements NavigationV
         preferencesManager = new PreferencesManager(this);
         userManager = new UserManager(this);
         
-        // Initialize database with real products if empty
-        com.example.grocerystore.database.DatabaseHelper databaseHelper = 
-            new com.example.grocerystore.database.DatabaseHelper(this);
-        databaseHelper.initializeRealProductsIfEmpty();
-        
-        // For testing: uncomment this line to force reset database with your images
-        // databaseHelper.forceResetForTesting();
+        // Initialize database with real products if empty. Catalog reads wait
+        // for this too, so the first products page never sees an unseeded install.
+        GroceryRepository.getInstance(this).seedCatalog();
+
+        // Drain anything left unsynced, and keep a periodic catch-up scheduled
+        OrderSyncScheduler.requestSync(this);
+        OrderSyncScheduler.schedulePeriodicSync(this);
+        ReservationSweepWorker.schedule(this);
 
         // Initialize views
         initializeViews();
@@ -9,6 +9,7 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grocerystore.R;
@@ -17,9 +18,8 @@ import com.example.grocerystore.models.Offer;
 import java.util.ArrayList;
 import java.util.List;
 
-public class AdminOffersAdapter extends RecyclerView.Adapter<AdminOffersAdapter.OfferViewHolder> {
+public class AdminOffersAdapter extends ListAdapter<Offer, AdminOffersAdapter.OfferViewHolder> {
 
-    private List<Offer> offers = new ArrayList<>();
     private OnOfferActionListener listener;
 
     public interface OnOfferActionListener {
@@ -30,7 +30,9 @@ public class AdminOffersAdapter extends RecyclerView.Adapter<AdminOffersAdapter.
     }
 
     public AdminOffersAdapter(OnOfferActionListener listener) {
+        super(DiffCallbacks.OFFERS);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -43,19 +45,26 @@ public class AdminOffersAdapter extends RecyclerView.Adapter<AdminOffersAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull OfferViewHolder holder, int position) {
-        Offer offer = offers.get(position);
+        Offer offer = getItem(position);
         holder.bind(offer);
     }
 
     @Override
-    public int getItemCount() {
-        return offers.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     public void updateOffers(List<Offer> newOffers) {
-        this.offers.clear();
-        this.offers.addAll(newOffers);
-        notifyDataSetChanged();
+        // Copy so later edits to the caller's list can't race the background diff
+        submitList(new ArrayList<>(newOffers));
+    }
+
+    // For offers edited in place: the diff can't see the change, so rebind that row directly
+    public void notifyOfferChanged(Offer offer) {
+        int position = getCurrentList().indexOf(offer);
+        if (position != RecyclerView.NO_POSITION) {
+            notifyItemChanged(position);
+        }
     }
 
     class OfferViewHolder extends RecyclerView.ViewHolder {
@@ -7,6 +7,7 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grocerystore.R;
@@ -15,9 +16,8 @@ import com.example.grocerystore.models.Order;
 import java.util.ArrayList;
 import java.util.List;
 
-public class AdminOrdersAdapter extends RecyclerView.Adapter<AdminOrdersAdapter.OrderViewHolder> {
+public class AdminOrdersAdapter extends ListAdapter<Order, AdminOrdersAdapter.OrderViewHolder> {
 
-    private List<Order> orders = new ArrayList<>();
     private OnOrderActionListener listener;
 
     public interface OnOrderActionListener {
@@ -27,7 +27,9 @@ public class AdminOrdersAdapter extends RecyclerView.Adapter<AdminOrdersAdapter.
     }
 
     public AdminOrdersAdapter(OnOrderActionListener listener) {
+        super(DiffCallbacks.ORDERS);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -40,19 +42,18 @@ public class AdminOrdersAdapter extends RecyclerView.Adapter<AdminOrdersAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull OrderViewHolder holder, int position) {
-        Order order = orders.get(position);
+        Order order = getItem(position);
         holder.bind(order);
     }
 
     @Override
-    public int getItemCount() {
-        return orders.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     public void updateOrders(List<Order> newOrders) {
-        this.orders.clear();
-        this.orders.addAll(newOrders);
-        notifyDataSetChanged();
+        // Copy so later edits to the caller's list can't race the background diff
+        submitList(new ArrayList<>(newOrders));
     }
 
     class OrderViewHolder extends RecyclerView.ViewHolder {
@@ -1,5 +1,6 @@
 package com.example.grocerystore.adapters;
 
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,17 +9,28 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestOptions;
 import com.example.grocerystore.R;
 import com.example.grocerystore.models.Product;
+import com.example.grocerystore.utils.DebugLog;
+import com.example.grocerystore.utils.ImageSourceResolver;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class AdminProductsAdapter extends RecyclerView.Adapter<AdminProductsAdapter.ProductViewHolder> {
+public class AdminProductsAdapter extends ListAdapter<Product, AdminProductsAdapter.ProductViewHolder> {
+    private static final RequestOptions IMAGE_OPTIONS = new RequestOptions()
+            .placeholder(R.drawable.placeholder_image)
+            .error(R.drawable.placeholder_image)
+            .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
+            .centerCrop();
 
-    private List<Product> products = new ArrayList<>();
     private OnProductActionListener listener;
 
     public interface OnProductActionListener {
@@ -28,7 +40,9 @@ public class AdminProductsAdapter extends RecyclerView.Adapter<AdminProductsAdap
     }
 
     public AdminProductsAdapter(OnProductActionListener listener) {
+        super(DiffCallbacks.PRODUCTS);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -41,19 +55,18 @@ public class AdminProductsAdapter extends RecyclerView.Adapter<AdminProductsAdap
 
     @Override
     public void onBindViewHolder(@NonNull ProductViewHolder holder, int position) {
-        Product product = products.get(position);
+        Product product = getItem(position);
         holder.bind(product);
     }
 
     @Override
-    public int getItemCount() {
-        return products.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     public void updateProducts(List<Product> newProducts) {
-        this.products.clear();
-        this.products.addAll(newProducts);
-        notifyDataSetChanged();
+        // Copy so later edits to the caller's list can't race the background diff
+        submitList(new ArrayList<>(newProducts));
     }
 
     class ProductViewHolder extends RecyclerView.ViewHolder {
@@ -81,30 +94,16 @@ public class AdminProductsAdapter extends RecyclerView.Adapter<AdminProductsAdap
             categoryText.setText(product.getCategory());
             priceText.setText("$" + String.format("%.2f", product.getPrice()));
 
-            // Load product image using Glide (same logic as ProductAdapter)
-            if (product.getImageUrl() != null && !product.getImageUrl().isEmpty()) {
-                android.util.Log.d("AdminProductsAdapter", "Loading image for " + product.getName() + ": " + product.getImageUrl());
-                
-                // Check if it's a local drawable or URL
-                if (product.getImageUrl().startsWith("drawable://")) {
-                    // Load from local drawable folder
-                    String drawableName = product.getImageUrl().replace("drawable://", "");
-                    android.util.Log.d("AdminProductsAdapter", "Looking for local drawable: " + drawableName);
-                    int resourceId = itemView.getContext().getResources().getIdentifier(drawableName, "drawable", itemView.getContext().getPackageName());
-                    android.util.Log.d("AdminProductsAdapter", "Resource ID found: " + resourceId);
-                    if (resourceId != 0) {
-                        productImage.setImageResource(resourceId);
-                    } else {
-                        android.util.Log.e("AdminProductsAdapter", "Failed to find drawable: " + drawableName);
-                        productImage.setImageResource(R.drawable.placeholder_image);
-                    }
-                } else {
-                    // For URL images, we would use Glide here, but for now use placeholder
-                    android.util.Log.d("AdminProductsAdapter", "URL image not supported in admin adapter yet");
-                    productImage.setImageResource(R.drawable.placeholder_image);
-                }
+            // Load product image; the resolver maps the stored string to a Glide model once
+            if (DebugLog.ENABLED) {
+                DebugLog.d("AdminProductsAdapter", () -> "Loading image for " + product.getName() + ": " + product.getImageUrl());
+            }
+            RequestBuilder<Drawable> request = ImageSourceResolver.getInstance(itemView.getContext())
+                    .load(Glide.with(itemView), product.getImageUrl());
+            if (request != null) {
+                request.apply(IMAGE_OPTIONS).into(productImage);
             } else {
-                android.util.Log.d("AdminProductsAdapter", "No image URL for product: " + product.getName());
+                Glide.with(itemView).clear(productImage);
                 productImage.setImageResource(R.drawable.placeholder_image);
             }
 
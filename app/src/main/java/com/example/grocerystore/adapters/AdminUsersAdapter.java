@@ -7,6 +7,7 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grocerystore.R;
@@ -15,9 +16,8 @@ import com.example.grocerystore.model.User;
 import java.util.ArrayList;
 import java.util.List;
 
-public class AdminUsersAdapter extends RecyclerView.Adapter<AdminUsersAdapter.UserViewHolder> {
+public class AdminUsersAdapter extends ListAdapter<User, AdminUsersAdapter.UserViewHolder> {
 
-    private List<User> users = new ArrayList<>();
     private OnUserActionListener listener;
 
     public interface OnUserActionListener {
@@ -27,7 +27,9 @@ public class AdminUsersAdapter extends RecyclerView.Adapter<AdminUsersAdapter.Us
     }
 
     public AdminUsersAdapter(OnUserActionListener listener) {
+        super(DiffCallbacks.USERS);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -40,19 +42,18 @@ public class AdminUsersAdapter extends RecyclerView.Adapter<AdminUsersAdapter.Us
 
     @Override
     public void onBindViewHolder(@NonNull UserViewHolder holder, int position) {
-        User user = users.get(position);
+        User user = getItem(position);
         holder.bind(user);
     }
 
     @Override
-    public int getItemCount() {
-        return users.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     public void updateUsers(List<User> newUsers) {
-        this.users.clear();
-        this.users.addAll(newUsers);
-        notifyDataSetChanged();
+        // Copy so later edits to the caller's list can't race the background diff
+        submitList(new ArrayList<>(newUsers));
     }
 
     class UserViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,102 @@
+package com.example.grocerystore.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.example.grocerystore.model.User;
+import com.example.grocerystore.models.Offer;
+import com.example.grocerystore.models.Order;
+import com.example.grocerystore.models.Product;
+
+import java.util.Objects;
+
+/**
+ * DiffUtil callbacks shared by the list adapters. Items are matched by id and
+ * compared on the fields their rows display, so a reload only rebinds rows
+ * that actually changed.
+ */
+final class DiffCallbacks {
+
+    private DiffCallbacks() {}
+
+    static final DiffUtil.ItemCallback<Product> PRODUCTS = new DiffUtil.ItemCallback<Product>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Product oldItem, @NonNull Product newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Product oldItem, @NonNull Product newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getCategory(), newItem.getCategory())
+                    && oldItem.getPrice() == newItem.getPrice()
+                    && oldItem.getStockQuantity() == newItem.getStockQuantity()
+                    && oldItem.getReservedQuantity() == newItem.getReservedQuantity()
+                    && Objects.equals(oldItem.getImageUrl(), newItem.getImageUrl())
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription())
+                    && oldItem.isAvailable() == newItem.isAvailable()
+                    && oldItem.isFavorite() == newItem.isFavorite();
+        }
+    };
+
+    static final DiffUtil.ItemCallback<Order> ORDERS = new DiffUtil.ItemCallback<Order>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Order oldItem, @NonNull Order newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Order oldItem, @NonNull Order newItem) {
+            return oldItem.getUserId() == newItem.getUserId()
+                    && Objects.equals(oldItem.getProductName(), newItem.getProductName())
+                    && oldItem.getQuantity() == newItem.getQuantity()
+                    && oldItem.getTotalPrice() == newItem.getTotalPrice()
+                    && Objects.equals(oldItem.getDeliveryMethod(), newItem.getDeliveryMethod())
+                    && Objects.equals(oldItem.getStatus(), newItem.getStatus())
+                    && Objects.equals(oldItem.getOrderDate(), newItem.getOrderDate())
+                    && Objects.equals(oldItem.getDeliveryAddress(), newItem.getDeliveryAddress())
+                    && oldItem.isSynced() == newItem.isSynced();
+        }
+    };
+
+    static final DiffUtil.ItemCallback<Offer> OFFERS = new DiffUtil.ItemCallback<Offer>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Offer oldItem, @NonNull Offer newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Offer oldItem, @NonNull Offer newItem) {
+            return Objects.equals(oldItem.getProductName(), newItem.getProductName())
+                    && Objects.equals(oldItem.getCategory(), newItem.getCategory())
+                    && oldItem.getOriginalPrice() == newItem.getOriginalPrice()
+                    && oldItem.getDiscountedPrice() == newItem.getDiscountedPrice()
+                    && oldItem.getStockQuantity() == newItem.getStockQuantity()
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription())
+                    && Objects.equals(oldItem.getImageUrl(), newItem.getImageUrl())
+                    && Objects.equals(oldItem.getImagePath(), newItem.getImagePath())
+                    && Objects.equals(oldItem.getThumbnailPath(), newItem.getThumbnailPath())
+                    && oldItem.isActive() == newItem.isActive()
+                    && oldItem.getExpiresAt() == newItem.getExpiresAt();
+        }
+    };
+
+    // Users are keyed by their row id, so a changed email is an edit, not a new user
+    static final DiffUtil.ItemCallback<User> USERS = new DiffUtil.ItemCallback<User>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull User oldItem, @NonNull User newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull User oldItem, @NonNull User newItem) {
+            return Objects.equals(oldItem.getEmail(), newItem.getEmail())
+                    && Objects.equals(oldItem.getFirstName(), newItem.getFirstName())
+                    && Objects.equals(oldItem.getLastName(), newItem.getLastName())
+                    && Objects.equals(oldItem.getGender(), newItem.getGender())
+                    && Objects.equals(oldItem.getCity(), newItem.getCity())
+                    && Objects.equals(oldItem.getPhoneNumber(), newItem.getPhoneNumber())
+                    && Objects.equals(oldItem.getRole(), newItem.getRole());
+        }
+    };
+}
@@ -3,6 +3,7 @@ package com.example.grocerystore.adapters;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,19 +14,31 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestOptions;
 import com.example.grocerystore.R;
 import com.example.grocerystore.models.Product;
+import com.example.grocerystore.utils.DebugLog;
+import com.example.grocerystore.utils.ImageSourceResolver;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
 
+import java.util.ArrayList;
 import java.util.List;
 
-public class EnhancedFavoritesAdapter extends RecyclerView.Adapter<EnhancedFavoritesAdapter.FavoriteViewHolder> {
+public class EnhancedFavoritesAdapter extends ListAdapter<Product, EnhancedFavoritesAdapter.FavoriteViewHolder> {
+    private static final RequestOptions IMAGE_OPTIONS = new RequestOptions()
+            .placeholder(R.drawable.placeholder_image)
+            .error(R.drawable.placeholder_image)
+            .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
+            .centerCrop();
     
     private Context context;
-    private List<Product> favoriteProducts;
     private OnFavoriteActionListener listener;
     
     public interface OnFavoriteActionListener {
@@ -34,8 +47,10 @@ public class EnhancedFavoritesAdapter extends RecyclerView.Adapter<EnhancedFavor
     }
     
     public EnhancedFavoritesAdapter(Context context, List<Product> favoriteProducts) {
+        super(DiffCallbacks.PRODUCTS);
         this.context = context;
-        this.favoriteProducts = favoriteProducts;
+        setHasStableIds(true);
+        submitList(new ArrayList<>(favoriteProducts));
     }
     
     public void setOnFavoriteActionListener(OnFavoriteActionListener listener) {
@@ -51,15 +66,15 @@ public class EnhancedFavoritesAdapter extends RecyclerView.Adapter<EnhancedFavor
     
     @Override
     public void onBindViewHolder(@NonNull FavoriteViewHolder holder, int position) {
-        Product product = favoriteProducts.get(position);
+        Product product = getItem(position);
         
         holder.productName.setText(product.getName());
         holder.productPrice.setText(product.getFormattedPrice());
         holder.productCategory.setText(product.getCategory());
         
         // Set stock status
-        if (product.getStockQuantity() > 0) {
-            holder.stockStatus.setText("In Stock (" + product.getStockQuantity() + ")");
+        if (product.getAvailableQuantity() > 0) {
+            holder.stockStatus.setText("In Stock (" + product.getAvailableQuantity() + ")");
             holder.stockStatus.setTextColor(context.getResources().getColor(R.color.primary_green));
             holder.orderButton.setEnabled(true);
             holder.orderButton.setAlpha(1.0f);
@@ -70,64 +85,33 @@ public class EnhancedFavoritesAdapter extends RecyclerView.Adapter<EnhancedFavor
             holder.orderButton.setAlpha(0.5f);
         }
         
-        // Set product image - improved image loading with better debugging
-        android.util.Log.d("EnhancedFavoritesAdapter", "=== LOADING IMAGE FOR FAVORITE ===");
-        android.util.Log.d("EnhancedFavoritesAdapter", "Product: " + product.getName());
-        android.util.Log.d("EnhancedFavoritesAdapter", "Image URL: " + product.getImageUrl());
-        android.util.Log.d("EnhancedFavoritesAdapter", "Category: " + product.getCategory());
-        
-        boolean imageLoaded = false;
-        
-        if (product.getImageUrl() != null && !product.getImageUrl().trim().isEmpty()) {
-            String imageUrl = product.getImageUrl().trim();
-            
-            // Check if it's a local drawable
-            if (imageUrl.startsWith("drawable://")) {
-                String drawableName = imageUrl.replace("drawable://", "");
-                android.util.Log.d("EnhancedFavoritesAdapter", "Looking for drawable: " + drawableName);
-                
-                int resourceId = context.getResources().getIdentifier(drawableName, "drawable", context.getPackageName());
-                android.util.Log.d("EnhancedFavoritesAdapter", "Resource ID: " + resourceId);
-                
-                if (resourceId != 0) {
-                    holder.productImage.setImageResource(resourceId);
-                    imageLoaded = true;
-                    android.util.Log.d("EnhancedFavoritesAdapter", "✅ Successfully loaded drawable: " + drawableName);
-                } else {
-                    android.util.Log.e("EnhancedFavoritesAdapter", "❌ Drawable not found: " + drawableName);
-                }
-            } else {
-                // Try to treat as direct resource name
-                android.util.Log.d("EnhancedFavoritesAdapter", "Trying as direct resource name: " + imageUrl);
-                int resourceId = context.getResources().getIdentifier(imageUrl, "drawable", context.getPackageName());
-                if (resourceId != 0) {
-                    holder.productImage.setImageResource(resourceId);
-                    imageLoaded = true;
-                    android.util.Log.d("EnhancedFavoritesAdapter", "✅ Successfully loaded direct resource: " + imageUrl);
-                } else {
-                    android.util.Log.e("EnhancedFavoritesAdapter", "❌ Direct resource not found: " + imageUrl);
-                }
-            }
+        // Set product image; the resolver maps the stored string to a Glide model once
+        if (DebugLog.ENABLED) {
+            DebugLog.d("EnhancedFavoritesAdapter", () -> "Loading image for favorite " + product.getName() + ": " + product.getImageUrl());
         }
-        
-        // If no image was loaded, use category-based fallback
-        if (!imageLoaded) {
-            android.util.Log.d("EnhancedFavoritesAdapter", "Using category-based fallback for: " + product.getCategory());
+        RequestBuilder<Drawable> request = ImageSourceResolver.getInstance(context)
+                .load(Glide.with(context), product.getImageUrl());
+        if (request != null) {
+            request.apply(IMAGE_OPTIONS).into(holder.productImage);
+        } else {
+            // No usable image, use category-based fallback
+            if (DebugLog.ENABLED) {
+                DebugLog.d("EnhancedFavoritesAdapter", () -> "Using category-based fallback for: " + product.getCategory());
+            }
+            Glide.with(context).clear(holder.productImage);
             setProductImage(holder.productImage, product.getCategory());
         }
         
-        android.util.Log.d("EnhancedFavoritesAdapter", "=== END IMAGE LOADING ===");
-        
         // Set up click listeners with animations
         holder.favoriteButton.setOnClickListener(v -> {
             animateHeartBreak(holder.favoriteButton);
             if (listener != null) {
-                listener.onRemoveFromFavorites(product, position);
+                listener.onRemoveFromFavorites(product, holder.getBindingAdapterPosition());
             }
         });
         
         holder.orderButton.setOnClickListener(v -> {
-            if (product.getStockQuantity() > 0) {
+            if (product.getAvailableQuantity() > 0) {
                 animateOrderButton(holder.orderButton);
                 if (listener != null) {
                     listener.onOrderProduct(product);
@@ -143,32 +127,40 @@ public class EnhancedFavoritesAdapter extends RecyclerView.Adapter<EnhancedFavor
     }
     
     @Override
-    public int getItemCount() {
-        return favoriteProducts.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
     
     public Product getProduct(int position) {
-        return favoriteProducts.get(position);
+        return getItem(position);
+    }
+    
+    public void updateFavorites(List<Product> newFavorites) {
+        submitList(new ArrayList<>(newFavorites));
     }
     
-    public void removeItem(int position) {
-        if (position >= 0 && position < favoriteProducts.size()) {
-            favoriteProducts.remove(position);
-            notifyItemRemoved(position);
-            notifyItemRangeChanged(position, getItemCount());
+    // The diff runs in the background, so item counts are only current once onRemoved runs
+    public void removeItem(int position, Runnable onRemoved) {
+        List<Product> current = getCurrentList();
+        if (position >= 0 && position < current.size()) {
+            List<Product> updated = new ArrayList<>(current);
+            updated.remove(position);
+            submitList(updated, onRemoved);
         }
     }
     
     private void setProductImage(ImageView imageView, String category) {        
-        android.util.Log.d("EnhancedFavoritesAdapter", "Setting category-based image for: " + category);
-        
-        if (category == null) {
-            category = "default";
+        if (DebugLog.ENABLED) {
+            DebugLog.d("EnhancedFavoritesAdapter", () -> "Setting category-based image for: " + category);
         }
         
-        int imageResource = getCategoryIcon(category);
+        String resolvedCategory = category != null ? category : "default";
+        
+        int imageResource = getCategoryIcon(resolvedCategory);
         imageView.setImageResource(imageResource);
-        android.util.Log.d("EnhancedFavoritesAdapter", "Set category image for " + category + " with resource ID: " + imageResource);
+        if (DebugLog.ENABLED) {
+            DebugLog.d("EnhancedFavoritesAdapter", () -> "Set category image for " + resolvedCategory + " with resource ID: " + imageResource);
+        }
     }
     
     private int getCategoryIcon(String category) {
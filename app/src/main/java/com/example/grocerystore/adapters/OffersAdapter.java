@@ -1,6 +1,7 @@
 package com.example.grocerystore.adapters;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,22 +9,31 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
 import com.example.grocerystore.R;
 import com.example.grocerystore.models.Offer;
+import com.example.grocerystore.utils.DebugLog;
+import com.example.grocerystore.utils.ImageSourceResolver;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
 
+import java.util.ArrayList;
 import java.util.List;
 
-public class OffersAdapter extends RecyclerView.Adapter<OffersAdapter.OfferViewHolder> {
+public class OffersAdapter extends ListAdapter<Offer, OffersAdapter.OfferViewHolder> {
+    private static final RequestOptions IMAGE_OPTIONS = new RequestOptions()
+            .placeholder(R.drawable.placeholder_image)
+            .error(R.drawable.placeholder_image)
+            .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
+            .centerCrop();
 
     private Context context;
-    private List<Offer> offers;
     private OnOfferActionListener listener;
 
     public interface OnOfferActionListener {
@@ -33,9 +43,11 @@ public class OffersAdapter extends RecyclerView.Adapter<OffersAdapter.OfferViewH
     }
 
     public OffersAdapter(Context context, List<Offer> offers, OnOfferActionListener listener) {
+        super(DiffCallbacks.OFFERS);
         this.context = context;
-        this.offers = offers;
         this.listener = listener;
+        setHasStableIds(true);
+        submitList(new ArrayList<>(offers));
     }
 
     @NonNull
@@ -47,37 +59,37 @@ public class OffersAdapter extends RecyclerView.Adapter<OffersAdapter.OfferViewH
 
     @Override
     public void onBindViewHolder(@NonNull OfferViewHolder holder, int position) {
-        android.util.Log.d("OffersAdapter", "onBindViewHolder called for position: " + position);
-        Offer offer = offers.get(position);
-        android.util.Log.d("OffersAdapter", "Binding offer: " + offer.getProductName());
+        Offer offer = getItem(position);
+        // Guarded so release builds don't allocate the capturing lambdas per bind
+        if (DebugLog.ENABLED) {
+            DebugLog.d("OffersAdapter", () -> "onBindViewHolder called for position: " + position);
+            DebugLog.d("OffersAdapter", () -> "Binding offer: " + offer.getProductName());
+        }
         holder.bind(offer);
     }
 
     @Override
-    public int getItemCount() {
-        int count = offers.size();
-        android.util.Log.d("OffersAdapter", "getItemCount() called, returning: " + count);
-        return count;
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     public void updateOffers(List<Offer> newOffers) {
-        android.util.Log.d("OffersAdapter", "=== UPDATE OFFERS DEBUG ===");
-        android.util.Log.d("OffersAdapter", "Received " + newOffers.size() + " new offers");
-        android.util.Log.d("OffersAdapter", "Current offers count before update: " + this.offers.size());
-        
-        this.offers.clear();
-        this.offers.addAll(newOffers);
-        
-        android.util.Log.d("OffersAdapter", "Current offers count after update: " + this.offers.size());
-        
-        for (int i = 0; i < this.offers.size(); i++) {
-            Offer offer = this.offers.get(i);
-            android.util.Log.d("OffersAdapter", "Offer " + (i+1) + ": " + offer.getProductName());
+        if (DebugLog.ENABLED) {
+            DebugLog.d("OffersAdapter", () -> "=== UPDATE OFFERS DEBUG ===");
+            DebugLog.d("OffersAdapter", () -> "Received " + newOffers.size() + " new offers");
+            DebugLog.d("OffersAdapter", () -> "Current offers count before update: " + getItemCount());
+
+            for (int i = 0; i < newOffers.size(); i++) {
+                Offer offer = newOffers.get(i);
+                int number = i + 1;
+                DebugLog.d("OffersAdapter", () -> "Offer " + number + ": " + offer.getProductName());
+            }
         }
         
-        notifyDataSetChanged();
-        android.util.Log.d("OffersAdapter", "notifyDataSetChanged() called");
-        android.util.Log.d("OffersAdapter", "=== END UPDATE OFFERS DEBUG ===");
+        // Diffed on a background thread; only changed rows rebind
+        submitList(new ArrayList<>(newOffers));
+        DebugLog.d("OffersAdapter", () -> "submitList() called");
+        DebugLog.d("OffersAdapter", () -> "=== END UPDATE OFFERS DEBUG ===");
     }
 
     public class OfferViewHolder extends RecyclerView.ViewHolder {
@@ -125,40 +137,19 @@ public class OffersAdapter extends RecyclerView.Adapter<OffersAdapter.OfferViewH
             // Apply strikethrough to original price
             originalPrice.setPaintFlags(originalPrice.getPaintFlags() | android.graphics.Paint.STRIKE_THRU_TEXT_FLAG);
             
-            // Set product image using same approach as other adapters for consistency
-            if (offer.getImageUrl() != null && !offer.getImageUrl().isEmpty()) {
-                android.util.Log.d("OffersAdapter", "Loading image for offer " + offer.getName() + ": " + offer.getImageUrl());
-                
-                // Check if it's a local drawable or URL
-                if (offer.getImageUrl().startsWith("drawable://")) {
-                    // Load from local drawable folder
-                    String drawableName = offer.getImageUrl().replace("drawable://", "");
-                    android.util.Log.d("OffersAdapter", "Looking for local drawable: " + drawableName);
-                    int resourceId = context.getResources().getIdentifier(drawableName, "drawable", context.getPackageName());
-                    android.util.Log.d("OffersAdapter", "Resource ID found: " + resourceId);
-                    if (resourceId != 0) {
-                        productImage.setImageResource(resourceId);
-                        android.util.Log.d("OffersAdapter", "✅ Successfully loaded drawable for offer: " + offer.getName());
-                    } else {
-                        android.util.Log.e("OffersAdapter", "❌ Failed to find drawable: " + drawableName);
-                        setProductImage(offer.getCategory());
-                    }
-                } else {
-                    // Load from URL using Glide
-                    android.util.Log.d("OffersAdapter", "Loading offer image from URL: " + offer.getImageUrl());
-                    RequestOptions requestOptions = new RequestOptions()
-                            .placeholder(R.drawable.placeholder_image)
-                            .error(R.drawable.placeholder_image)
-                            .diskCacheStrategy(DiskCacheStrategy.ALL)
-                            .centerCrop();
-                    
-                    Glide.with(context)
-                            .load(offer.getImageUrl())
-                            .apply(requestOptions)
-                            .into(productImage);
-                }
+            // Set product image from the thumbnail rendition when there is one
+            if (DebugLog.ENABLED) {
+                DebugLog.d("OffersAdapter", () -> "Loading image for offer " + offer.getName() + ": " + offer.getListImageUrl());
+            }
+            RequestBuilder<Drawable> request = ImageSourceResolver.getInstance(context)
+                    .load(Glide.with(context), offer.getListImageUrl());
+            if (request != null) {
+                request.apply(IMAGE_OPTIONS).into(productImage);
             } else {
-                android.util.Log.d("OffersAdapter", "No image URL for offer: " + offer.getName() + ", using category fallback");
+                if (DebugLog.ENABLED) {
+                    DebugLog.d("OffersAdapter", () -> "No image for offer: " + offer.getName() + ", using category fallback");
+                }
+                Glide.with(context).clear(productImage);
                 setProductImage(offer.getCategory());
             }
             
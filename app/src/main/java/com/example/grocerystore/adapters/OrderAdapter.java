@@ -9,6 +9,7 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grocerystore.R;
@@ -17,14 +18,14 @@ import com.google.android.material.button.MaterialButton;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
-public class OrderAdapter extends RecyclerView.Adapter<OrderAdapter.OrderViewHolder> {
+public class OrderAdapter extends ListAdapter<Order, OrderAdapter.OrderViewHolder> {
 
     private Context context;
-    private List<Order> orders;
     private OnOrderActionListener onOrderActionListener;
 
     public interface OnOrderActionListener {
@@ -33,8 +34,10 @@ public class OrderAdapter extends RecyclerView.Adapter<OrderAdapter.OrderViewHol
     }
 
     public OrderAdapter(Context context, List<Order> orders) {
+        super(DiffCallbacks.ORDERS);
         this.context = context;
-        this.orders = orders;
+        setHasStableIds(true);
+        submitList(new ArrayList<>(orders));
     }
 
     public void setOnOrderActionListener(OnOrderActionListener listener) {
@@ -50,18 +53,18 @@ public class OrderAdapter extends RecyclerView.Adapter<OrderAdapter.OrderViewHol
 
     @Override
     public void onBindViewHolder(@NonNull OrderViewHolder holder, int position) {
-        Order order = orders.get(position);
+        Order order = getItem(position);
         holder.bind(order);
     }
 
     @Override
-    public int getItemCount() {
-        return orders.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     public void updateOrders(List<Order> newOrders) {
-        this.orders = newOrders;
-        notifyDataSetChanged();
+        // Copy so later edits to the caller's list can't race the background diff
+        submitList(new ArrayList<>(newOrders));
     }
 
     class OrderViewHolder extends RecyclerView.ViewHolder {
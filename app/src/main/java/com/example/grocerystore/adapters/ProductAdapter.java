@@ -1,6 +1,7 @@
 package com.example.grocerystore.adapters;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,21 +11,29 @@ import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
 import com.example.grocerystore.R;
 import com.example.grocerystore.models.Product;
+import com.example.grocerystore.utils.DebugLog;
+import com.example.grocerystore.utils.ImageSourceResolver;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductViewHolder> {
+public class ProductAdapter extends ListAdapter<Product, ProductAdapter.ProductViewHolder> {
+    private static final RequestOptions IMAGE_OPTIONS = new RequestOptions()
+            .placeholder(R.drawable.placeholder_image)
+            .error(R.drawable.placeholder_image)
+            .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
+            .centerCrop();
     
     private Context context;
-    private List<Product> products;
-    private List<Product> filteredProducts;
     private OnProductClickListener listener;
+    private Runnable onListChangedListener;
 
     public interface OnProductClickListener {
         void onFavoriteClick(Product product, int position);
@@ -32,15 +41,28 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
     }
 
     public ProductAdapter(Context context, List<Product> products) {
+        super(DiffCallbacks.PRODUCTS);
         this.context = context;
-        this.products = products;
-        this.filteredProducts = new ArrayList<>(products);
+        setHasStableIds(true);
+        submitList(new ArrayList<>(products));
     }
 
     public void setOnProductClickListener(OnProductClickListener listener) {
         this.listener = listener;
     }
 
+    // Lists are diffed in the background; this runs once the new list is actually shown
+    public void setOnListChangedListener(Runnable listener) {
+        this.onListChangedListener = listener;
+    }
+
+    @Override
+    public void onCurrentListChanged(@NonNull List<Product> previousList, @NonNull List<Product> currentList) {
+        if (onListChangedListener != null) {
+            onListChangedListener.run();
+        }
+    }
+
     @NonNull
     @Override
     public ProductViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -50,79 +72,17 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
 
     @Override
     public void onBindViewHolder(@NonNull ProductViewHolder holder, int position) {
-        Product product = filteredProducts.get(position);
-        holder.bind(product, position);
+        Product product = getItem(position);
+        holder.bind(product);
     }
 
     @Override
-    public int getItemCount() {
-        return filteredProducts.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     public void updateProducts(List<Product> newProducts) {
-        this.products = newProducts;
-        this.filteredProducts = new ArrayList<>(newProducts);
-        notifyDataSetChanged();
-    }
-
-    public void filter(String query) {
-        filteredProducts.clear();
-        if (query.isEmpty()) {
-            filteredProducts.addAll(products);
-        } else {
-            String lowerCaseQuery = query.toLowerCase().trim();
-            for (Product product : products) {
-                if (product.getName().toLowerCase().contains(lowerCaseQuery) ||
-                    product.getCategory().toLowerCase().contains(lowerCaseQuery)) {
-                    filteredProducts.add(product);
-                }
-            }
-        }
-        notifyDataSetChanged();
-    }
-
-    public void filterByCategory(String category) {
-        filteredProducts.clear();
-        if (category == null || category.equals("All Categories")) {
-            filteredProducts.addAll(products);
-        } else {
-            for (Product product : products) {
-                if (product.getCategory().equals(category)) {
-                    filteredProducts.add(product);
-                }
-            }
-        }
-        notifyDataSetChanged();
-    }
-
-    public void filterByPriceRange(double minPrice, double maxPrice) {
-        filteredProducts.clear();
-        for (Product product : products) {
-            if (product.getPrice() >= minPrice && product.getPrice() <= maxPrice) {
-                filteredProducts.add(product);
-            }
-        }
-        notifyDataSetChanged();
-    }
-
-    public void applyFilters(String searchQuery, String category, double minPrice, double maxPrice) {
-        filteredProducts.clear();
-        
-        for (Product product : products) {
-            boolean matchesSearch = searchQuery.isEmpty() || 
-                                  product.getName().toLowerCase().contains(searchQuery.toLowerCase()) ||
-                                  product.getCategory().toLowerCase().contains(searchQuery.toLowerCase());
-            
-            boolean matchesCategory = category == null || category.equals("All Categories") || 
-                                    product.getCategory().equals(category);
-            
-            boolean matchesPrice = product.getPrice() >= minPrice && product.getPrice() <= maxPrice;
-            
-            if (matchesSearch && matchesCategory && matchesPrice) {
-                filteredProducts.add(product);
-            }
-        }
-        notifyDataSetChanged();
+        submitList(new ArrayList<>(newProducts));
     }
 
     class ProductViewHolder extends RecyclerView.ViewHolder {
@@ -145,19 +105,19 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
             orderButton = itemView.findViewById(R.id.order_button);
         }
 
-        public void bind(Product product, int position) {
+        public void bind(Product product) {
             productName.setText(product.getName());
             productCategory.setText(product.getCategory());
             productPrice.setText(product.getFormattedPrice());
             productStock.setText(product.getStockStatus());
 
             // Set stock status color
-            if (product.getStockQuantity() <= 0) {
+            if (product.getAvailableQuantity() <= 0) {
                 productStock.setTextColor(context.getResources().getColor(android.R.color.holo_red_dark));
                 orderButton.setEnabled(false);
                 orderButton.setText("Out of Stock");
                 orderButton.setBackgroundColor(context.getResources().getColor(android.R.color.darker_gray));
-            } else if (product.getStockQuantity() <= 10) {
+            } else if (product.getAvailableQuantity() <= 10) {
                 productStock.setTextColor(context.getResources().getColor(android.R.color.holo_orange_dark));
                 orderButton.setEnabled(true);
                 orderButton.setText("Order Now");
@@ -178,39 +138,16 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
                 favoriteButton.setColorFilter(context.getResources().getColor(android.R.color.darker_gray));
             }
 
-            // Load product image - use same approach as AdminProductsAdapter for consistency
-            if (product.getImageUrl() != null && !product.getImageUrl().isEmpty()) {
-                android.util.Log.d("ProductAdapter", "Loading image for " + product.getName() + ": " + product.getImageUrl());
-                
-                // Check if it's a local drawable or URL
-                if (product.getImageUrl().startsWith("drawable://")) {
-                    // Load from local drawable folder
-                    String drawableName = product.getImageUrl().replace("drawable://", "");
-                    android.util.Log.d("ProductAdapter", "Looking for local drawable: " + drawableName);
-                    int resourceId = context.getResources().getIdentifier(drawableName, "drawable", context.getPackageName());
-                    android.util.Log.d("ProductAdapter", "Resource ID found: " + resourceId);
-                    if (resourceId != 0) {
-                        productImage.setImageResource(resourceId);
-                    } else {
-                        android.util.Log.e("ProductAdapter", "Failed to find drawable: " + drawableName);
-                        productImage.setImageResource(R.drawable.placeholder_image);
-                    }
-                } else {
-                    // For URL images, use Glide
-                    android.util.Log.d("ProductAdapter", "Loading from URL: " + product.getImageUrl());
-                    RequestOptions requestOptions = new RequestOptions()
-                            .placeholder(R.drawable.placeholder_image)
-                            .error(R.drawable.placeholder_image)
-                            .diskCacheStrategy(DiskCacheStrategy.ALL)
-                            .centerCrop();
-                    
-                    Glide.with(context)
-                            .load(product.getImageUrl())
-                            .apply(requestOptions)
-                            .into(productImage);
-                }
+            // Load product image; the resolver maps the stored string to a Glide model once
+            if (DebugLog.ENABLED) {
+                DebugLog.d("ProductAdapter", () -> "Loading image for " + product.getName() + ": " + product.getImageUrl());
+            }
+            RequestBuilder<Drawable> request = ImageSourceResolver.getInstance(context)
+                    .load(Glide.with(context), product.getImageUrl());
+            if (request != null) {
+                request.apply(IMAGE_OPTIONS).into(productImage);
             } else {
-                android.util.Log.d("ProductAdapter", "No image URL for product: " + product.getName());
+                Glide.with(context).clear(productImage);
                 productImage.setImageResource(R.drawable.placeholder_image);
             }
 
@@ -218,7 +155,7 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
             favoriteButton.setOnClickListener(v -> {
                 if (listener != null) {
                     animateHeart(favoriteButton, !product.isFavorite());
-                    listener.onFavoriteClick(product, position);
+                    listener.onFavoriteClick(product, getBindingAdapterPosition());
                 }
             });
 
@@ -4,10 +4,17 @@ import com.example.grocerystore.model.ApiProduct;
 import java.util.List;
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 
 // REST API service interface for fetching product categories
 public interface ApiService {
     
     @GET("v1/cede0a18-239c-4370-a84f-93fd197c5111")
     Call<List<ApiProduct>> getProducts();
+
+    // Conditional fetch of the same list: the server answers 304 Not Modified
+    // when nothing changed. Retrofit leaves out headers whose value is null.
+    @GET("v1/cede0a18-239c-4370-a84f-93fd197c5111")
+    Call<List<ApiProduct>> getProductsIfChanged(@Header("If-None-Match") String etag,
+                                                @Header("If-Modified-Since") String lastModified);
 }
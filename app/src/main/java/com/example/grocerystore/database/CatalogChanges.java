@@ -0,0 +1,48 @@
+package com.example.grocerystore.database;
+
+/**
+ * What one catalog download changed in the products table. Unchanged rows
+ * were compared but not written.
+ */
+public final class CatalogChanges {
+    public static final CatalogChanges NONE = new CatalogChanges(0, 0, 0, 0);
+
+    private final int inserted;
+    private final int updated;
+    private final int unchanged;
+    private final int removed;
+
+    public CatalogChanges(int inserted, int updated, int unchanged, int removed) {
+        this.inserted = inserted;
+        this.updated = updated;
+        this.unchanged = unchanged;
+        this.removed = removed;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    // Products the server stopped listing; they are kept but marked unavailable
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getChangedCount() {
+        return inserted + updated + removed;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogChanges{inserted=" + inserted + ", updated=" + updated +
+                ", unchanged=" + unchanged + ", removed=" + removed + "}";
+    }
+}
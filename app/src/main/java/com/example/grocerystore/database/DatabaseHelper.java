@@ -3,18 +3,36 @@ package com.example.grocerystore.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.text.TextUtils;
 import android.util.Log;
+import com.example.grocerystore.model.ApiProduct;
+import com.example.grocerystore.model.User;
 import com.example.grocerystore.models.Product;
+import com.example.grocerystore.models.CartItem;
 import com.example.grocerystore.models.Order;
 import com.example.grocerystore.models.Offer;
+import com.example.grocerystore.utils.DebugLog;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "grocery_store.db";
-    private static final int DATABASE_VERSION = 7;
+    private static final int DATABASE_VERSION = 17;
 
     // Products table
     private static final String TABLE_PRODUCTS = "products";
@@ -26,6 +44,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_PRODUCT_IMAGE = "image_url";
     private static final String COLUMN_PRODUCT_DESCRIPTION = "description";
     private static final String COLUMN_PRODUCT_AVAILABLE = "is_available";
+    // Set on products that came from the REST catalog; null for local ones
+    private static final String COLUMN_PRODUCT_REMOTE_ID = "remote_id";
+    private static final String COLUMN_PRODUCT_ON_OFFER = "on_offer";
+
+    // Full-text index over products (external content, kept in sync by triggers)
+    private static final String TABLE_PRODUCTS_FTS = "products_fts";
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
 
     // Orders table
     private static final String TABLE_ORDERS = "orders";
@@ -41,6 +66,48 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_ORDER_DATE = "order_date";
     private static final String COLUMN_ORDER_DELIVERY_ADDRESS = "delivery_address";
     private static final String COLUMN_ORDER_SYNCED = "is_synced";
+    private static final String COLUMN_ORDER_KEY = "order_key";
+    // Set on the line items of a cart checkout; matches order_headers.checkout_key
+    private static final String COLUMN_ORDER_CHECKOUT_KEY = "checkout_key";
+    // New for every local status change; the Idempotency-Key of its push
+    private static final String COLUMN_ORDER_STATUS_CHANGE_KEY = "status_change_key";
+
+    // Cart lines persist across sessions until checkout
+    private static final String TABLE_CART_ITEMS = "cart_items";
+    private static final String COLUMN_CART_USER_ID = "user_id";
+    private static final String COLUMN_CART_PRODUCT_ID = "product_id";
+    private static final String COLUMN_CART_QUANTITY = "quantity";
+    private static final String COLUMN_CART_ADDED_AT = "added_at";
+
+    // Short-lived holds on stock while a shopper has the order dialog open;
+    // rows past expires_at no longer count and are deleted by the sweeper
+    private static final String TABLE_STOCK_RESERVATIONS = "stock_reservations";
+    private static final String COLUMN_RESERVATION_ID = "id";
+    private static final String COLUMN_RESERVATION_PRODUCT_ID = "product_id";
+    private static final String COLUMN_RESERVATION_USER_ID = "user_id";
+    private static final String COLUMN_RESERVATION_QUANTITY = "quantity";
+    private static final String COLUMN_RESERVATION_EXPIRES_AT = "expires_at";
+    // Read alongside product rows; stock held by open order dialogs
+    private static final String COLUMN_RESERVED_QUANTITY = "reserved_quantity";
+    public static final long DEFAULT_RESERVATION_TTL_MS = 10 * 60 * 1000L;
+
+    // One row per checkout; its lines are rows in orders
+    private static final String TABLE_ORDER_HEADERS = "order_headers";
+    private static final String COLUMN_HEADER_ID = "id";
+    private static final String COLUMN_HEADER_CHECKOUT_KEY = "checkout_key";
+    private static final String COLUMN_HEADER_USER_ID = "user_id";
+    private static final String COLUMN_HEADER_DELIVERY_METHOD = "delivery_method";
+    private static final String COLUMN_HEADER_DELIVERY_ADDRESS = "delivery_address";
+    private static final String COLUMN_HEADER_ITEM_COUNT = "item_count";
+    private static final String COLUMN_HEADER_TOTAL_PRICE = "total_price";
+    private static final String COLUMN_HEADER_ORDER_DATE = "order_date";
+
+    // One row per order the sync has tried to upload and the server hasn't acknowledged
+    private static final String TABLE_ORDER_OUTBOX = "order_outbox";
+    private static final String COLUMN_OUTBOX_ORDER_KEY = "order_key";
+    private static final String COLUMN_OUTBOX_ATTEMPTS = "attempts";
+    private static final String COLUMN_OUTBOX_LAST_ATTEMPT_AT = "last_attempt_at";
+    private static final String COLUMN_OUTBOX_LAST_ERROR = "last_error";
 
     // Favorites table
     private static final String TABLE_FAVORITES = "favorites";
@@ -48,6 +115,18 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_FAVORITE_USER_ID = "user_id";
     private static final String COLUMN_FAVORITE_PRODUCT_ID = "product_id";
 
+    // Users table; email is matched case-insensitively
+    private static final String TABLE_USERS = "users";
+    private static final String COLUMN_USER_ID = "id";
+    private static final String COLUMN_USER_EMAIL = "email";
+    private static final String COLUMN_USER_FIRST_NAME = "first_name";
+    private static final String COLUMN_USER_LAST_NAME = "last_name";
+    private static final String COLUMN_USER_PASSWORD = "password";
+    private static final String COLUMN_USER_GENDER = "gender";
+    private static final String COLUMN_USER_CITY = "city";
+    private static final String COLUMN_USER_PHONE = "phone_number";
+    private static final String COLUMN_USER_ROLE = "role";
+
     // Offers table
     private static final String TABLE_OFFERS = "offers";
     private static final String COLUMN_OFFER_ID = "id";
@@ -59,12 +138,59 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_OFFER_STOCK_QUANTITY = "stock_quantity";
     private static final String COLUMN_OFFER_DESCRIPTION = "description";
     private static final String COLUMN_OFFER_IMAGE_URL = "image_url";
+    // Small rendition for list rows; image_url holds the full-size one
+    private static final String COLUMN_OFFER_THUMBNAIL_PATH = "thumbnail_path";
     private static final String COLUMN_OFFER_IS_ACTIVE = "is_active";
     private static final String COLUMN_OFFER_CREATED_AT = "created_at";
     private static final String COLUMN_OFFER_EXPIRES_AT = "expires_at";
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Sync bookkeeping such as ETags, one value per key
+    private static final String TABLE_SYNC_STATE = "sync_state";
+    private static final String COLUMN_SYNC_KEY = "key";
+    private static final String COLUMN_SYNC_VALUE = "value";
+    public static final String SYNC_CATALOG_ETAG = "catalog.etag";
+    public static final String SYNC_CATALOG_LAST_MODIFIED = "catalog.last_modified";
+    // Server cursor for order status updates; everything before it is applied
+    public static final String SYNC_ORDER_UPDATES_TOKEN = "orders.updates_token";
+
+    // Discount applied to products the catalog flags as on offer
+    private static final double CATALOG_OFFER_PRICE_FACTOR = 0.8;
+    private static final long CATALOG_OFFER_DURATION_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    private static DatabaseHelper instance;
+
+    /**
+     * The app-wide helper. Everything shares it, so the schema is checked once
+     * and all threads draw from one connection pool: with write-ahead logging
+     * readers get their own pooled connections and never wait on the writer.
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+    /**
+     * Close the shared helper and its connections. Normally the process just
+     * keeps it open until it dies; this is for tests and for shutdown paths
+     * that need the file released. The next getInstance reopens it.
+     */
+    public static synchronized void closeInstance() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    // Pass a null name for a throwaway in-memory database (used by instrumented tests).
+    // App code should use getInstance instead.
+    public DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        // In-memory databases have no journal file to put in WAL mode
+        if (databaseName != null) {
+            setWriteAheadLoggingEnabled(true);
+        }
     }
 
     @Override
@@ -72,67 +198,28 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         try {
             android.util.Log.d("DatabaseHelper", "=== CREATING DATABASE TABLES ===");
             
-            // Create products table
-            String createProductsTable = "CREATE TABLE " + TABLE_PRODUCTS + "(" +
-                    COLUMN_PRODUCT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    COLUMN_PRODUCT_NAME + " TEXT NOT NULL," +
-                    COLUMN_PRODUCT_CATEGORY + " TEXT NOT NULL," +
-                    COLUMN_PRODUCT_PRICE + " REAL NOT NULL," +
-                    COLUMN_PRODUCT_STOCK + " INTEGER NOT NULL," +
-                    COLUMN_PRODUCT_IMAGE + " TEXT," +
-                    COLUMN_PRODUCT_DESCRIPTION + " TEXT," +
-                    COLUMN_PRODUCT_AVAILABLE + " INTEGER DEFAULT 1" +
-                    ")";
-            db.execSQL(createProductsTable);
+            createProductsTable(db);
             android.util.Log.d("DatabaseHelper", "✅ Products table created");
 
-            // Create orders table
-            String createOrdersTable = "CREATE TABLE " + TABLE_ORDERS + "(" +
-                    COLUMN_ORDER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    COLUMN_ORDER_USER_ID + " INTEGER NOT NULL," +
-                    COLUMN_ORDER_PRODUCT_ID + " INTEGER NOT NULL," +
-                    COLUMN_ORDER_PRODUCT_NAME + " TEXT NOT NULL," +
-                    COLUMN_ORDER_QUANTITY + " INTEGER NOT NULL," +
-                    COLUMN_ORDER_UNIT_PRICE + " REAL NOT NULL," +
-                    COLUMN_ORDER_TOTAL_PRICE + " REAL NOT NULL," +
-                    COLUMN_ORDER_DELIVERY_METHOD + " TEXT NOT NULL," +
-                    COLUMN_ORDER_STATUS + " TEXT DEFAULT 'pending'," +
-                    COLUMN_ORDER_DATE + " TEXT," +
-                    COLUMN_ORDER_DELIVERY_ADDRESS + " TEXT," +
-                    COLUMN_ORDER_SYNCED + " INTEGER DEFAULT 0" +
-                    ")";
-            db.execSQL(createOrdersTable);
+            createOrdersTable(db);
             android.util.Log.d("DatabaseHelper", "✅ Orders table created");
 
-            // Create favorites table
-            String createFavoritesTable = "CREATE TABLE " + TABLE_FAVORITES + "(" +
-                    COLUMN_FAVORITE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    COLUMN_FAVORITE_USER_ID + " INTEGER NOT NULL," +
-                    COLUMN_FAVORITE_PRODUCT_ID + " INTEGER NOT NULL," +
-                    "UNIQUE(" + COLUMN_FAVORITE_USER_ID + "," + COLUMN_FAVORITE_PRODUCT_ID + ")" +
-                    ")";
-            db.execSQL(createFavoritesTable);
+            createFavoritesTable(db);
             android.util.Log.d("DatabaseHelper", "✅ Favorites table created");
 
-            // Create offers table
-            String createOffersTable = "CREATE TABLE " + TABLE_OFFERS + "(" +
-                    COLUMN_OFFER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    COLUMN_OFFER_PRODUCT_ID + " INTEGER," +
-                    COLUMN_OFFER_PRODUCT_NAME + " TEXT NOT NULL," +
-                    COLUMN_OFFER_CATEGORY + " TEXT NOT NULL," +
-                    COLUMN_OFFER_ORIGINAL_PRICE + " REAL NOT NULL," +
-                    COLUMN_OFFER_DISCOUNTED_PRICE + " REAL NOT NULL," +
-                    COLUMN_OFFER_STOCK_QUANTITY + " INTEGER NOT NULL," +
-                    COLUMN_OFFER_DESCRIPTION + " TEXT," +
-                    COLUMN_OFFER_IMAGE_URL + " TEXT," +
-                    COLUMN_OFFER_IS_ACTIVE + " INTEGER DEFAULT 1," +
-                    COLUMN_OFFER_CREATED_AT + " INTEGER," +
-                    COLUMN_OFFER_EXPIRES_AT + " INTEGER," +
-                    "FOREIGN KEY(" + COLUMN_OFFER_PRODUCT_ID + ") REFERENCES " + TABLE_PRODUCTS + "(" + COLUMN_PRODUCT_ID + ")" +
-                    ")";
-            db.execSQL(createOffersTable);
+            createOffersTable(db);
             android.util.Log.d("DatabaseHelper", "✅ Offers table created");
 
+            createUsersTable(db);
+            android.util.Log.d("DatabaseHelper", "✅ Users table created");
+
+            createIndexes(db);
+            createSearchIndex(db);
+            createCatalogSyncSchema(db);
+            createOrderSyncSchema(db);
+            createCartSchema(db);
+            createReservationSchema(db);
+
             // Insert sample products
             addRealProductsWithImages(db);
             
@@ -146,152 +233,413 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         // Don't insert sample orders automatically - they will be created per user
     }
 
+    private void createProductsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_PRODUCTS + "(" +
+                COLUMN_PRODUCT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_PRODUCT_NAME + " TEXT NOT NULL," +
+                COLUMN_PRODUCT_CATEGORY + " TEXT NOT NULL," +
+                COLUMN_PRODUCT_PRICE + " REAL NOT NULL," +
+                COLUMN_PRODUCT_STOCK + " INTEGER NOT NULL," +
+                COLUMN_PRODUCT_IMAGE + " TEXT," +
+                COLUMN_PRODUCT_DESCRIPTION + " TEXT," +
+                COLUMN_PRODUCT_AVAILABLE + " INTEGER DEFAULT 1," +
+                COLUMN_PRODUCT_REMOTE_ID + " INTEGER," +
+                COLUMN_PRODUCT_ON_OFFER + " INTEGER DEFAULT 0" +
+                ")");
+    }
+
+    private void createOrdersTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_ORDERS + "(" +
+                COLUMN_ORDER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_ORDER_USER_ID + " INTEGER NOT NULL," +
+                COLUMN_ORDER_PRODUCT_ID + " INTEGER NOT NULL," +
+                COLUMN_ORDER_PRODUCT_NAME + " TEXT NOT NULL," +
+                COLUMN_ORDER_QUANTITY + " INTEGER NOT NULL," +
+                COLUMN_ORDER_UNIT_PRICE + " REAL NOT NULL," +
+                COLUMN_ORDER_TOTAL_PRICE + " REAL NOT NULL," +
+                COLUMN_ORDER_DELIVERY_METHOD + " TEXT NOT NULL," +
+                COLUMN_ORDER_STATUS + " TEXT DEFAULT 'pending'," +
+                COLUMN_ORDER_DATE + " TEXT," +
+                COLUMN_ORDER_DELIVERY_ADDRESS + " TEXT," +
+                COLUMN_ORDER_SYNCED + " INTEGER DEFAULT 0," +
+                COLUMN_ORDER_KEY + " TEXT," +
+                COLUMN_ORDER_CHECKOUT_KEY + " TEXT," +
+                COLUMN_ORDER_STATUS_CHANGE_KEY + " TEXT" +
+                ")");
+    }
+
+    private void createFavoritesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_FAVORITES + "(" +
+                COLUMN_FAVORITE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_FAVORITE_USER_ID + " INTEGER NOT NULL," +
+                COLUMN_FAVORITE_PRODUCT_ID + " INTEGER NOT NULL," +
+                "UNIQUE(" + COLUMN_FAVORITE_USER_ID + "," + COLUMN_FAVORITE_PRODUCT_ID + ")" +
+                ")");
+    }
+
+    private void createOffersTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_OFFERS + "(" +
+                COLUMN_OFFER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_OFFER_PRODUCT_ID + " INTEGER," +
+                COLUMN_OFFER_PRODUCT_NAME + " TEXT NOT NULL," +
+                COLUMN_OFFER_CATEGORY + " TEXT NOT NULL," +
+                COLUMN_OFFER_ORIGINAL_PRICE + " REAL NOT NULL," +
+                COLUMN_OFFER_DISCOUNTED_PRICE + " REAL NOT NULL," +
+                COLUMN_OFFER_STOCK_QUANTITY + " INTEGER NOT NULL," +
+                COLUMN_OFFER_DESCRIPTION + " TEXT," +
+                COLUMN_OFFER_IMAGE_URL + " TEXT," +
+                COLUMN_OFFER_THUMBNAIL_PATH + " TEXT," +
+                COLUMN_OFFER_IS_ACTIVE + " INTEGER DEFAULT 1," +
+                COLUMN_OFFER_CREATED_AT + " INTEGER," +
+                COLUMN_OFFER_EXPIRES_AT + " INTEGER," +
+                "FOREIGN KEY(" + COLUMN_OFFER_PRODUCT_ID + ") REFERENCES " + TABLE_PRODUCTS + "(" + COLUMN_PRODUCT_ID + ")" +
+                ")");
+    }
+
+    private void createUsersTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_USERS + "(" +
+                COLUMN_USER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_USER_EMAIL + " TEXT NOT NULL COLLATE NOCASE," +
+                COLUMN_USER_FIRST_NAME + " TEXT," +
+                COLUMN_USER_LAST_NAME + " TEXT," +
+                COLUMN_USER_PASSWORD + " TEXT," +
+                COLUMN_USER_GENDER + " TEXT," +
+                COLUMN_USER_CITY + " TEXT," +
+                COLUMN_USER_PHONE + " TEXT," +
+                COLUMN_USER_ROLE + " TEXT DEFAULT 'user'" +
+                ")");
+        // Login looks users up by email; the column's NOCASE collation lets "email = ?" use this index
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_users_email ON " + TABLE_USERS +
+                "(" + COLUMN_USER_EMAIL + ")");
+    }
+
+    // Indexes for the columns we filter and sort on. Favorites uniqueness comes
+    // from the table constraint (see migrateToV8 for older installs).
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_products_category_price ON " + TABLE_PRODUCTS +
+                "(" + COLUMN_PRODUCT_CATEGORY + ", " + COLUMN_PRODUCT_PRICE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_products_price ON " + TABLE_PRODUCTS +
+                "(" + COLUMN_PRODUCT_PRICE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_products_name ON " + TABLE_PRODUCTS +
+                "(" + COLUMN_PRODUCT_NAME + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_orders_user_date ON " + TABLE_ORDERS +
+                "(" + COLUMN_ORDER_USER_ID + ", " + COLUMN_ORDER_DATE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_orders_status ON " + TABLE_ORDERS +
+                "(" + COLUMN_ORDER_STATUS + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_orders_synced ON " + TABLE_ORDERS +
+                "(" + COLUMN_ORDER_SYNCED + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_offers_active_created ON " + TABLE_OFFERS +
+                "(" + COLUMN_OFFER_IS_ACTIVE + ", " + COLUMN_OFFER_CREATED_AT + ")");
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         android.util.Log.d("DatabaseHelper", "=== DATABASE UPGRADE ===");
         android.util.Log.d("DatabaseHelper", "Upgrading from version " + oldVersion + " to " + newVersion);
-        
-        // Instead of dropping all tables, preserve offers if they exist
-        if (oldVersion < 5) {
-            // Version 5: Fix image URLs and preserve offers
-            try {
-                // Check if offers table exists
-                Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name='" + TABLE_OFFERS + "'", null);
-                boolean offersTableExists = cursor.getCount() > 0;
-                cursor.close();
-                
-                if (!offersTableExists) {
-                    // Create offers table if it doesn't exist
-                    String createOffersTable = "CREATE TABLE " + TABLE_OFFERS + "(" +
-                            COLUMN_OFFER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                            COLUMN_OFFER_PRODUCT_NAME + " TEXT NOT NULL," +
-                            COLUMN_OFFER_CATEGORY + " TEXT NOT NULL," +
-                            COLUMN_OFFER_ORIGINAL_PRICE + " REAL NOT NULL," +
-                            COLUMN_OFFER_DISCOUNTED_PRICE + " REAL NOT NULL," +
-                            COLUMN_OFFER_STOCK_QUANTITY + " INTEGER NOT NULL," +
-                            COLUMN_OFFER_DESCRIPTION + " TEXT," +
-                            COLUMN_OFFER_IMAGE_URL + " TEXT," +
-                            COLUMN_OFFER_IS_ACTIVE + " INTEGER DEFAULT 1," +
-                            COLUMN_OFFER_CREATED_AT + " INTEGER," +
-                            COLUMN_OFFER_EXPIRES_AT + " INTEGER" +
-                            ")";
-                    db.execSQL(createOffersTable);
-                    android.util.Log.d("DatabaseHelper", "Created offers table");
+
+        // Apply each version step in order. SQLiteOpenHelper runs this inside a
+        // transaction, so a failing step rolls the whole upgrade back.
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrateTo(db, version);
+        }
+
+        android.util.Log.d("DatabaseHelper", "=== END DATABASE UPGRADE ===");
+    }
+
+    // Migration steps must be additive - never drop a table holding user data
+    private void migrateTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 5:
+                migrateToV5(db);
+                break;
+            case 7:
+                migrateToV7(db);
+                break;
+            case 8:
+                migrateToV8(db);
+                break;
+            case 9:
+                migrateToV9(db);
+                break;
+            case 10:
+                // Users move here from SharedPreferences; UserManager copies them over on first use
+                createUsersTable(db);
+                break;
+            case 11:
+                migrateToV11(db);
+                break;
+            case 12:
+                migrateToV12(db);
+                break;
+            case 13:
+                if (!hasColumn(db, TABLE_ORDERS, COLUMN_ORDER_CHECKOUT_KEY)) {
+                    db.execSQL("ALTER TABLE " + TABLE_ORDERS + " ADD COLUMN " + COLUMN_ORDER_CHECKOUT_KEY + " TEXT");
                 }
-                
-                // Only recreate other tables that need changes
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_PRODUCTS);
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_ORDERS);
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_FAVORITES);
-                
-                // Recreate non-offers tables
-                String createProductsTable = "CREATE TABLE " + TABLE_PRODUCTS + "(" +
-                        COLUMN_PRODUCT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                        COLUMN_PRODUCT_NAME + " TEXT NOT NULL," +
-                        COLUMN_PRODUCT_CATEGORY + " TEXT NOT NULL," +
-                        COLUMN_PRODUCT_PRICE + " REAL NOT NULL," +
-                        COLUMN_PRODUCT_STOCK + " INTEGER NOT NULL," +
-                        COLUMN_PRODUCT_IMAGE + " TEXT," +
-                        COLUMN_PRODUCT_DESCRIPTION + " TEXT," +
-                        COLUMN_PRODUCT_AVAILABLE + " INTEGER DEFAULT 1" +
-                        ")";
-                db.execSQL(createProductsTable);
-
-                String createOrdersTable = "CREATE TABLE " + TABLE_ORDERS + "(" +
-                        COLUMN_ORDER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                        COLUMN_ORDER_USER_ID + " INTEGER NOT NULL," +
-                        COLUMN_ORDER_PRODUCT_ID + " INTEGER NOT NULL," +
-                        COLUMN_ORDER_PRODUCT_NAME + " TEXT NOT NULL," +
-                        COLUMN_ORDER_QUANTITY + " INTEGER NOT NULL," +
-                        COLUMN_ORDER_UNIT_PRICE + " REAL NOT NULL," +
-                        COLUMN_ORDER_TOTAL_PRICE + " REAL NOT NULL," +
-                        COLUMN_ORDER_DELIVERY_METHOD + " TEXT NOT NULL," +
-                        COLUMN_ORDER_STATUS + " TEXT DEFAULT 'pending'," +
-                        COLUMN_ORDER_DATE + " TEXT," +
-                        COLUMN_ORDER_DELIVERY_ADDRESS + " TEXT," +
-                        COLUMN_ORDER_SYNCED + " INTEGER DEFAULT 0" +
-                        ")";
-                db.execSQL(createOrdersTable);
-
-                String createFavoritesTable = "CREATE TABLE " + TABLE_FAVORITES + "(" +
-                        COLUMN_FAVORITE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                        COLUMN_FAVORITE_USER_ID + " INTEGER NOT NULL," +
-                        COLUMN_FAVORITE_PRODUCT_ID + " INTEGER NOT NULL," +
-                        "UNIQUE(" + COLUMN_FAVORITE_USER_ID + ", " + COLUMN_FAVORITE_PRODUCT_ID + ")" +
-                        ")";
-                db.execSQL(createFavoritesTable);
-                
-                // Insert sample products
-                addRealProductsWithImages(db);
-                
-                // Create test offers for debugging
-                createTestOffers();
-                
-                android.util.Log.d("DatabaseHelper", "✅ Database upgrade completed - offers preserved");
-                
-            } catch (Exception e) {
-                android.util.Log.e("DatabaseHelper", "Error during upgrade, falling back to full recreate", e);
-                // Fallback to original method if upgrade fails
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_PRODUCTS);
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_ORDERS);
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_FAVORITES);
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_OFFERS);
-                onCreate(db);
-            }
+                createCartSchema(db);
+                break;
+            case 14:
+                createReservationSchema(db);
+                break;
+            case 15:
+                if (!hasColumn(db, TABLE_OFFERS, COLUMN_OFFER_THUMBNAIL_PATH)) {
+                    db.execSQL("ALTER TABLE " + TABLE_OFFERS + " ADD COLUMN " + COLUMN_OFFER_THUMBNAIL_PATH + " TEXT");
+                }
+                break;
+            case 16:
+                // Re-create the update triggers so stock and price writes skip the search index
+                db.execSQL("DROP TRIGGER IF EXISTS products_fts_bu");
+                db.execSQL("DROP TRIGGER IF EXISTS products_fts_au");
+                createSearchIndex(db);
+                break;
+            case 17:
+                if (!hasColumn(db, TABLE_ORDERS, COLUMN_ORDER_STATUS_CHANGE_KEY)) {
+                    db.execSQL("ALTER TABLE " + TABLE_ORDERS + " ADD COLUMN " + COLUMN_ORDER_STATUS_CHANGE_KEY + " TEXT");
+                }
+                break;
+            default:
+                // No schema change in this version
+                break;
         }
-        
-        if (oldVersion < 7) {
-            // Version 7: Add product_id column to offers table
-            try {
-                android.util.Log.d("DatabaseHelper", "Adding product_id column to offers table");
-                
-                // Check if product_id column already exists
-                Cursor cursor = db.rawQuery("PRAGMA table_info(" + TABLE_OFFERS + ")", null);
-                boolean hasProductIdColumn = false;
-                while (cursor.moveToNext()) {
-                    String columnName = cursor.getString(1);
-                    if (COLUMN_OFFER_PRODUCT_ID.equals(columnName)) {
-                        hasProductIdColumn = true;
-                        break;
-                    }
+    }
+
+    // Version 5: make sure every table exists. Products with old remote image
+    // URLs are refreshed at startup by initializeRealProductsIfEmpty().
+    private void migrateToV5(SQLiteDatabase db) {
+        createProductsTable(db);
+        createOrdersTable(db);
+        createFavoritesTable(db);
+        createOffersTable(db);
+
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_PRODUCTS, null);
+        boolean productsEmpty = cursor.moveToFirst() && cursor.getInt(0) == 0;
+        cursor.close();
+        if (productsEmpty) {
+            addRealProductsWithImages(db);
+        }
+        android.util.Log.d("DatabaseHelper", "✅ Version 5 migration completed - existing data preserved");
+    }
+
+    // Version 7: Add product_id column to offers table
+    private void migrateToV7(SQLiteDatabase db) {
+        try {
+            android.util.Log.d("DatabaseHelper", "Adding product_id column to offers table");
+            
+            // Check if product_id column already exists
+            Cursor cursor = db.rawQuery("PRAGMA table_info(" + TABLE_OFFERS + ")", null);
+            boolean hasProductIdColumn = false;
+            while (cursor.moveToNext()) {
+                String columnName = cursor.getString(1);
+                if (COLUMN_OFFER_PRODUCT_ID.equals(columnName)) {
+                    hasProductIdColumn = true;
+                    break;
                 }
-                cursor.close();
+            }
+            cursor.close();
+            
+            if (!hasProductIdColumn) {
+                // Add the product_id column
+                db.execSQL("ALTER TABLE " + TABLE_OFFERS + " ADD COLUMN " + COLUMN_OFFER_PRODUCT_ID + " INTEGER");
+                android.util.Log.d("DatabaseHelper", "Added product_id column to offers table");
                 
-                if (!hasProductIdColumn) {
-                    // Add the product_id column
-                    db.execSQL("ALTER TABLE " + TABLE_OFFERS + " ADD COLUMN " + COLUMN_OFFER_PRODUCT_ID + " INTEGER");
-                    android.util.Log.d("DatabaseHelper", "Added product_id column to offers table");
+                // Update existing offers with proper product_ids by matching product names
+                Cursor offersCursor = db.rawQuery("SELECT " + COLUMN_OFFER_ID + ", " + COLUMN_OFFER_PRODUCT_NAME + " FROM " + TABLE_OFFERS, null);
+                while (offersCursor.moveToNext()) {
+                    int offerId = offersCursor.getInt(0);
+                    String productName = offersCursor.getString(1);
                     
-                    // Update existing offers with proper product_ids by matching product names
-                    Cursor offersCursor = db.rawQuery("SELECT " + COLUMN_OFFER_ID + ", " + COLUMN_OFFER_PRODUCT_NAME + " FROM " + TABLE_OFFERS, null);
-                    while (offersCursor.moveToNext()) {
-                        int offerId = offersCursor.getInt(0);
-                        String productName = offersCursor.getString(1);
-                        
-                        // Find matching product by name
-                        Cursor productCursor = db.rawQuery("SELECT " + COLUMN_PRODUCT_ID + " FROM " + TABLE_PRODUCTS + " WHERE " + COLUMN_PRODUCT_NAME + " = ?", new String[]{productName});
-                        if (productCursor.moveToFirst()) {
-                            int productId = productCursor.getInt(0);
-                            ContentValues values = new ContentValues();
-                            values.put(COLUMN_OFFER_PRODUCT_ID, productId);
-                            db.update(TABLE_OFFERS, values, COLUMN_OFFER_ID + " = ?", new String[]{String.valueOf(offerId)});
-                            android.util.Log.d("DatabaseHelper", "Updated offer " + offerId + " with product_id " + productId);
-                        }
-                        productCursor.close();
+                    // Find matching product by name
+                    Cursor productCursor = db.rawQuery("SELECT " + COLUMN_PRODUCT_ID + " FROM " + TABLE_PRODUCTS + " WHERE " + COLUMN_PRODUCT_NAME + " = ?", new String[]{productName});
+                    if (productCursor.moveToFirst()) {
+                        int productId = productCursor.getInt(0);
+                        ContentValues values = new ContentValues();
+                        values.put(COLUMN_OFFER_PRODUCT_ID, productId);
+                        db.update(TABLE_OFFERS, values, COLUMN_OFFER_ID + " = ?", new String[]{String.valueOf(offerId)});
+                        DebugLog.d("DatabaseHelper", () -> "Updated offer " + offerId + " with product_id " + productId);
                     }
-                    offersCursor.close();
-                    
-                    android.util.Log.d("DatabaseHelper", "✅ Successfully updated offers table with product_ids");
-                } else {
-                    android.util.Log.d("DatabaseHelper", "product_id column already exists in offers table");
+                    productCursor.close();
                 }
+                offersCursor.close();
                 
-            } catch (Exception e) {
-                android.util.Log.e("DatabaseHelper", "Error adding product_id to offers table", e);
+                android.util.Log.d("DatabaseHelper", "✅ Successfully updated offers table with product_ids");
+            } else {
+                android.util.Log.d("DatabaseHelper", "product_id column already exists in offers table");
             }
+            
+        } catch (Exception e) {
+            android.util.Log.e("DatabaseHelper", "Error adding product_id to offers table", e);
         }
-        
-        android.util.Log.d("DatabaseHelper", "=== END DATABASE UPGRADE ===");
+    }
+
+    // Version 8: secondary indexes, and a unique favorites index for installs
+    // whose favorites table predates the UNIQUE constraint
+    private void migrateToV8(SQLiteDatabase db) {
+        if (!hasUniqueIndex(db, TABLE_FAVORITES)) {
+            db.execSQL("DELETE FROM " + TABLE_FAVORITES + " WHERE " + COLUMN_FAVORITE_ID + " NOT IN (" +
+                    "SELECT MIN(" + COLUMN_FAVORITE_ID + ") FROM " + TABLE_FAVORITES +
+                    " GROUP BY " + COLUMN_FAVORITE_USER_ID + ", " + COLUMN_FAVORITE_PRODUCT_ID + ")");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_favorites_user_product ON " + TABLE_FAVORITES +
+                    "(" + COLUMN_FAVORITE_USER_ID + ", " + COLUMN_FAVORITE_PRODUCT_ID + ")");
+        }
+        createIndexes(db);
+        android.util.Log.d("DatabaseHelper", "✅ Version 8 migration completed - indexes created");
+    }
+
+    // Version 9: full-text search index over existing products
+    private void migrateToV9(SQLiteDatabase db) {
+        createSearchIndex(db);
+        db.execSQL("INSERT INTO " + TABLE_PRODUCTS_FTS + "(" + TABLE_PRODUCTS_FTS + ") VALUES('rebuild')");
+        android.util.Log.d("DatabaseHelper", "✅ Version 9 migration completed - search index built");
+    }
+
+    // Version 11: server ids on products and a table for sync ETags
+    private void migrateToV11(SQLiteDatabase db) {
+        if (!hasColumn(db, TABLE_PRODUCTS, COLUMN_PRODUCT_REMOTE_ID)) {
+            db.execSQL("ALTER TABLE " + TABLE_PRODUCTS + " ADD COLUMN " + COLUMN_PRODUCT_REMOTE_ID + " INTEGER");
+        }
+        if (!hasColumn(db, TABLE_PRODUCTS, COLUMN_PRODUCT_ON_OFFER)) {
+            db.execSQL("ALTER TABLE " + TABLE_PRODUCTS + " ADD COLUMN " + COLUMN_PRODUCT_ON_OFFER + " INTEGER DEFAULT 0");
+        }
+        createCatalogSyncSchema(db);
+        android.util.Log.d("DatabaseHelper", "✅ Version 11 migration completed - catalog sync columns added");
+    }
+
+    // Unique indexes allow any number of NULLs, so local products don't collide
+    private void createCatalogSyncSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_products_remote_id ON " + TABLE_PRODUCTS +
+                "(" + COLUMN_PRODUCT_REMOTE_ID + ")");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_SYNC_STATE + "(" +
+                COLUMN_SYNC_KEY + " TEXT PRIMARY KEY," +
+                COLUMN_SYNC_VALUE + " TEXT" +
+                ")");
+    }
+
+    // Version 12: idempotency keys on orders, and the sync outbox
+    private void migrateToV12(SQLiteDatabase db) {
+        if (!hasColumn(db, TABLE_ORDERS, COLUMN_ORDER_KEY)) {
+            db.execSQL("ALTER TABLE " + TABLE_ORDERS + " ADD COLUMN " + COLUMN_ORDER_KEY + " TEXT");
+        }
+        db.execSQL("UPDATE " + TABLE_ORDERS + " SET " + COLUMN_ORDER_KEY + " = lower(hex(randomblob(16)))" +
+                " WHERE " + COLUMN_ORDER_KEY + " IS NULL");
+        createOrderSyncSchema(db);
+        android.util.Log.d("DatabaseHelper", "✅ Version 12 migration completed - order keys assigned");
+    }
+
+    // addOrder assigns a UUID key; the trigger covers every other insert path
+    private void createOrderSyncSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_orders_order_key ON " + TABLE_ORDERS +
+                "(" + COLUMN_ORDER_KEY + ")");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS orders_key_ai AFTER INSERT ON " + TABLE_ORDERS +
+                " WHEN new." + COLUMN_ORDER_KEY + " IS NULL BEGIN " +
+                "UPDATE " + TABLE_ORDERS + " SET " + COLUMN_ORDER_KEY + " = lower(hex(randomblob(16)))" +
+                " WHERE " + COLUMN_ORDER_ID + " = new." + COLUMN_ORDER_ID + "; END");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_ORDER_OUTBOX + "(" +
+                COLUMN_OUTBOX_ORDER_KEY + " TEXT PRIMARY KEY," +
+                COLUMN_OUTBOX_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0," +
+                COLUMN_OUTBOX_LAST_ATTEMPT_AT + " INTEGER," +
+                COLUMN_OUTBOX_LAST_ERROR + " TEXT" +
+                ")");
+    }
+
+    private void createCartSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CART_ITEMS + "(" +
+                COLUMN_CART_USER_ID + " INTEGER NOT NULL," +
+                COLUMN_CART_PRODUCT_ID + " INTEGER NOT NULL," +
+                COLUMN_CART_QUANTITY + " INTEGER NOT NULL," +
+                COLUMN_CART_ADDED_AT + " INTEGER NOT NULL," +
+                "PRIMARY KEY (" + COLUMN_CART_USER_ID + ", " + COLUMN_CART_PRODUCT_ID + ")" +
+                ")");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_ORDER_HEADERS + "(" +
+                COLUMN_HEADER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_HEADER_CHECKOUT_KEY + " TEXT NOT NULL UNIQUE," +
+                COLUMN_HEADER_USER_ID + " INTEGER NOT NULL," +
+                COLUMN_HEADER_DELIVERY_METHOD + " TEXT," +
+                COLUMN_HEADER_DELIVERY_ADDRESS + " TEXT," +
+                COLUMN_HEADER_ITEM_COUNT + " INTEGER NOT NULL," +
+                COLUMN_HEADER_TOTAL_PRICE + " REAL NOT NULL," +
+                COLUMN_HEADER_ORDER_DATE + " TEXT" +
+                ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_orders_checkout_key ON " + TABLE_ORDERS +
+                "(" + COLUMN_ORDER_CHECKOUT_KEY + ")");
+    }
+
+    private void createReservationSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_STOCK_RESERVATIONS + "(" +
+                COLUMN_RESERVATION_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_RESERVATION_PRODUCT_ID + " INTEGER NOT NULL," +
+                COLUMN_RESERVATION_USER_ID + " INTEGER NOT NULL," +
+                COLUMN_RESERVATION_QUANTITY + " INTEGER NOT NULL," +
+                COLUMN_RESERVATION_EXPIRES_AT + " INTEGER NOT NULL" +
+                ")");
+        // Covers the held-stock sum per product without touching the table
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_reservations_product ON " + TABLE_STOCK_RESERVATIONS +
+                "(" + COLUMN_RESERVATION_PRODUCT_ID + ", " + COLUMN_RESERVATION_EXPIRES_AT + ", " +
+                COLUMN_RESERVATION_QUANTITY + ")");
+        // Lets the sweeper find expired rows oldest first
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_reservations_expires ON " + TABLE_STOCK_RESERVATIONS +
+                "(" + COLUMN_RESERVATION_EXPIRES_AT + ")");
+    }
+
+    // Units of product p held by unexpired reservations; binds one "now" argument
+    private static final String HELD_STOCK_SQL = "(SELECT IFNULL(SUM(r." + COLUMN_RESERVATION_QUANTITY + "), 0) FROM " +
+            TABLE_STOCK_RESERVATIONS + " r WHERE r." + COLUMN_RESERVATION_PRODUCT_ID + " = p." + COLUMN_PRODUCT_ID +
+            " AND r." + COLUMN_RESERVATION_EXPIRES_AT + " > ?)";
+
+    // FTS4 rather than FTS5: the platform SQLite on our minSdk ships FTS3/4 only.
+    // The index stores no copy of the text; it reads rows back from products.
+    private void createSearchIndex(SQLiteDatabase db) {
+        String columns = COLUMN_PRODUCT_NAME + ", " + COLUMN_PRODUCT_CATEGORY + ", " + COLUMN_PRODUCT_DESCRIPTION;
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_PRODUCTS_FTS + " USING fts4(" +
+                    "content=\"" + TABLE_PRODUCTS + "\", " + columns + ", tokenize=unicode61)");
+        } catch (android.database.SQLException e) {
+            // Builds without the unicode61 tokenizer still have the ASCII one
+            android.util.Log.w("DatabaseHelper", "unicode61 tokenizer unavailable, using simple", e);
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_PRODUCTS_FTS + " USING fts4(" +
+                    "content=\"" + TABLE_PRODUCTS + "\", " + columns + ")");
+        }
+
+        String insertNew = "INSERT INTO " + TABLE_PRODUCTS_FTS + "(docid, " + columns + ") VALUES (" +
+                "new." + COLUMN_PRODUCT_ID + ", new." + COLUMN_PRODUCT_NAME + ", " +
+                "new." + COLUMN_PRODUCT_CATEGORY + ", new." + COLUMN_PRODUCT_DESCRIPTION + ");";
+        String deleteOld = "DELETE FROM " + TABLE_PRODUCTS_FTS + " WHERE docid = old." + COLUMN_PRODUCT_ID + ";";
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS products_fts_ai AFTER INSERT ON " + TABLE_PRODUCTS +
+                " BEGIN " + insertNew + " END");
+        // Only the indexed columns; stock changes on every order and must not reindex the row
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS products_fts_bu BEFORE UPDATE OF " + columns + " ON " + TABLE_PRODUCTS +
+                " BEGIN " + deleteOld + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS products_fts_au AFTER UPDATE OF " + columns + " ON " + TABLE_PRODUCTS +
+                " BEGIN " + insertNew + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS products_fts_bd BEFORE DELETE ON " + TABLE_PRODUCTS +
+                " BEGIN " + deleteOld + " END");
+    }
+
+    private boolean hasUniqueIndex(SQLiteDatabase db, String table) {
+        Cursor cursor = db.rawQuery("PRAGMA index_list(" + table + ")", null);
+        int uniqueIndex = cursor.getColumnIndexOrThrow("unique");
+        boolean found = false;
+        while (cursor.moveToNext()) {
+            if (cursor.getInt(uniqueIndex) == 1) {
+                found = true;
+                break;
+            }
+        }
+        cursor.close();
+        return found;
+    }
+
+    private boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        int nameIndex = cursor.getColumnIndexOrThrow("name");
+        boolean found = false;
+        while (cursor.moveToNext()) {
+            if (column.equals(cursor.getString(nameIndex))) {
+                found = true;
+                break;
+            }
+        }
+        cursor.close();
+        return found;
     }
 
     private void insertSampleProducts(SQLiteDatabase db) {
@@ -410,12 +758,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         android.util.Log.d("DatabaseHelper", "Products cursor count: " + cursor.getCount());
 
+        ProductRowMapper mapper = new ProductRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                Product product = cursorToProduct(cursor);
+                Product product = mapper.map(cursor);
                 products.add(product);
                 
-                android.util.Log.d("DatabaseHelper", "Product: " + product.getName() + 
+                DebugLog.d("DatabaseHelper", () -> "Product: " + product.getName() + 
                     " | Image: " + product.getImageUrl() + 
                     " | Category: " + product.getCategory());
             } while (cursor.moveToNext());
@@ -442,34 +791,99 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     public List<Product> searchProducts(String query) {
-        List<Product> products = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        String selection = COLUMN_PRODUCT_NAME + " LIKE ?";
-        String[] selectionArgs = {"%" + query + "%"};
-        
-        Cursor cursor = db.query(TABLE_PRODUCTS, null, selection, selectionArgs, null, null, COLUMN_PRODUCT_NAME);
+        return searchProducts(query, DEFAULT_SEARCH_LIMIT);
+    }
 
-        if (cursor.moveToFirst()) {
-            do {
-                Product product = cursorToProduct(cursor);
-                products.add(product);
-            } while (cursor.moveToNext());
+    /**
+     * Prefix search over name, category and description. Products whose name
+     * starts with the query come first, then name matches, then category and
+     * description matches. A blank query returns the first {@code limit} products.
+     */
+    public List<Product> searchProducts(String query, int limit) {
+        return searchProducts(query, limit, null);
+    }
+
+    // Same as above; cancelling the signal aborts the query with OperationCanceledException
+    public List<Product> searchProducts(String query, int limit, CancellationSignal cancellationSignal) {
+        return getProductsPage(ProductQuery.builder().search(query).build(), -1, null, 0, limit, cancellationSignal);
+    }
+
+    // "fresh app" -> "fresh* app*". Keeps only letters and digits so user input
+    // can never form FTS operators or unbalanced quotes.
+    private static String toPrefixMatchQuery(String query) {
+        if (query == null) {
+            return "";
         }
-        cursor.close();
-        return products;
+        StringBuilder match = new StringBuilder();
+        for (String token : query.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(token).append('*');
+            }
+        }
+        return match.toString();
     }
 
-    public List<Product> getProductsByCategory(String category) {
+    /**
+     * Every product matching {@code query}, in the same order as
+     * {@link #getProductsPage}. All filters run in SQL, so only matching rows
+     * are read.
+     */
+    public List<Product> queryProducts(ProductQuery query) {
+        return getProductsPage(query, -1, null, 0, -1, null);
+    }
+
+    /**
+     * One page of products matching {@code query}, with the user's favorite flag
+     * joined in. Plain browsing is ordered by name and continues after
+     * {@code after} (keyset paging, so deep pages stay cheap). Searches are
+     * ordered by rank, which has no stable key, so they page by {@code offset}.
+     * A negative {@code pageSize} returns all remaining rows.
+     */
+    public List<Product> getProductsPage(ProductQuery query, int userId, Product after, int offset,
+                                         int pageSize, CancellationSignal cancellationSignal) {
         List<Product> products = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
-        String selection = COLUMN_PRODUCT_CATEGORY + " = ?";
-        String[] selectionArgs = {category};
-        
-        Cursor cursor = db.query(TABLE_PRODUCTS, null, selection, selectionArgs, null, null, COLUMN_PRODUCT_NAME);
+        String matchQuery = toPrefixMatchQuery(query.getSearch());
+
+        StringBuilder sql = new StringBuilder("SELECT p.*, f." + COLUMN_FAVORITE_ID + " IS NOT NULL AS is_favorite, " +
+                HELD_STOCK_SQL + " AS " + COLUMN_RESERVED_QUANTITY);
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(System.currentTimeMillis()));
+        appendProductSource(sql, matchQuery);
+        sql.append(" LEFT JOIN " + TABLE_FAVORITES + " f ON f." + COLUMN_FAVORITE_PRODUCT_ID + " = p." + COLUMN_PRODUCT_ID +
+                   " AND f." + COLUMN_FAVORITE_USER_ID + " = ?");
+        args.add(String.valueOf(userId));
+        appendProductFilters(sql, args, query, matchQuery);
+
+        if (matchQuery.isEmpty()) {
+            if (after != null) {
+                sql.append(" AND (p." + COLUMN_PRODUCT_NAME + " > ? OR (p." + COLUMN_PRODUCT_NAME + " = ? AND p." + COLUMN_PRODUCT_ID + " > ?))");
+                args.add(after.getName());
+                args.add(after.getName());
+                args.add(String.valueOf(after.getId()));
+            }
+            sql.append(" ORDER BY p." + COLUMN_PRODUCT_NAME + ", p." + COLUMN_PRODUCT_ID + " LIMIT ?");
+            args.add(String.valueOf(pageSize));
+        } else {
+            sql.append(" ORDER BY CASE WHEN p." + COLUMN_PRODUCT_NAME + " LIKE ? THEN 0 ELSE 1 END," +
+                       " CAST(substr(offsets(" + TABLE_PRODUCTS_FTS + "), 1, 1) AS INTEGER)," +
+                       " p." + COLUMN_PRODUCT_NAME + ", p." + COLUMN_PRODUCT_ID +
+                       " LIMIT ? OFFSET ?");
+            args.add(query.getSearch().replace("%", "").replace("_", "") + "%");
+            args.add(String.valueOf(pageSize));
+            args.add(String.valueOf(offset));
+        }
 
+        Cursor cursor = db.rawQuery(sql.toString(), args.toArray(new String[0]), cancellationSignal);
+        int favoriteIndex = cursor.getColumnIndexOrThrow("is_favorite");
+        ProductRowMapper mapper = new ProductRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                Product product = cursorToProduct(cursor);
+                Product product = mapper.map(cursor);
+                product.setFavorite(cursor.getInt(favoriteIndex) == 1);
                 products.add(product);
             } while (cursor.moveToNext());
         }
@@ -477,22 +891,85 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return products;
     }
 
-    public List<Product> getProductsByPriceRange(double minPrice, double maxPrice) {
-        List<Product> products = new ArrayList<>();
+    // Total number of products matching the query, for the "N products found" label
+    public int countProducts(ProductQuery query, CancellationSignal cancellationSignal) {
         SQLiteDatabase db = this.getReadableDatabase();
-        String selection = COLUMN_PRODUCT_PRICE + " BETWEEN ? AND ?";
-        String[] selectionArgs = {String.valueOf(minPrice), String.valueOf(maxPrice)};
-        
-        Cursor cursor = db.query(TABLE_PRODUCTS, null, selection, selectionArgs, null, null, COLUMN_PRODUCT_NAME);
+        String matchQuery = toPrefixMatchQuery(query.getSearch());
 
-        if (cursor.moveToFirst()) {
-            do {
-                Product product = cursorToProduct(cursor);
-                products.add(product);
-            } while (cursor.moveToNext());
-        }
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*)");
+        List<String> args = new ArrayList<>();
+        appendProductSource(sql, matchQuery);
+        appendProductFilters(sql, args, query, matchQuery);
+
+        Cursor cursor = db.rawQuery(sql.toString(), args.toArray(new String[0]), cancellationSignal);
+        int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
         cursor.close();
-        return products;
+        return count;
+    }
+
+    // FROM clause: straight off products, or through the full-text index when searching
+    private void appendProductSource(StringBuilder sql, String matchQuery) {
+        if (matchQuery.isEmpty()) {
+            sql.append(" FROM " + TABLE_PRODUCTS + " p");
+        } else {
+            sql.append(" FROM " + TABLE_PRODUCTS_FTS +
+                       " JOIN " + TABLE_PRODUCTS + " p ON p." + COLUMN_PRODUCT_ID + " = " + TABLE_PRODUCTS_FTS + ".docid");
+        }
+    }
+
+    // WHERE clause with one condition per filter that is set; always emitted so
+    // callers can keep appending with AND
+    private void appendProductFilters(StringBuilder sql, List<String> args, ProductQuery query, String matchQuery) {
+        sql.append(" WHERE 1");
+        if (query.hasCategory()) {
+            sql.append(" AND p." + COLUMN_PRODUCT_CATEGORY + " = ?");
+            args.add(query.getCategory());
+        }
+        if (query.getMinPrice() != null) {
+            sql.append(" AND p." + COLUMN_PRODUCT_PRICE + " >= ?");
+            args.add(String.valueOf(query.getMinPrice()));
+        }
+        if (query.getMaxPrice() != null) {
+            sql.append(" AND p." + COLUMN_PRODUCT_PRICE + " <= ?");
+            args.add(String.valueOf(query.getMaxPrice()));
+        }
+        if (query.isAvailableOnly()) {
+            sql.append(" AND p." + COLUMN_PRODUCT_AVAILABLE + " = 1");
+        }
+        if (query.hasStockFilter()) {
+            // Stock left after live holds, as Product.getStockStatus() shows it
+            String available = "(p." + COLUMN_PRODUCT_STOCK + " - " + HELD_STOCK_SQL + ")";
+            String now = String.valueOf(System.currentTimeMillis());
+            List<String> levels = new ArrayList<>();
+            for (ProductQuery.StockLevel level : query.getStockLevels()) {
+                switch (level) {
+                    case IN_STOCK:
+                        levels.add(available + " > " + ProductQuery.LOW_STOCK_THRESHOLD);
+                        break;
+                    case LOW_STOCK:
+                        levels.add(available + " BETWEEN 1 AND " + ProductQuery.LOW_STOCK_THRESHOLD);
+                        break;
+                    case OUT_OF_STOCK:
+                        levels.add(available + " <= 0");
+                        break;
+                }
+                args.add(now);
+            }
+            // No level ticked matches nothing
+            sql.append(levels.isEmpty() ? " AND 0" : " AND (" + TextUtils.join(" OR ", levels) + ")");
+        }
+        if (!matchQuery.isEmpty()) {
+            sql.append(" AND " + TABLE_PRODUCTS_FTS + " MATCH ?");
+            args.add(matchQuery);
+        }
+    }
+
+    public List<Product> getProductsByCategory(String category) {
+        return queryProducts(ProductQuery.builder().category(category).build());
+    }
+
+    public List<Product> getProductsByPriceRange(double minPrice, double maxPrice) {
+        return queryProducts(ProductQuery.builder().priceBetween(minPrice, maxPrice).build());
     }
 
     public List<String> getAllCategories() {
@@ -510,33 +987,65 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return categories;
     }
 
+    // Single row; loops should create one ProductRowMapper per cursor instead
     private Product cursorToProduct(Cursor cursor) {
-        Product product = new Product();
-        product.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_ID)));
-        product.setName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_NAME)));
-        product.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_CATEGORY)));
-        product.setPrice(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_PRICE)));
-        product.setStockQuantity(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_STOCK)));
-        product.setImageUrl(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_IMAGE)));
-        product.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_DESCRIPTION)));
-        product.setAvailable(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_AVAILABLE)) == 1);
-        return product;
+        return new ProductRowMapper(cursor).map(cursor);
+    }
+
+    /**
+     * Reads Products off a cursor. Column indexes are looked up once when the
+     * mapper is created, not for every column of every row.
+     */
+    public static final class ProductRowMapper {
+        private final int id;
+        private final int name;
+        private final int category;
+        private final int price;
+        private final int stock;
+        private final int image;
+        private final int description;
+        private final int available;
+        // -1 when the query doesn't compute held stock
+        private final int reserved;
+
+        public ProductRowMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_ID);
+            name = cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_NAME);
+            category = cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_CATEGORY);
+            price = cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_PRICE);
+            stock = cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_STOCK);
+            image = cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_IMAGE);
+            description = cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_DESCRIPTION);
+            available = cursor.getColumnIndexOrThrow(COLUMN_PRODUCT_AVAILABLE);
+            reserved = cursor.getColumnIndex(COLUMN_RESERVED_QUANTITY);
+        }
+
+        public Product map(Cursor cursor) {
+            Product product = new Product();
+            product.setId(cursor.getInt(id));
+            product.setName(cursor.getString(name));
+            product.setCategory(cursor.getString(category));
+            product.setPrice(cursor.getDouble(price));
+            product.setStockQuantity(cursor.getInt(stock));
+            product.setImageUrl(cursor.getString(image));
+            product.setDescription(cursor.getString(description));
+            product.setAvailable(cursor.getInt(available) == 1);
+            if (reserved != -1) {
+                product.setReservedQuantity(cursor.getInt(reserved));
+            }
+            return product;
+        }
     }
 
     // Favorites methods
     public boolean addToFavorites(int userId, int productId) {
-        // First check if it's already in favorites
-        if (isProductFavorite(userId, productId)) {
-            android.util.Log.d("DatabaseHelper", "Product " + productId + " is already in favorites for user " + userId);
-            return false; // Already in favorites
-        }
-        
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(COLUMN_FAVORITE_USER_ID, userId);
         values.put(COLUMN_FAVORITE_PRODUCT_ID, productId);
         
-        long result = db.insert(TABLE_FAVORITES, null, values);
+        // The UNIQUE(user_id, product_id) constraint rejects duplicates, so no lookup first
+        long result = db.insertWithOnConflict(TABLE_FAVORITES, null, values, SQLiteDatabase.CONFLICT_IGNORE);
         boolean success = result != -1;
         
         android.util.Log.d("DatabaseHelper", "Adding to favorites - User: " + userId + 
@@ -565,27 +1074,57 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return isFavorite;
     }
 
+    // Single pass over products with the user's favorite flag joined in,
+    // instead of one isProductFavorite query per product
+    public List<Product> getAllProductsWithFavorites(int userId) {
+        List<Product> products = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        String query = "SELECT p.*, f." + COLUMN_FAVORITE_ID + " IS NOT NULL AS is_favorite, " +
+                       HELD_STOCK_SQL + " AS " + COLUMN_RESERVED_QUANTITY +
+                       " FROM " + TABLE_PRODUCTS + " p" +
+                       " LEFT JOIN " + TABLE_FAVORITES + " f ON f." + COLUMN_FAVORITE_PRODUCT_ID + " = p." + COLUMN_PRODUCT_ID +
+                       " AND f." + COLUMN_FAVORITE_USER_ID + " = ?" +
+                       " ORDER BY p." + COLUMN_PRODUCT_NAME;
+
+        Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(System.currentTimeMillis()), String.valueOf(userId)});
+        int favoriteIndex = cursor.getColumnIndexOrThrow("is_favorite");
+
+        ProductRowMapper mapper = new ProductRowMapper(cursor);
+        if (cursor.moveToFirst()) {
+            do {
+                Product product = mapper.map(cursor);
+                product.setFavorite(cursor.getInt(favoriteIndex) == 1);
+                products.add(product);
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+        return products;
+    }
+
     public List<Product> getFavoriteProducts(int userId) {
         List<Product> favoriteProducts = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
         
         android.util.Log.d("DatabaseHelper", "=== LOADING FAVORITE PRODUCTS FOR USER " + userId + " ===");
         
-        String query = "SELECT p.* FROM " + TABLE_PRODUCTS + " p " +
+        String query = "SELECT p.*, " + HELD_STOCK_SQL + " AS " + COLUMN_RESERVED_QUANTITY +
+                       " FROM " + TABLE_PRODUCTS + " p " +
                        "INNER JOIN " + TABLE_FAVORITES + " f ON p." + COLUMN_PRODUCT_ID + " = f." + COLUMN_FAVORITE_PRODUCT_ID +
                        " WHERE f." + COLUMN_FAVORITE_USER_ID + " = ? " +
                        "ORDER BY f." + COLUMN_FAVORITE_ID + " DESC"; // Show most recently added first
         
-        Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(userId)});
+        Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(System.currentTimeMillis()), String.valueOf(userId)});
         
         android.util.Log.d("DatabaseHelper", "Found " + cursor.getCount() + " favorite products");
 
+        ProductRowMapper mapper = new ProductRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                Product product = cursorToProduct(cursor);
+                Product product = mapper.map(cursor);
                 product.setFavorite(true);
                 
-                android.util.Log.d("DatabaseHelper", "FAVORITE PRODUCT: " + product.getName() + 
+                DebugLog.d("DatabaseHelper", () -> "FAVORITE PRODUCT: " + product.getName() + 
                     " | ID: " + product.getId() + 
                     " | Image: " + product.getImageUrl() + 
                     " | Category: " + product.getCategory() + 
@@ -601,22 +1140,47 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     // Order methods
+    /**
+     * Places an order and takes its quantity off the product's stock in one
+     * transaction. The stock check and the decrement are a single conditional
+     * UPDATE, so concurrent orders can't both pass the check and oversell.
+     * Returns the new order id, -1 if the product doesn't exist, -2 if there
+     * isn't enough stock, -3 if the quantity isn't positive, or -4 if the
+     * order row couldn't be written.
+     */
     public long addOrder(Order order) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        
-        // First check if there's enough stock
-        Product product = getProductById(order.getProductId());
-        if (product == null) {
-            return -1; // Product not found
-        }
-        
-        if (product.getStockQuantity() < order.getQuantity()) {
-            return -2; // Insufficient stock
+        return addOrder(order, -1);
+    }
+
+    /**
+     * Places an order using the stock held by {@code reservationId} (from
+     * reserveStock), which is consumed in the same transaction. Other
+     * shoppers' holds are never sold, and a reservation id that isn't this
+     * user's hold on this product is ignored rather than released. Pass -1
+     * when nothing was reserved.
+     */
+    public long addOrder(Order order, long reservationId) {
+        if (order.getQuantity() <= 0) {
+            return -3; // A zero or negative "order" would add to stock
         }
+        SQLiteDatabase db = this.getWritableDatabase();
         
         // Start transaction to ensure data consistency
         db.beginTransaction();
         try {
+            if (reservationId > 0) {
+                // Only the shopper's own hold on this product; any other id is ignored
+                db.delete(TABLE_STOCK_RESERVATIONS, COLUMN_RESERVATION_ID + " = ? AND " +
+                        COLUMN_RESERVATION_PRODUCT_ID + " = ? AND " + COLUMN_RESERVATION_USER_ID + " = ?",
+                        new String[]{String.valueOf(reservationId), String.valueOf(order.getProductId()),
+                                String.valueOf(order.getUserId())});
+            }
+            if (!takeStock(db, order.getProductId(), order.getQuantity())) {
+                return productExists(db, order.getProductId())
+                        ? -2 // Insufficient stock
+                        : -1; // Product not found
+            }
+
             // Add the order
             ContentValues values = new ContentValues();
             values.put(COLUMN_ORDER_USER_ID, order.getUserId());
@@ -630,28 +1194,360 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             values.put(COLUMN_ORDER_DATE, order.getOrderDate());
             values.put(COLUMN_ORDER_DELIVERY_ADDRESS, order.getDeliveryAddress());
             values.put(COLUMN_ORDER_SYNCED, order.isSynced() ? 1 : 0);
+            if (order.getOrderKey() == null) {
+                order.setOrderKey(UUID.randomUUID().toString());
+            }
+            values.put(COLUMN_ORDER_KEY, order.getOrderKey());
             
             long orderId = db.insert(TABLE_ORDERS, null, values);
-            
-            if (orderId != -1) {
-                // Update product stock
-                int newStock = product.getStockQuantity() - order.getQuantity();
-                ContentValues stockValues = new ContentValues();
-                stockValues.put(COLUMN_PRODUCT_STOCK, newStock);
-                stockValues.put(COLUMN_PRODUCT_AVAILABLE, newStock > 0 ? 1 : 0);
-                
-                int updated = db.update(TABLE_PRODUCTS, stockValues, 
-                    COLUMN_PRODUCT_ID + " = ?", new String[]{String.valueOf(order.getProductId())});
-                
-                if (updated > 0) {
-                    db.setTransactionSuccessful();
-                    return orderId;
-                } else {
-                    return -3; // Failed to update stock
+            if (orderId == -1) {
+                return -4; // Failed to add order; the stock change rolls back
+            }
+            db.setTransactionSuccessful();
+            return orderId;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Decrements stock only if enough is left beyond other shoppers' holds;
+    // SET expressions see the old stock, so availability follows the value
+    // being written
+    private boolean takeStock(SQLiteDatabase db, int productId, int quantity) {
+        SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_PRODUCTS + " SET " +
+                COLUMN_PRODUCT_STOCK + " = " + COLUMN_PRODUCT_STOCK + " - ?1, " +
+                COLUMN_PRODUCT_AVAILABLE + " = CASE WHEN " + COLUMN_PRODUCT_STOCK + " - ?1 > 0 THEN 1 ELSE 0 END" +
+                " WHERE " + COLUMN_PRODUCT_ID + " = ?2 AND " + COLUMN_PRODUCT_STOCK + " - " + heldStockSql("?2", "?3") +
+                " >= ?1");
+        try {
+            statement.bindLong(1, quantity);
+            statement.bindLong(2, productId);
+            statement.bindLong(3, System.currentTimeMillis());
+            return statement.executeUpdateDelete() == 1;
+        } finally {
+            statement.close();
+        }
+    }
+
+    // Held-stock sum for the product named by productRef, counting holds that
+    // expire after nowRef
+    private static String heldStockSql(String productRef, String nowRef) {
+        // Aliased so productRef can name a column of an outer stock_reservations row
+        return "(SELECT IFNULL(SUM(h." + COLUMN_RESERVATION_QUANTITY + "), 0) FROM " + TABLE_STOCK_RESERVATIONS +
+                " h WHERE h." + COLUMN_RESERVATION_PRODUCT_ID + " = " + productRef +
+                " AND h." + COLUMN_RESERVATION_EXPIRES_AT + " > " + nowRef + ")";
+    }
+
+    // Stock reservations
+
+    /**
+     * Holds {@code quantity} units of a product for {@code ttlMillis}, if
+     * that many are left after everyone else's unexpired holds. The check and
+     * the insert are one statement. Returns the reservation id, -1 if the
+     * product doesn't exist, -2 if there isn't enough free stock, or -3 if
+     * the quantity isn't positive.
+     */
+    public long reserveStock(int userId, int productId, int quantity, long ttlMillis) {
+        if (quantity <= 0) {
+            return -3; // A negative hold would add to available stock
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        SQLiteStatement statement = db.compileStatement("INSERT INTO " + TABLE_STOCK_RESERVATIONS + " (" +
+                COLUMN_RESERVATION_PRODUCT_ID + ", " + COLUMN_RESERVATION_USER_ID + ", " +
+                COLUMN_RESERVATION_QUANTITY + ", " + COLUMN_RESERVATION_EXPIRES_AT + ")" +
+                " SELECT ?1, ?2, ?3, ?4 FROM " + TABLE_PRODUCTS + " WHERE " + COLUMN_PRODUCT_ID + " = ?1 AND " +
+                COLUMN_PRODUCT_STOCK + " - " + heldStockSql("?1", "?5") + " >= ?3");
+        db.beginTransaction();
+        try {
+            statement.bindLong(1, productId);
+            statement.bindLong(2, userId);
+            statement.bindLong(3, quantity);
+            statement.bindLong(4, now + ttlMillis);
+            statement.bindLong(5, now);
+            long reservationId = statement.executeInsert();
+            if (reservationId == -1) {
+                return productExists(db, productId) ? -2 : -1;
+            }
+            db.setTransactionSuccessful();
+            return reservationId;
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
+    /**
+     * Changes how much a live reservation holds and pushes its expiry out
+     * again. Returns false, leaving the hold as it was, if the new quantity
+     * isn't free or the reservation has already expired. Throws
+     * IllegalArgumentException for a quantity that isn't positive; release
+     * the reservation instead of shrinking it to nothing.
+     */
+    public boolean updateReservation(long reservationId, int quantity, long ttlMillis) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Reservation quantity must be positive: " + quantity);
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        // Everyone else's holds: the sum minus this reservation's own quantity
+        SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_STOCK_RESERVATIONS + " SET " +
+                COLUMN_RESERVATION_QUANTITY + " = ?1, " + COLUMN_RESERVATION_EXPIRES_AT + " = ?2" +
+                " WHERE " + COLUMN_RESERVATION_ID + " = ?3 AND " + COLUMN_RESERVATION_EXPIRES_AT + " > ?4 AND" +
+                " (SELECT " + COLUMN_PRODUCT_STOCK + " FROM " + TABLE_PRODUCTS + " WHERE " + COLUMN_PRODUCT_ID + " = " +
+                TABLE_STOCK_RESERVATIONS + "." + COLUMN_RESERVATION_PRODUCT_ID + ") - " +
+                heldStockSql(TABLE_STOCK_RESERVATIONS + "." + COLUMN_RESERVATION_PRODUCT_ID, "?4") +
+                " + " + TABLE_STOCK_RESERVATIONS + "." + COLUMN_RESERVATION_QUANTITY + " >= ?1");
+        try {
+            statement.bindLong(1, quantity);
+            statement.bindLong(2, now + ttlMillis);
+            statement.bindLong(3, reservationId);
+            statement.bindLong(4, now);
+            return statement.executeUpdateDelete() == 1;
+        } finally {
+            statement.close();
+        }
+    }
+
+    public boolean releaseReservation(long reservationId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        return db.delete(TABLE_STOCK_RESERVATIONS, COLUMN_RESERVATION_ID + " = ?",
+                new String[]{String.valueOf(reservationId)}) > 0;
+    }
+
+    // Stock left to sell: on hand minus unexpired holds
+    public int getAvailableStock(int productId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return (int) DatabaseUtils.longForQuery(db, "SELECT p." + COLUMN_PRODUCT_STOCK + " - " + HELD_STOCK_SQL +
+                " FROM " + TABLE_PRODUCTS + " p WHERE p." + COLUMN_PRODUCT_ID + " = ?",
+                new String[]{String.valueOf(System.currentTimeMillis()), String.valueOf(productId)});
+    }
+
+    /**
+     * Deletes expired reservations, {@code batchSize} rows per transaction so
+     * the sweep never holds the write lock for long. Expired rows already
+     * stopped counting against stock; this only keeps the table small.
+     * Returns how many were deleted.
+     */
+    public int expireReservations(int batchSize) {
+        if (batchSize <= 0) {
+            // LIMIT 0 would loop forever and a negative LIMIT means no limit
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement("DELETE FROM " + TABLE_STOCK_RESERVATIONS +
+                " WHERE " + COLUMN_RESERVATION_ID + " IN (SELECT " + COLUMN_RESERVATION_ID + " FROM " +
+                TABLE_STOCK_RESERVATIONS + " WHERE " + COLUMN_RESERVATION_EXPIRES_AT + " <= ? ORDER BY " +
+                COLUMN_RESERVATION_EXPIRES_AT + " LIMIT ?)");
+        int expired = 0;
+        try {
+            int deleted;
+            do {
+                statement.bindLong(1, System.currentTimeMillis());
+                statement.bindLong(2, batchSize);
+                deleted = statement.executeUpdateDelete();
+                expired += deleted;
+            } while (deleted == batchSize);
+        } finally {
+            statement.close();
+        }
+        return expired;
+    }
+
+    private void restoreStock(SQLiteDatabase db, int productId, int quantity) {
+        SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_PRODUCTS + " SET " +
+                COLUMN_PRODUCT_STOCK + " = " + COLUMN_PRODUCT_STOCK + " + ?, " +
+                COLUMN_PRODUCT_AVAILABLE + " = 1 WHERE " + COLUMN_PRODUCT_ID + " = ?");
+        try {
+            statement.bindLong(1, quantity);
+            statement.bindLong(2, productId);
+            statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    // Takes up to quantity, stopping at zero and ignoring holds; for changes the
+    // server has already made that the local stock count has to follow
+    private void drainStock(SQLiteDatabase db, int productId, int quantity) {
+        SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_PRODUCTS + " SET " +
+                COLUMN_PRODUCT_STOCK + " = MAX(" + COLUMN_PRODUCT_STOCK + " - ?1, 0), " +
+                COLUMN_PRODUCT_AVAILABLE + " = CASE WHEN " + COLUMN_PRODUCT_STOCK + " - ?1 > 0 THEN 1 ELSE 0 END" +
+                " WHERE " + COLUMN_PRODUCT_ID + " = ?2");
+        try {
+            statement.bindLong(1, quantity);
+            statement.bindLong(2, productId);
+            statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private boolean productExists(SQLiteDatabase db, int productId) {
+        return DatabaseUtils.queryNumEntries(db, TABLE_PRODUCTS, COLUMN_PRODUCT_ID + " = ?",
+                new String[]{String.valueOf(productId)}) > 0;
+    }
+
+    // Cart
+
+    // Adds to the quantity already in the cart, or starts a new line
+    public boolean addToCart(int userId, int productId, int quantity) {
+        if (quantity <= 0) {
+            return false; // Use setCartQuantity or removeFromCart to shrink a line
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement addQuantity = db.compileStatement("UPDATE " + TABLE_CART_ITEMS + " SET " +
+                COLUMN_CART_QUANTITY + " = " + COLUMN_CART_QUANTITY + " + ? WHERE " +
+                COLUMN_CART_USER_ID + " = ? AND " + COLUMN_CART_PRODUCT_ID + " = ?");
+        db.beginTransaction();
+        try {
+            addQuantity.bindLong(1, quantity);
+            addQuantity.bindLong(2, userId);
+            addQuantity.bindLong(3, productId);
+            if (addQuantity.executeUpdateDelete() == 0) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_CART_USER_ID, userId);
+                values.put(COLUMN_CART_PRODUCT_ID, productId);
+                values.put(COLUMN_CART_QUANTITY, quantity);
+                values.put(COLUMN_CART_ADDED_AT, System.currentTimeMillis());
+                if (db.insert(TABLE_CART_ITEMS, null, values) == -1) {
+                    return false;
                 }
             }
-            
-            return -4; // Failed to add order
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+            addQuantity.close();
+        }
+    }
+
+    // A quantity of zero or less removes the line
+    public boolean setCartQuantity(int userId, int productId, int quantity) {
+        if (quantity <= 0) {
+            return removeFromCart(userId, productId);
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_CART_QUANTITY, quantity);
+        return db.update(TABLE_CART_ITEMS, values, COLUMN_CART_USER_ID + " = ? AND " + COLUMN_CART_PRODUCT_ID + " = ?",
+                new String[]{String.valueOf(userId), String.valueOf(productId)}) > 0;
+    }
+
+    public boolean removeFromCart(int userId, int productId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        return db.delete(TABLE_CART_ITEMS, COLUMN_CART_USER_ID + " = ? AND " + COLUMN_CART_PRODUCT_ID + " = ?",
+                new String[]{String.valueOf(userId), String.valueOf(productId)}) > 0;
+    }
+
+    public void clearCart(int userId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.delete(TABLE_CART_ITEMS, COLUMN_CART_USER_ID + " = ?", new String[]{String.valueOf(userId)});
+    }
+
+    // Cart lines in the order they were added, with current product details
+    public List<CartItem> getCartItems(int userId) {
+        return readCartItems(this.getReadableDatabase(), userId);
+    }
+
+    private List<CartItem> readCartItems(SQLiteDatabase db, int userId) {
+        List<CartItem> items = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT p." + COLUMN_PRODUCT_ID + ", p." + COLUMN_PRODUCT_NAME + ", p." +
+                COLUMN_PRODUCT_PRICE + ", c." + COLUMN_CART_QUANTITY + ", p." + COLUMN_PRODUCT_STOCK +
+                " FROM " + TABLE_CART_ITEMS + " c JOIN " + TABLE_PRODUCTS + " p ON p." + COLUMN_PRODUCT_ID +
+                " = c." + COLUMN_CART_PRODUCT_ID + " WHERE c." + COLUMN_CART_USER_ID + " = ?" +
+                " ORDER BY c." + COLUMN_CART_ADDED_AT + ", c." + COLUMN_CART_PRODUCT_ID,
+                new String[]{String.valueOf(userId)});
+        while (cursor.moveToNext()) {
+            items.add(new CartItem(cursor.getInt(0), cursor.getString(1), cursor.getDouble(2),
+                    cursor.getInt(3), cursor.getInt(4)));
+        }
+        cursor.close();
+        return items;
+    }
+
+    // Total units in the cart, for badges and button labels
+    public int getCartItemCount(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return (int) DatabaseUtils.longForQuery(db, "SELECT IFNULL(SUM(" + COLUMN_CART_QUANTITY + "), 0) FROM " +
+                TABLE_CART_ITEMS + " WHERE " + COLUMN_CART_USER_ID + " = ?", new String[]{String.valueOf(userId)});
+    }
+
+    /**
+     * Turns the user's cart into one order in a single transaction: stock is
+     * taken for every line, a header row is written, each line becomes an
+     * orders row carrying the header's checkout key, and the cart is emptied.
+     * If any line is short of stock nothing is written and the cart is kept.
+     * Returns the header id, -1 if the cart is empty, -2 if a line is short
+     * of stock, -3 if a line's quantity isn't positive, or -4 if a row
+     * couldn't be written.
+     */
+    public long checkoutCart(int userId, String deliveryMethod, String deliveryAddress) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String checkoutKey = UUID.randomUUID().toString();
+        String orderDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
+        db.beginTransaction();
+        try {
+            List<CartItem> items = readCartItems(db, userId);
+            if (items.isEmpty()) {
+                return -1;
+            }
+            int itemCount = 0;
+            double total = 0;
+            for (CartItem item : items) {
+                if (item.getQuantity() <= 0) {
+                    return -3; // Would add to stock; nothing has been taken yet for this line
+                }
+                if (!takeStock(db, item.getProductId(), item.getQuantity())) {
+                    return -2; // Insufficient stock; the endTransaction rolls back earlier lines
+                }
+                itemCount += item.getQuantity();
+                total += item.getLineTotal();
+            }
+
+            ContentValues header = new ContentValues();
+            header.put(COLUMN_HEADER_CHECKOUT_KEY, checkoutKey);
+            header.put(COLUMN_HEADER_USER_ID, userId);
+            header.put(COLUMN_HEADER_DELIVERY_METHOD, deliveryMethod);
+            header.put(COLUMN_HEADER_DELIVERY_ADDRESS, deliveryAddress);
+            header.put(COLUMN_HEADER_ITEM_COUNT, itemCount);
+            header.put(COLUMN_HEADER_TOTAL_PRICE, total);
+            header.put(COLUMN_HEADER_ORDER_DATE, orderDate);
+            long headerId = db.insert(TABLE_ORDER_HEADERS, null, header);
+            if (headerId == -1) {
+                return -4;
+            }
+
+            SQLiteStatement insertLine = db.compileStatement("INSERT INTO " + TABLE_ORDERS + " (" +
+                    COLUMN_ORDER_USER_ID + ", " + COLUMN_ORDER_PRODUCT_ID + ", " + COLUMN_ORDER_PRODUCT_NAME + ", " +
+                    COLUMN_ORDER_QUANTITY + ", " + COLUMN_ORDER_UNIT_PRICE + ", " + COLUMN_ORDER_TOTAL_PRICE + ", " +
+                    COLUMN_ORDER_DELIVERY_METHOD + ", " + COLUMN_ORDER_STATUS + ", " + COLUMN_ORDER_DATE + ", " +
+                    COLUMN_ORDER_DELIVERY_ADDRESS + ", " + COLUMN_ORDER_SYNCED + ", " + COLUMN_ORDER_KEY + ", " +
+                    COLUMN_ORDER_CHECKOUT_KEY + ") VALUES (?, ?, ?, ?, ?, ?, ?, 'pending', ?, ?, 0, ?, ?)");
+            try {
+                for (CartItem item : items) {
+                    insertLine.bindLong(1, userId);
+                    insertLine.bindLong(2, item.getProductId());
+                    insertLine.bindString(3, item.getProductName());
+                    insertLine.bindLong(4, item.getQuantity());
+                    insertLine.bindDouble(5, item.getUnitPrice());
+                    insertLine.bindDouble(6, item.getLineTotal());
+                    bindStringOrNull(insertLine, 7, deliveryMethod);
+                    insertLine.bindString(8, orderDate);
+                    bindStringOrNull(insertLine, 9, deliveryAddress);
+                    insertLine.bindString(10, UUID.randomUUID().toString());
+                    insertLine.bindString(11, checkoutKey);
+                    if (insertLine.executeInsert() == -1) {
+                        return -4;
+                    }
+                }
+            } finally {
+                insertLine.close();
+            }
+
+            db.delete(TABLE_CART_ITEMS, COLUMN_CART_USER_ID + " = ?", new String[]{String.valueOf(userId)});
+            db.setTransactionSuccessful();
+            return headerId;
         } finally {
             db.endTransaction();
         }
@@ -665,9 +1561,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         
         Cursor cursor = db.query(TABLE_ORDERS, null, selection, selectionArgs, null, null, COLUMN_ORDER_DATE + " DESC");
 
+        OrderRowMapper mapper = new OrderRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                Order order = cursorToOrder(cursor);
+                Order order = mapper.map(cursor);
                 orders.add(order);
             } while (cursor.moveToNext());
         }
@@ -675,21 +1572,58 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return orders;
     }
 
-    private Order cursorToOrder(Cursor cursor) {
-        Order order = new Order();
-        order.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ORDER_ID)));
-        order.setUserId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ORDER_USER_ID)));
-        order.setProductId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ORDER_PRODUCT_ID)));
-        order.setProductName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORDER_PRODUCT_NAME)));
-        order.setQuantity(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ORDER_QUANTITY)));
-        order.setUnitPrice(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_ORDER_UNIT_PRICE)));
-        order.setTotalPrice(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_ORDER_TOTAL_PRICE)));
-        order.setDeliveryMethod(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORDER_DELIVERY_METHOD)));
-        order.setStatus(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORDER_STATUS)));
-        order.setOrderDate(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORDER_DATE)));
-        order.setDeliveryAddress(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORDER_DELIVERY_ADDRESS)));
-        order.setSynced(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ORDER_SYNCED)) == 1);
-        return order;
+    /** Reads Orders off a cursor, with column indexes looked up once per cursor. */
+    public static final class OrderRowMapper {
+        private final int id;
+        private final int userId;
+        private final int productId;
+        private final int productName;
+        private final int quantity;
+        private final int unitPrice;
+        private final int totalPrice;
+        private final int deliveryMethod;
+        private final int status;
+        private final int orderDate;
+        private final int deliveryAddress;
+        private final int synced;
+        private final int orderKey;
+        private final int checkoutKey;
+
+        public OrderRowMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(COLUMN_ORDER_ID);
+            userId = cursor.getColumnIndexOrThrow(COLUMN_ORDER_USER_ID);
+            productId = cursor.getColumnIndexOrThrow(COLUMN_ORDER_PRODUCT_ID);
+            productName = cursor.getColumnIndexOrThrow(COLUMN_ORDER_PRODUCT_NAME);
+            quantity = cursor.getColumnIndexOrThrow(COLUMN_ORDER_QUANTITY);
+            unitPrice = cursor.getColumnIndexOrThrow(COLUMN_ORDER_UNIT_PRICE);
+            totalPrice = cursor.getColumnIndexOrThrow(COLUMN_ORDER_TOTAL_PRICE);
+            deliveryMethod = cursor.getColumnIndexOrThrow(COLUMN_ORDER_DELIVERY_METHOD);
+            status = cursor.getColumnIndexOrThrow(COLUMN_ORDER_STATUS);
+            orderDate = cursor.getColumnIndexOrThrow(COLUMN_ORDER_DATE);
+            deliveryAddress = cursor.getColumnIndexOrThrow(COLUMN_ORDER_DELIVERY_ADDRESS);
+            synced = cursor.getColumnIndexOrThrow(COLUMN_ORDER_SYNCED);
+            orderKey = cursor.getColumnIndexOrThrow(COLUMN_ORDER_KEY);
+            checkoutKey = cursor.getColumnIndexOrThrow(COLUMN_ORDER_CHECKOUT_KEY);
+        }
+
+        public Order map(Cursor cursor) {
+            Order order = new Order();
+            order.setId(cursor.getInt(id));
+            order.setUserId(cursor.getInt(userId));
+            order.setProductId(cursor.getInt(productId));
+            order.setProductName(cursor.getString(productName));
+            order.setQuantity(cursor.getInt(quantity));
+            order.setUnitPrice(cursor.getDouble(unitPrice));
+            order.setTotalPrice(cursor.getDouble(totalPrice));
+            order.setDeliveryMethod(cursor.getString(deliveryMethod));
+            order.setStatus(cursor.getString(status));
+            order.setOrderDate(cursor.getString(orderDate));
+            order.setDeliveryAddress(cursor.getString(deliveryAddress));
+            order.setSynced(cursor.getInt(synced) == 1);
+            order.setOrderKey(cursor.getString(orderKey));
+            order.setCheckoutKey(cursor.getString(checkoutKey));
+            return order;
+        }
     }
 
     // Order status management methods
@@ -704,6 +1638,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             ContentValues values = new ContentValues();
             values.put(COLUMN_ORDER_STATUS, newStatus);
             values.put(COLUMN_ORDER_SYNCED, 0); // Mark as unsynced since status changed
+            values.put(COLUMN_ORDER_STATUS_CHANGE_KEY, UUID.randomUUID().toString());
             
             int rowsAffected = db.update(TABLE_ORDERS, values, 
                 COLUMN_ORDER_ID + " = ?", new String[]{String.valueOf(orderId)});
@@ -711,56 +1646,38 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
+    // The status flip is conditional, so two cancels of the same order
+    // restore its stock only once
     private boolean cancelOrderAndRestoreStock(int orderId, SQLiteDatabase db) {
+        String[] selectionArgs = {String.valueOf(orderId)};
         // Start transaction to ensure data consistency
         db.beginTransaction();
         try {
-            // First get the order details
-            String selection = COLUMN_ORDER_ID + " = ?";
-            String[] selectionArgs = {String.valueOf(orderId)};
-            
-            Cursor cursor = db.query(TABLE_ORDERS, null, selection, selectionArgs, null, null, null);
-            
-            if (!cursor.moveToFirst()) {
-                cursor.close();
-                return false; // Order not found
-            }
-            
-            Order order = cursorToOrder(cursor);
-            cursor.close();
-            
-            // Check if order is already cancelled
-            if ("cancelled".equals(order.getStatus())) {
-                db.setTransactionSuccessful();
-                return true; // Already cancelled, nothing to do
+            int productId;
+            int quantity;
+            try (Cursor cursor = db.query(TABLE_ORDERS,
+                    new String[]{COLUMN_ORDER_PRODUCT_ID, COLUMN_ORDER_QUANTITY},
+                    COLUMN_ORDER_ID + " = ?", selectionArgs, null, null, null)) {
+                if (!cursor.moveToFirst()) {
+                    return false; // Order not found
+                }
+                productId = cursor.getInt(0);
+                quantity = cursor.getInt(1);
             }
-            
-            // Update order status to cancelled
+
             ContentValues orderValues = new ContentValues();
             orderValues.put(COLUMN_ORDER_STATUS, "cancelled");
             orderValues.put(COLUMN_ORDER_SYNCED, 0);
-            
-            int orderUpdated = db.update(TABLE_ORDERS, orderValues, 
-                COLUMN_ORDER_ID + " = ?", new String[]{String.valueOf(orderId)});
-            
-            if (orderUpdated > 0) {
-                // Restore the stock for the product
-                Product product = getProductById(order.getProductId());
-                if (product != null) {
-                    int newStock = product.getStockQuantity() + order.getQuantity();
-                    ContentValues stockValues = new ContentValues();
-                    stockValues.put(COLUMN_PRODUCT_STOCK, newStock);
-                    stockValues.put(COLUMN_PRODUCT_AVAILABLE, 1); // Make available again
-                    
-                    db.update(TABLE_PRODUCTS, stockValues, 
-                        COLUMN_PRODUCT_ID + " = ?", new String[]{String.valueOf(order.getProductId())});
-                }
-                
-                db.setTransactionSuccessful();
-                return true;
+            orderValues.put(COLUMN_ORDER_STATUS_CHANGE_KEY, UUID.randomUUID().toString());
+            int cancelled = db.update(TABLE_ORDERS, orderValues,
+                COLUMN_ORDER_ID + " = ? AND " + COLUMN_ORDER_STATUS + " != 'cancelled'", selectionArgs);
+
+            // Nothing changed if it was already cancelled
+            if (cancelled > 0) {
+                restoreStock(db, productId, quantity);
             }
-            
-            return false;
+            db.setTransactionSuccessful();
+            return true;
         } finally {
             db.endTransaction();
         }
@@ -780,9 +1697,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor cursor = db.query(TABLE_ORDERS, null, selection, selectionArgs, 
             null, null, COLUMN_ORDER_DATE + " DESC");
         
+        OrderRowMapper mapper = new OrderRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                orders.add(cursorToOrder(cursor));
+                orders.add(mapper.map(cursor));
             } while (cursor.moveToNext());
         }
         cursor.close();
@@ -831,9 +1749,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor cursor = db.query(TABLE_ORDERS, null, selection, selectionArgs, 
             null, null, COLUMN_ORDER_DATE + " DESC");
         
+        OrderRowMapper mapper = new OrderRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                orders.add(cursorToOrder(cursor));
+                orders.add(mapper.map(cursor));
             } while (cursor.moveToNext());
         }
         cursor.close();
@@ -841,13 +1760,208 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     public boolean markOrderAsSynced(int orderId) {
+        return markOrdersAsSynced(Collections.singletonList(orderId)) > 0;
+    }
+
+    // Marks an uploaded batch in one transaction and clears its outbox
+    // entries; returns how many orders changed
+    public int markOrdersAsSynced(List<Integer> orderIds) {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_ORDER_SYNCED, 1);
-        
-        int rowsAffected = db.update(TABLE_ORDERS, values, 
-            COLUMN_ORDER_ID + " = ?", new String[]{String.valueOf(orderId)});
-        return rowsAffected > 0;
+        SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_ORDERS + " SET " +
+                COLUMN_ORDER_SYNCED + " = 1 WHERE " + COLUMN_ORDER_ID + " = ?");
+        SQLiteStatement clearOutbox = db.compileStatement("DELETE FROM " + TABLE_ORDER_OUTBOX +
+                " WHERE " + COLUMN_OUTBOX_ORDER_KEY + " = (SELECT " + COLUMN_ORDER_KEY + " FROM " +
+                TABLE_ORDERS + " WHERE " + COLUMN_ORDER_ID + " = ?)");
+        int marked = 0;
+        db.beginTransaction();
+        try {
+            for (int orderId : orderIds) {
+                statement.bindLong(1, orderId);
+                marked += statement.executeUpdateDelete();
+                clearOutbox.bindLong(1, orderId);
+                clearOutbox.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+            clearOutbox.close();
+        }
+        return marked;
+    }
+
+    /**
+     * Marks a pushed status change as synced, but only if it is still the
+     * order's latest change; a newer one stays queued for the next sync.
+     */
+    public boolean markStatusChangeSynced(int orderId, String statusChangeKey) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String[] args = {String.valueOf(orderId), statusChangeKey};
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_ORDER_SYNCED, 1);
+            boolean marked = db.update(TABLE_ORDERS, values, COLUMN_ORDER_ID + " = ? AND " +
+                    COLUMN_ORDER_STATUS_CHANGE_KEY + " = ?", args) > 0;
+            if (marked) {
+                db.execSQL("DELETE FROM " + TABLE_ORDER_OUTBOX + " WHERE " + COLUMN_OUTBOX_ORDER_KEY +
+                        " = (SELECT " + COLUMN_ORDER_KEY + " FROM " + TABLE_ORDERS +
+                        " WHERE " + COLUMN_ORDER_ID + " = ?)", new Object[]{orderId});
+            }
+            db.setTransactionSuccessful();
+            return marked;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Applies one page of server status changes, keyed by order key, and
+     * stores the cursor that follows it, all in one transaction: either the
+     * page and its token land together or neither does. Orders with a local
+     * change still waiting to upload keep the local status, and a server
+     * cancellation puts the stock back as a local one does. When the server
+     * moves an order out of "cancelled" the stock is taken again; the server's
+     * status wins, so if too little is left the stock drops to zero rather
+     * than the order staying cancelled here. Applied orders are left synced.
+     * Returns how many orders changed.
+     */
+    public int applyOrderStatusUpdates(Map<String, String> statusByOrderKey, String nextToken) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement updateStatus = db.compileStatement("UPDATE " + TABLE_ORDERS + " SET " +
+                COLUMN_ORDER_STATUS + " = ?, " + COLUMN_ORDER_SYNCED + " = 1 WHERE " + COLUMN_ORDER_ID + " = ?");
+        SQLiteStatement restoreStock = db.compileStatement("UPDATE " + TABLE_PRODUCTS + " SET " +
+                COLUMN_PRODUCT_STOCK + " = " + COLUMN_PRODUCT_STOCK + " + ?, " +
+                COLUMN_PRODUCT_AVAILABLE + " = 1 WHERE " + COLUMN_PRODUCT_ID + " = ?");
+        String lookup = "SELECT " + COLUMN_ORDER_ID + ", " + COLUMN_ORDER_STATUS + ", " +
+                COLUMN_ORDER_SYNCED + ", " + COLUMN_ORDER_PRODUCT_ID + ", " + COLUMN_ORDER_QUANTITY +
+                " FROM " + TABLE_ORDERS + " WHERE " + COLUMN_ORDER_KEY + " = ?";
+        int applied = 0;
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, String> update : statusByOrderKey.entrySet()) {
+                String newStatus = update.getValue();
+                try (Cursor cursor = db.rawQuery(lookup, new String[]{update.getKey()})) {
+                    // Unknown orders were placed on another device
+                    if (!cursor.moveToFirst() || cursor.getInt(2) == 0
+                            || Objects.equals(cursor.getString(1), newStatus)) {
+                        continue;
+                    }
+                    updateStatus.bindString(1, newStatus);
+                    updateStatus.bindLong(2, cursor.getInt(0));
+                    updateStatus.executeUpdateDelete();
+                    int productId = cursor.getInt(3);
+                    int quantity = cursor.getInt(4);
+                    if ("cancelled".equals(newStatus)) {
+                        restoreStock.bindLong(1, quantity);
+                        restoreStock.bindLong(2, productId);
+                        restoreStock.executeUpdateDelete();
+                    } else if ("cancelled".equals(cursor.getString(1))
+                            && !takeStock(db, productId, quantity)) {
+                        android.util.Log.w("DatabaseHelper", "Order " + update.getKey() +
+                                " reinstated by the server with too little stock left; stock drops to zero");
+                        drainStock(db, productId, quantity);
+                    }
+                    applied++;
+                }
+            }
+            putSyncState(db, SYNC_ORDER_UPDATES_TOKEN, nextToken);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            updateStatus.close();
+            restoreStock.close();
+        }
+        return applied;
+    }
+
+    /**
+     * Records in the outbox that these orders are about to be sent. Call it
+     * before the request goes out, so an attempt whose reply never arrives is
+     * still counted. Resending is safe: the order keys let the server drop
+     * copies it has already booked.
+     */
+    public void recordOrderSyncAttempt(List<Order> orders) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement enqueue = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_ORDER_OUTBOX +
+                " (" + COLUMN_OUTBOX_ORDER_KEY + ") VALUES (?)");
+        SQLiteStatement attempt = db.compileStatement("UPDATE " + TABLE_ORDER_OUTBOX + " SET " +
+                COLUMN_OUTBOX_ATTEMPTS + " = " + COLUMN_OUTBOX_ATTEMPTS + " + 1, " +
+                COLUMN_OUTBOX_LAST_ATTEMPT_AT + " = ?, " +
+                COLUMN_OUTBOX_LAST_ERROR + " = NULL WHERE " + COLUMN_OUTBOX_ORDER_KEY + " = ?");
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (Order order : orders) {
+                enqueue.bindString(1, order.getOrderKey());
+                enqueue.executeInsert();
+                attempt.bindLong(1, now);
+                attempt.bindString(2, order.getOrderKey());
+                attempt.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            enqueue.close();
+            attempt.close();
+        }
+    }
+
+    // Notes why the last attempt for these orders failed
+    public void recordOrderSyncFailure(List<Order> orders, String error) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_ORDER_OUTBOX + " SET " +
+                COLUMN_OUTBOX_LAST_ERROR + " = ? WHERE " + COLUMN_OUTBOX_ORDER_KEY + " = ?");
+        db.beginTransaction();
+        try {
+            for (Order order : orders) {
+                bindStringOrNull(statement, 1, error);
+                statement.bindString(2, order.getOrderKey());
+                statement.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
+    // Upload attempts so far for an order still in the outbox; 0 once acknowledged
+    public int getOrderSyncAttempts(String orderKey) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_ORDER_OUTBOX, new String[]{COLUMN_OUTBOX_ATTEMPTS},
+                COLUMN_OUTBOX_ORDER_KEY + " = ?", new String[]{orderKey}, null, null, null);
+        int attempts = 0;
+        if (cursor.moveToFirst()) {
+            attempts = cursor.getInt(0);
+        }
+        cursor.close();
+        return attempts;
+    }
+
+    public String getOrderKey(int orderId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_ORDERS, new String[]{COLUMN_ORDER_KEY}, COLUMN_ORDER_ID + " = ?",
+                new String[]{String.valueOf(orderId)}, null, null, null);
+        String orderKey = null;
+        if (cursor.moveToFirst()) {
+            orderKey = cursor.getString(0);
+        }
+        cursor.close();
+        return orderKey;
+    }
+
+    // Key of the order's latest local status change, or null if it has none
+    public String getStatusChangeKey(int orderId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_ORDERS, new String[]{COLUMN_ORDER_STATUS_CHANGE_KEY}, COLUMN_ORDER_ID + " = ?",
+                new String[]{String.valueOf(orderId)}, null, null, null);
+        String statusChangeKey = null;
+        if (cursor.moveToFirst()) {
+            statusChangeKey = cursor.getString(0);
+        }
+        cursor.close();
+        return statusChangeKey;
     }
 
     // Admin methods for dashboard
@@ -900,9 +2014,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor cursor = db.query(TABLE_ORDERS, null, null, null, 
             null, null, COLUMN_ORDER_DATE + " DESC");
         
+        OrderRowMapper mapper = new OrderRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                orders.add(cursorToOrder(cursor));
+                orders.add(mapper.map(cursor));
             } while (cursor.moveToNext());
         }
         cursor.close();
@@ -937,6 +2052,302 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return db.insert(TABLE_PRODUCTS, null, values);
     }
 
+    /**
+     * Inserts or updates many products in one transaction. A product matches an
+     * existing row when name and category are the same; matching rows get the
+     * new price, stock, image, description and availability, and keep their id
+     * so favorites and orders still point at them. Returns how many rows were new.
+     */
+    public int upsertProducts(List<Product> products) {
+        return upsertProducts(this.getWritableDatabase(), products);
+    }
+
+    private int upsertProducts(SQLiteDatabase db, List<Product> products) {
+        // Both statements bind the same columns in the same order, key last
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_PRODUCTS + " SET " +
+                COLUMN_PRODUCT_PRICE + " = ?, " +
+                COLUMN_PRODUCT_STOCK + " = ?, " +
+                COLUMN_PRODUCT_IMAGE + " = ?, " +
+                COLUMN_PRODUCT_DESCRIPTION + " = ?, " +
+                COLUMN_PRODUCT_AVAILABLE + " = ?" +
+                " WHERE " + COLUMN_PRODUCT_NAME + " = ? AND " + COLUMN_PRODUCT_CATEGORY + " = ?");
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_PRODUCTS + " (" +
+                COLUMN_PRODUCT_PRICE + ", " +
+                COLUMN_PRODUCT_STOCK + ", " +
+                COLUMN_PRODUCT_IMAGE + ", " +
+                COLUMN_PRODUCT_DESCRIPTION + ", " +
+                COLUMN_PRODUCT_AVAILABLE + ", " +
+                COLUMN_PRODUCT_NAME + ", " +
+                COLUMN_PRODUCT_CATEGORY + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+        int inserted = 0;
+        db.beginTransaction();
+        try {
+            for (Product product : products) {
+                bindProduct(update, product);
+                if (update.executeUpdateDelete() == 0) {
+                    bindProduct(insert, product);
+                    if (insert.executeInsert() != -1) {
+                        inserted++;
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            insert.close();
+        }
+        Log.d("DatabaseHelper", "Upserted " + products.size() + " products, " + inserted + " new");
+        return inserted;
+    }
+
+    private static void bindProduct(SQLiteStatement statement, Product product) {
+        statement.clearBindings();
+        statement.bindDouble(1, product.getPrice());
+        statement.bindLong(2, product.getStockQuantity());
+        bindStringOrNull(statement, 3, product.getImageUrl());
+        bindStringOrNull(statement, 4, product.getDescription());
+        statement.bindLong(5, product.isAvailable() ? 1 : 0);
+        bindStringOrNull(statement, 6, product.getName());
+        bindStringOrNull(statement, 7, product.getCategory());
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Applies a full catalog download in one transaction. Products are matched
+     * on their server id; a server product seen for the first time takes over a
+     * local row with the same name and category, so the built-in seed isn't
+     * duplicated. Rows that haven't changed are not written. Server products
+     * missing from the list are marked unavailable rather than deleted, since
+     * orders and favorites still point at them. syncState (ETag and friends) is
+     * saved in the same transaction, so it only moves forward with the catalog;
+     * a null value removes the key.
+     */
+    public CatalogChanges applyCatalogSnapshot(List<ApiProduct> products, Map<String, String> syncState) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        // Columns 1-7 are bound by bindCatalogProduct in every statement
+        String catalogColumns = COLUMN_PRODUCT_NAME + " = ?, " +
+                COLUMN_PRODUCT_CATEGORY + " = ?, " +
+                COLUMN_PRODUCT_PRICE + " = ?, " +
+                COLUMN_PRODUCT_STOCK + " = ?, " +
+                COLUMN_PRODUCT_IMAGE + " = ?, " +
+                COLUMN_PRODUCT_AVAILABLE + " = ?, " +
+                COLUMN_PRODUCT_ON_OFFER + " = ?";
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_PRODUCTS + " SET " + catalogColumns +
+                " WHERE " + COLUMN_PRODUCT_ID + " = ?");
+        SQLiteStatement adopt = db.compileStatement("UPDATE " + TABLE_PRODUCTS + " SET " + catalogColumns +
+                ", " + COLUMN_PRODUCT_REMOTE_ID + " = ?" +
+                " WHERE " + COLUMN_PRODUCT_ID + " = (SELECT " + COLUMN_PRODUCT_ID + " FROM " + TABLE_PRODUCTS +
+                " WHERE " + COLUMN_PRODUCT_REMOTE_ID + " IS NULL AND " + COLUMN_PRODUCT_NAME + " = ? AND " +
+                COLUMN_PRODUCT_CATEGORY + " = ? LIMIT 1)");
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_PRODUCTS + " (" +
+                COLUMN_PRODUCT_NAME + ", " +
+                COLUMN_PRODUCT_CATEGORY + ", " +
+                COLUMN_PRODUCT_PRICE + ", " +
+                COLUMN_PRODUCT_STOCK + ", " +
+                COLUMN_PRODUCT_IMAGE + ", " +
+                COLUMN_PRODUCT_AVAILABLE + ", " +
+                COLUMN_PRODUCT_ON_OFFER + ", " +
+                COLUMN_PRODUCT_REMOTE_ID + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        SQLiteStatement findByRemoteId = db.compileStatement("SELECT " + COLUMN_PRODUCT_ID + " FROM " +
+                TABLE_PRODUCTS + " WHERE " + COLUMN_PRODUCT_REMOTE_ID + " = ?");
+
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        int removed = 0;
+        db.beginTransaction();
+        try {
+            Map<Integer, SyncedProduct> existing = loadSyncedProducts(db);
+            Set<Integer> seen = new HashSet<>();
+            for (ApiProduct apiProduct : products) {
+                if (!seen.add(apiProduct.getId())) {
+                    continue; // Listed twice; the first entry wins
+                }
+                SyncedProduct current = existing.get(apiProduct.getId());
+                long productId;
+                boolean wasOnOffer;
+                if (current != null) {
+                    if (current.matches(apiProduct)) {
+                        unchanged++;
+                        continue;
+                    }
+                    productId = current.id;
+                    wasOnOffer = current.onOffer;
+                    bindCatalogProduct(update, apiProduct);
+                    update.bindLong(8, productId);
+                    update.executeUpdateDelete();
+                    updated++;
+                } else {
+                    wasOnOffer = false;
+                    bindCatalogProduct(adopt, apiProduct);
+                    adopt.bindLong(8, apiProduct.getId());
+                    bindStringOrNull(adopt, 9, apiProduct.getName());
+                    bindStringOrNull(adopt, 10, apiProduct.getCategory());
+                    if (adopt.executeUpdateDelete() > 0) {
+                        findByRemoteId.bindLong(1, apiProduct.getId());
+                        productId = findByRemoteId.simpleQueryForLong();
+                        updated++;
+                    } else {
+                        bindCatalogProduct(insert, apiProduct);
+                        insert.bindLong(8, apiProduct.getId());
+                        productId = insert.executeInsert();
+                        inserted++;
+                    }
+                }
+                if (apiProduct.isOffer() && !wasOnOffer) {
+                    insertCatalogOffer(db, productId, apiProduct);
+                } else if (!apiProduct.isOffer() && wasOnOffer) {
+                    deactivateOffers(db, productId);
+                }
+            }
+
+            for (SyncedProduct current : existing.values()) {
+                if (seen.contains(current.remoteId) || !current.available) {
+                    continue;
+                }
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_PRODUCT_AVAILABLE, 0);
+                values.put(COLUMN_PRODUCT_ON_OFFER, 0);
+                db.update(TABLE_PRODUCTS, values, COLUMN_PRODUCT_ID + " = ?",
+                        new String[]{String.valueOf(current.id)});
+                if (current.onOffer) {
+                    deactivateOffers(db, current.id);
+                }
+                removed++;
+            }
+
+            for (Map.Entry<String, String> entry : syncState.entrySet()) {
+                putSyncState(db, entry.getKey(), entry.getValue());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            adopt.close();
+            insert.close();
+            findByRemoteId.close();
+        }
+        CatalogChanges changes = new CatalogChanges(inserted, updated, unchanged, removed);
+        Log.d("DatabaseHelper", "Applied catalog: " + changes);
+        return changes;
+    }
+
+    private static void bindCatalogProduct(SQLiteStatement statement, ApiProduct apiProduct) {
+        statement.clearBindings();
+        bindStringOrNull(statement, 1, apiProduct.getName());
+        bindStringOrNull(statement, 2, apiProduct.getCategory());
+        statement.bindDouble(3, apiProduct.getPrice());
+        statement.bindLong(4, apiProduct.getStock());
+        bindStringOrNull(statement, 5, apiProduct.getImage_url());
+        statement.bindLong(6, apiProduct.getStock() > 0 ? 1 : 0);
+        statement.bindLong(7, apiProduct.isOffer() ? 1 : 0);
+    }
+
+    private Map<Integer, SyncedProduct> loadSyncedProducts(SQLiteDatabase db) {
+        Cursor cursor = db.query(TABLE_PRODUCTS, new String[]{COLUMN_PRODUCT_ID, COLUMN_PRODUCT_REMOTE_ID,
+                        COLUMN_PRODUCT_NAME, COLUMN_PRODUCT_CATEGORY, COLUMN_PRODUCT_PRICE, COLUMN_PRODUCT_STOCK,
+                        COLUMN_PRODUCT_IMAGE, COLUMN_PRODUCT_AVAILABLE, COLUMN_PRODUCT_ON_OFFER},
+                COLUMN_PRODUCT_REMOTE_ID + " IS NOT NULL", null, null, null, null);
+        Map<Integer, SyncedProduct> products = new HashMap<>();
+        while (cursor.moveToNext()) {
+            SyncedProduct product = new SyncedProduct(cursor);
+            products.put(product.remoteId, product);
+        }
+        cursor.close();
+        return products;
+    }
+
+    // Local state of one synced product, for spotting what a download changed
+    private static final class SyncedProduct {
+        final int id;
+        final int remoteId;
+        final String name;
+        final String category;
+        final double price;
+        final int stock;
+        final String imageUrl;
+        final boolean available;
+        final boolean onOffer;
+
+        // Columns in the order loadSyncedProducts selects them
+        SyncedProduct(Cursor cursor) {
+            id = cursor.getInt(0);
+            remoteId = cursor.getInt(1);
+            name = cursor.getString(2);
+            category = cursor.getString(3);
+            price = cursor.getDouble(4);
+            stock = cursor.getInt(5);
+            imageUrl = cursor.getString(6);
+            available = cursor.getInt(7) == 1;
+            onOffer = cursor.getInt(8) == 1;
+        }
+
+        boolean matches(ApiProduct apiProduct) {
+            return Objects.equals(name, apiProduct.getName())
+                    && Objects.equals(category, apiProduct.getCategory())
+                    && price == apiProduct.getPrice()
+                    && stock == apiProduct.getStock()
+                    && Objects.equals(imageUrl, apiProduct.getImage_url())
+                    && available == (apiProduct.getStock() > 0)
+                    && onOffer == apiProduct.isOffer();
+        }
+    }
+
+    private void insertCatalogOffer(SQLiteDatabase db, long productId, ApiProduct apiProduct) {
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_OFFER_PRODUCT_ID, productId);
+        values.put(COLUMN_OFFER_PRODUCT_NAME, apiProduct.getName());
+        values.put(COLUMN_OFFER_CATEGORY, apiProduct.getCategory());
+        values.put(COLUMN_OFFER_ORIGINAL_PRICE, apiProduct.getPrice());
+        values.put(COLUMN_OFFER_DISCOUNTED_PRICE, apiProduct.getPrice() * CATALOG_OFFER_PRICE_FACTOR);
+        values.put(COLUMN_OFFER_STOCK_QUANTITY, apiProduct.getStock());
+        values.put(COLUMN_OFFER_DESCRIPTION, "Special offer on " + apiProduct.getName());
+        values.put(COLUMN_OFFER_IMAGE_URL, apiProduct.getImage_url());
+        values.put(COLUMN_OFFER_IS_ACTIVE, 1);
+        values.put(COLUMN_OFFER_CREATED_AT, now);
+        values.put(COLUMN_OFFER_EXPIRES_AT, now + CATALOG_OFFER_DURATION_MILLIS);
+        db.insert(TABLE_OFFERS, null, values);
+    }
+
+    private void deactivateOffers(SQLiteDatabase db, long productId) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_OFFER_IS_ACTIVE, 0);
+        db.update(TABLE_OFFERS, values, COLUMN_OFFER_PRODUCT_ID + " = ? AND " + COLUMN_OFFER_IS_ACTIVE + " = 1",
+                new String[]{String.valueOf(productId)});
+    }
+
+    public String getSyncState(String key) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_SYNC_STATE, new String[]{COLUMN_SYNC_VALUE}, COLUMN_SYNC_KEY + " = ?",
+                new String[]{key}, null, null, null);
+        String value = null;
+        if (cursor.moveToFirst()) {
+            value = cursor.getString(0);
+        }
+        cursor.close();
+        return value;
+    }
+
+    private void putSyncState(SQLiteDatabase db, String key, String value) {
+        if (value == null) {
+            db.delete(TABLE_SYNC_STATE, COLUMN_SYNC_KEY + " = ?", new String[]{key});
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_SYNC_KEY, key);
+        values.put(COLUMN_SYNC_VALUE, value);
+        db.insertWithOnConflict(TABLE_SYNC_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
     public boolean updateProduct(Product product) {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
@@ -977,6 +2388,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_OFFER_STOCK_QUANTITY, offer.getStockQuantity());
         values.put(COLUMN_OFFER_DESCRIPTION, offer.getDescription());
         values.put(COLUMN_OFFER_IMAGE_URL, offer.getImageUrl());
+        values.put(COLUMN_OFFER_THUMBNAIL_PATH, offer.getThumbnailPath());
         values.put(COLUMN_OFFER_IS_ACTIVE, offer.isActive() ? 1 : 0);
         values.put(COLUMN_OFFER_CREATED_AT, offer.getCreatedAt());
         values.put(COLUMN_OFFER_EXPIRES_AT, offer.getExpiresAt());
@@ -988,6 +2400,68 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return result;
     }
 
+    /** Reads Offers off a cursor, with column indexes looked up once per cursor. */
+    public static final class OfferRowMapper {
+        private final int id;
+        private final int productId;
+        private final int productName;
+        private final int category;
+        private final int originalPrice;
+        private final int discountedPrice;
+        private final int stockQuantity;
+        private final int description;
+        private final int imageUrl;
+        private final int thumbnailPath;
+        private final int active;
+        private final int createdAt;
+        private final int expiresAt;
+
+        public OfferRowMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(COLUMN_OFFER_ID);
+            // Missing on databases that predate the product_id column
+            productId = cursor.getColumnIndex(COLUMN_OFFER_PRODUCT_ID);
+            productName = cursor.getColumnIndexOrThrow(COLUMN_OFFER_PRODUCT_NAME);
+            category = cursor.getColumnIndexOrThrow(COLUMN_OFFER_CATEGORY);
+            originalPrice = cursor.getColumnIndexOrThrow(COLUMN_OFFER_ORIGINAL_PRICE);
+            discountedPrice = cursor.getColumnIndexOrThrow(COLUMN_OFFER_DISCOUNTED_PRICE);
+            stockQuantity = cursor.getColumnIndexOrThrow(COLUMN_OFFER_STOCK_QUANTITY);
+            description = cursor.getColumnIndexOrThrow(COLUMN_OFFER_DESCRIPTION);
+            imageUrl = cursor.getColumnIndexOrThrow(COLUMN_OFFER_IMAGE_URL);
+            // Missing on databases that predate image renditions
+            thumbnailPath = cursor.getColumnIndex(COLUMN_OFFER_THUMBNAIL_PATH);
+            active = cursor.getColumnIndexOrThrow(COLUMN_OFFER_IS_ACTIVE);
+            createdAt = cursor.getColumnIndexOrThrow(COLUMN_OFFER_CREATED_AT);
+            expiresAt = cursor.getColumnIndexOrThrow(COLUMN_OFFER_EXPIRES_AT);
+        }
+
+        public com.example.grocerystore.models.Offer map(Cursor cursor) {
+            com.example.grocerystore.models.Offer offer = new com.example.grocerystore.models.Offer();
+            offer.setId(cursor.getInt(id));
+            offer.setProductId(productId != -1 && !cursor.isNull(productId) ? cursor.getInt(productId) : 0);
+
+            String name = cursor.getString(productName);
+            offer.setProductName(name);
+            offer.setName(name); // Set both name and productName to the same value
+
+            offer.setCategory(cursor.getString(category));
+            offer.setOriginalPrice(cursor.getDouble(originalPrice));
+            offer.setDiscountedPrice(cursor.getDouble(discountedPrice));
+            offer.setStockQuantity(cursor.getInt(stockQuantity));
+            offer.setDescription(cursor.getString(description));
+            offer.setImageUrl(cursor.getString(imageUrl));
+            offer.setThumbnailPath(thumbnailPath != -1 ? cursor.getString(thumbnailPath) : null);
+            offer.setActive(cursor.getInt(active) == 1);
+            offer.setCreatedAt(cursor.getLong(createdAt));
+            offer.setExpiresAt(cursor.getLong(expiresAt));
+
+            if (offer.getOriginalPrice() > 0) {
+                int discountPercent = (int) Math.round(((offer.getOriginalPrice() - offer.getDiscountedPrice()) / offer.getOriginalPrice()) * 100);
+                offer.setDiscountPercent(discountPercent);
+            }
+            return offer;
+        }
+    }
+
     public List<com.example.grocerystore.models.Offer> getAllOffers() {
         List<com.example.grocerystore.models.Offer> offers = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
@@ -999,40 +2473,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         
         android.util.Log.d("DatabaseHelper", "Cursor count: " + cursor.getCount());
         
+        OfferRowMapper mapper = new OfferRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                com.example.grocerystore.models.Offer offer = new com.example.grocerystore.models.Offer();
-                offer.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_OFFER_ID)));
-                
-                // Get product_id with safe handling for null values
-                int productIdIndex = cursor.getColumnIndex(COLUMN_OFFER_PRODUCT_ID);
-                if (productIdIndex != -1 && !cursor.isNull(productIdIndex)) {
-                    offer.setProductId(cursor.getInt(productIdIndex));
-                } else {
-                    offer.setProductId(0); // Default to 0 if no product_id
-                }
+                com.example.grocerystore.models.Offer offer = mapper.map(cursor);
                 
-                String productName = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_PRODUCT_NAME));
-                offer.setProductName(productName);
-                offer.setName(productName); // Set both name and productName to the same value
-                
-                offer.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_CATEGORY)));
-                offer.setOriginalPrice(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_OFFER_ORIGINAL_PRICE)));
-                offer.setDiscountedPrice(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_OFFER_DISCOUNTED_PRICE)));
-                offer.setStockQuantity(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_OFFER_STOCK_QUANTITY)));
-                offer.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_DESCRIPTION)));
-                offer.setImageUrl(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_IMAGE_URL)));
-                offer.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_OFFER_IS_ACTIVE)) == 1);
-                offer.setCreatedAt(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_OFFER_CREATED_AT)));
-                offer.setExpiresAt(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_OFFER_EXPIRES_AT)));
-                
-                // Calculate discount percentage
-                if (offer.getOriginalPrice() > 0) {
-                    int discountPercent = (int) Math.round(((offer.getOriginalPrice() - offer.getDiscountedPrice()) / offer.getOriginalPrice()) * 100);
-                    offer.setDiscountPercent(discountPercent);
-                }
-                
-                android.util.Log.d("DatabaseHelper", "Retrieved offer: " + offer.getProductName() + 
+                DebugLog.d("DatabaseHelper", () -> "Retrieved offer: " + offer.getProductName() + 
                     " | Name: " + offer.getName() +
                     " | Product ID: " + offer.getProductId() +
                     " | Active: " + offer.isActive() + 
@@ -1060,21 +2506,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor cursor = db.query(TABLE_OFFERS, null, selection, selectionArgs, null, null, 
             COLUMN_OFFER_CREATED_AT + " DESC");
         
+        OfferRowMapper mapper = new OfferRowMapper(cursor);
         if (cursor.moveToFirst()) {
             do {
-                com.example.grocerystore.models.Offer offer = new com.example.grocerystore.models.Offer();
-                offer.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_OFFER_ID)));
-                offer.setProductName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_PRODUCT_NAME)));
-                offer.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_CATEGORY)));
-                offer.setOriginalPrice(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_OFFER_ORIGINAL_PRICE)));
-                offer.setDiscountedPrice(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_OFFER_DISCOUNTED_PRICE)));
-                offer.setStockQuantity(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_OFFER_STOCK_QUANTITY)));
-                offer.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_DESCRIPTION)));
-                offer.setImageUrl(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_IMAGE_URL)));
-                offer.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_OFFER_IS_ACTIVE)) == 1);
-                offer.setCreatedAt(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_OFFER_CREATED_AT)));
-                offer.setExpiresAt(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_OFFER_EXPIRES_AT)));
-                offers.add(offer);
+                offers.add(mapper.map(cursor));
             } while (cursor.moveToNext());
         }
         cursor.close();
@@ -1092,6 +2527,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_OFFER_STOCK_QUANTITY, offer.getStockQuantity());
         values.put(COLUMN_OFFER_DESCRIPTION, offer.getDescription());
         values.put(COLUMN_OFFER_IMAGE_URL, offer.getImageUrl());
+        values.put(COLUMN_OFFER_THUMBNAIL_PATH, offer.getThumbnailPath());
         values.put(COLUMN_OFFER_IS_ACTIVE, offer.isActive() ? 1 : 0);
         values.put(COLUMN_OFFER_EXPIRES_AT, offer.getExpiresAt());
         
@@ -1100,6 +2536,26 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return rowsAffected > 0;
     }
 
+    // The image and thumbnail paths an offer points at, for cleaning up files it stops using
+    public List<String> getOfferImagePaths(int offerId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        List<String> paths = new ArrayList<>();
+        try (Cursor cursor = db.query(TABLE_OFFERS, null, COLUMN_OFFER_ID + " = ?",
+                new String[]{String.valueOf(offerId)}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                int thumbnail = cursor.getColumnIndex(COLUMN_OFFER_THUMBNAIL_PATH);
+                String imageUrl = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OFFER_IMAGE_URL));
+                if (imageUrl != null) {
+                    paths.add(imageUrl);
+                }
+                if (thumbnail != -1 && !cursor.isNull(thumbnail)) {
+                    paths.add(cursor.getString(thumbnail));
+                }
+            }
+        }
+        return paths;
+    }
+
     public boolean deleteOffer(int offerId) {
         SQLiteDatabase db = this.getWritableDatabase();
         int rowsAffected = db.delete(TABLE_OFFERS, 
@@ -1124,21 +2580,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
     
     public void initializeRealProductsIfEmpty() {
-        List<Product> existingProducts = getAllProducts();
-        if (existingProducts.isEmpty()) {
+        // Count rather than load: the first catalog page waits on this check
+        SQLiteDatabase db = getReadableDatabase();
+        long productCount = DatabaseUtils.queryNumEntries(db, TABLE_PRODUCTS);
+        if (productCount == 0) {
             Log.d("DatabaseHelper", "Database is empty, adding real products with images");
             addRealProductsWithImages();
         } else {
-            Log.d("DatabaseHelper", "Products already exist: " + existingProducts.size() + " products found");
-            // Check if products are using old URLs - if so, update them
-            boolean needsUpdate = false;
-            for (Product product : existingProducts) {
-                if (product.getImageUrl() != null && product.getImageUrl().startsWith("https://")) {
-                    needsUpdate = true;
-                    break;
-                }
-            }
-            if (needsUpdate) {
+            Log.d("DatabaseHelper", "Products already exist: " + productCount + " products found");
+            // Check if products are using old URLs - if so, update them.
+            // Synced products legitimately use remote images, so skip those.
+            long oldUrlCount = DatabaseUtils.queryNumEntries(db, TABLE_PRODUCTS,
+                    COLUMN_PRODUCT_REMOTE_ID + " IS NULL AND " + COLUMN_PRODUCT_IMAGE + " LIKE 'https://%'");
+            if (oldUrlCount > 0) {
                 Log.d("DatabaseHelper", "Products have old URLs, updating to local images");
                 clearAndReinitializeProducts();
             }
@@ -1147,86 +2601,109 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     
     public void clearAndReinitializeProducts() {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.execSQL("DELETE FROM " + TABLE_PRODUCTS);
-        Log.d("DatabaseHelper", "Cleared existing products, adding new ones with local images");
-        addRealProductsWithImages();
+        // Clear and reseed together so readers never see an empty catalog
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE_PRODUCTS);
+            clearCatalogSyncState(db);
+            Log.d("DatabaseHelper", "Cleared existing products, adding new ones with local images");
+            addRealProductsWithImages(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
     
     // For testing - force reset all data
     public void forceResetForTesting() {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.execSQL("DELETE FROM " + TABLE_PRODUCTS);
-        db.execSQL("DELETE FROM " + TABLE_OFFERS);
-        Log.d("DatabaseHelper", "FORCE RESET: Cleared all products and offers for testing");
-        addRealProductsWithImages();
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE_PRODUCTS);
+            db.execSQL("DELETE FROM " + TABLE_OFFERS);
+            clearCatalogSyncState(db);
+            Log.d("DatabaseHelper", "FORCE RESET: Cleared all products and offers for testing");
+            addRealProductsWithImages(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
     
+    // With the synced products gone, the next catalog sync has to download everything
+    private void clearCatalogSyncState(SQLiteDatabase db) {
+        db.delete(TABLE_SYNC_STATE, COLUMN_SYNC_KEY + " IN (?, ?)",
+                new String[]{SYNC_CATALOG_ETAG, SYNC_CATALOG_LAST_MODIFIED});
+    }
+
     private void addRealProductsWithImages() {
         addRealProductsWithImages(this.getWritableDatabase());
     }
     
     private void addRealProductsWithImages(SQLiteDatabase db) {
+        List<Product> products = new ArrayList<>();
         // Fruits (only using JPGs you have)
-        insertProduct(db, 0, "Fresh Bananas", "Fruits", 2.99, 50, 
+        seedProduct(products, "Fresh Bananas", "Fruits", 2.99, 50, 
             "drawable://product_bananas", "Fresh yellow bananas, rich in potassium", true);
-        insertProduct(db, 0, "Red Apples", "Fruits", 3.49, 40, 
+        seedProduct(products, "Red Apples", "Fruits", 3.49, 40, 
             "drawable://product_apples", "Fresh red apples, perfect for snacking", true);
-        insertProduct(db, 0, "Strawberries", "Fruits", 5.99, 25, 
+        seedProduct(products, "Strawberries", "Fruits", 5.99, 25, 
             "drawable://product_strawberries", "Sweet fresh strawberries", true);
-        insertProduct(db, 0, "Avocados", "Fruits", 6.99, 30, 
+        seedProduct(products, "Avocados", "Fruits", 6.99, 30, 
             "drawable://product_avocados", "Ripe avocados, perfect for guacamole", true);
         
         // Vegetables
-        insertProduct(db, 0, "Fresh Carrots", "Vegetables", 2.49, 60, 
+        seedProduct(products, "Fresh Carrots", "Vegetables", 2.49, 60, 
             "drawable://product_carrots", "Crisp fresh carrots", true);
-        insertProduct(db, 0, "Broccoli", "Vegetables", 3.99, 45, 
+        seedProduct(products, "Broccoli", "Vegetables", 3.99, 45, 
             "drawable://product_broccoli", "Fresh green broccoli crowns", true);
-        insertProduct(db, 0, "Bell Peppers", "Vegetables", 4.49, 35, 
+        seedProduct(products, "Bell Peppers", "Vegetables", 4.49, 35, 
             "drawable://product_bell_peppers", "Colorful bell peppers", true);
-        insertProduct(db, 0, "Spinach Leaves", "Vegetables", 3.29, 40, 
+        seedProduct(products, "Spinach Leaves", "Vegetables", 3.29, 40, 
             "drawable://product_spinach", "Fresh spinach leaves", true);
-        insertProduct(db, 0, "Tomatoes", "Vegetables", 3.79, 55, 
+        seedProduct(products, "Tomatoes", "Vegetables", 3.79, 55, 
             "drawable://product_tomatoes", "Ripe red tomatoes", true);
         
         // Dairy
-        insertProduct(db, 0, "Fresh Milk", "Dairy", 4.99, 20, 
+        seedProduct(products, "Fresh Milk", "Dairy", 4.99, 20, 
             "drawable://product_milk", "Fresh whole milk, 1 gallon", true);
-        insertProduct(db, 0, "Greek Yogurt", "Dairy", 5.49, 25, 
+        seedProduct(products, "Greek Yogurt", "Dairy", 5.49, 25, 
             "drawable://product_yogurt", "Plain Greek yogurt, 32 oz", true);
-        insertProduct(db, 0, "Cheddar Cheese", "Dairy", 7.99, 15, 
+        seedProduct(products, "Cheddar Cheese", "Dairy", 7.99, 15, 
             "drawable://product_cheese", "Sharp cheddar cheese", true);
-        insertProduct(db, 0, "Fresh Eggs", "Dairy", 3.99, 30, 
+        seedProduct(products, "Fresh Eggs", "Dairy", 3.99, 30, 
             "drawable://product_eggs", "Grade A large eggs, dozen", true);
         
         // Meat & Seafood
-        insertProduct(db, 0, "Chicken Breast", "Meat", 12.99, 20, 
+        seedProduct(products, "Chicken Breast", "Meat", 12.99, 20, 
             "drawable://product_chicken", "Boneless chicken breast, per pound", true);
-        insertProduct(db, 0, "Ground Beef", "Meat", 8.99, 18, 
+        seedProduct(products, "Ground Beef", "Meat", 8.99, 18, 
             "drawable://product_beef", "Lean ground beef", true);
-        insertProduct(db, 0, "Salmon Fillet", "Meat", 15.99, 12, 
+        seedProduct(products, "Salmon Fillet", "Meat", 15.99, 12, 
             "drawable://product_salmon", "Fresh Atlantic salmon fillet", true);
         
         // Bakery
-        insertProduct(db, 0, "Bagels", "Bakery", 3.99, 20, 
+        seedProduct(products, "Bagels", "Bakery", 3.99, 20, 
             "drawable://product_bagels", "Fresh baked bagels", true);
         
         // Beverages
-        insertProduct(db, 0, "Orange Juice", "Beverages", 4.49, 30, 
+        seedProduct(products, "Orange Juice", "Beverages", 4.49, 30, 
             "drawable://product_orange_juice", "Fresh squeezed orange juice", true);
-        insertProduct(db, 0, "Coffee Beans", "Beverages", 12.99, 20, 
+        seedProduct(products, "Coffee Beans", "Beverages", 12.99, 20, 
             "drawable://product_coffee", "Premium coffee beans", true);
-        insertProduct(db, 0, "Green Tea", "Beverages", 8.99, 25, 
+        seedProduct(products, "Green Tea", "Beverages", 8.99, 25, 
             "drawable://product_tea", "Organic green tea", true);
         
         // Snacks
-        insertProduct(db, 0, "Mixed Nuts", "Snacks", 9.99, 22, 
+        seedProduct(products, "Mixed Nuts", "Snacks", 9.99, 22, 
             "drawable://product_nuts", "Assorted mixed nuts", true);
-        insertProduct(db, 0, "Dark Chocolate", "Snacks", 5.99, 30, 
+        seedProduct(products, "Dark Chocolate", "Snacks", 5.99, 30, 
             "drawable://product_chocolate", "Rich dark chocolate bar", true);
-        insertProduct(db, 0, "Granola Bars", "Snacks", 6.49, 35, 
+        seedProduct(products, "Granola Bars", "Snacks", 6.49, 35, 
             "drawable://product_granola", "Healthy granola bars", true);
         
-        Log.d("DatabaseHelper", "Added 23 real products with JPG images from drawable folder");
+        upsertProducts(db, products);
+        Log.d("DatabaseHelper", "Added " + products.size() + " real products with JPG images from drawable folder");
     }
     
     // Method to create test offers based on existing products
@@ -1258,23 +2735,163 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             offer.setExpiresAt(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000)); // 30 days
             
             long result = addOffer(offer);
-            android.util.Log.d("DatabaseHelper", "Created test offer for " + product.getName() + 
+            DebugLog.d("DatabaseHelper", () -> "Created test offer for " + product.getName() + 
                 " with image: " + product.getImageUrl() + " (result: " + result + ")");
         }
         
         android.util.Log.d("DatabaseHelper", "=== END CREATING TEST OFFERS ===");
     }
     
-    private void insertProduct(SQLiteDatabase db, int id, String name, String category, 
-                              double price, int stock, String imageUrl, String description, boolean available) {
+    private static void seedProduct(List<Product> products, String name, String category,
+                                    double price, int stock, String imageUrl, String description, boolean available) {
+        Product product = new Product(0, name, category, price, stock, imageUrl);
+        product.setDescription(description);
+        product.setAvailable(available);
+        products.add(product);
+    }
+
+    // Users methods
+
+    // Returns the new row id, or -1 if the email is already registered
+    public long addUser(User user) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        return db.insertWithOnConflict(TABLE_USERS, null, userToValues(user), SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    // Copies users over in one transaction, keeping their ids; existing emails are skipped
+    public int addUsers(List<User> users) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int added = 0;
+        db.beginTransaction();
+        try {
+            for (User user : users) {
+                ContentValues values = userToValues(user);
+                if (user.getId() > 0) {
+                    values.put(COLUMN_USER_ID, user.getId());
+                }
+                if (db.insertWithOnConflict(TABLE_USERS, null, values, SQLiteDatabase.CONFLICT_IGNORE) != -1) {
+                    added++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return added;
+    }
+
+    public User getUserByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_USERS, null, COLUMN_USER_EMAIL + " = ?", new String[]{email},
+                null, null, null, "1");
+        User user = null;
+        if (cursor.moveToFirst()) {
+            user = new UserRowMapper(cursor).map(cursor);
+        }
+        cursor.close();
+        return user;
+    }
+
+    public User getUserById(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_USERS, null, COLUMN_USER_ID + " = ?", new String[]{String.valueOf(userId)},
+                null, null, null);
+        User user = null;
+        if (cursor.moveToFirst()) {
+            user = new UserRowMapper(cursor).map(cursor);
+        }
+        cursor.close();
+        return user;
+    }
+
+    public List<User> getAllUsers() {
+        List<User> users = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_USERS, null, null, null, null, null, COLUMN_USER_ID);
+        UserRowMapper mapper = new UserRowMapper(cursor);
+        if (cursor.moveToFirst()) {
+            do {
+                users.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+        return users;
+    }
+
+    public int getUserCount() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return (int) DatabaseUtils.queryNumEntries(db, TABLE_USERS);
+    }
+
+    // Updates the user with the same email; returns false if there is none
+    public boolean updateUser(User user) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int rows = db.update(TABLE_USERS, userToValues(user), COLUMN_USER_EMAIL + " = ?",
+                new String[]{user.getEmail()});
+        return rows > 0;
+    }
+
+    public boolean deleteUser(int userId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        return db.delete(TABLE_USERS, COLUMN_USER_ID + " = ?", new String[]{String.valueOf(userId)}) > 0;
+    }
+
+    public boolean deleteUserByEmail(String email) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        return db.delete(TABLE_USERS, COLUMN_USER_EMAIL + " = ?", new String[]{email}) > 0;
+    }
+
+    public void deleteAllUsers() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.delete(TABLE_USERS, null, null);
+    }
+
+    private ContentValues userToValues(User user) {
         ContentValues values = new ContentValues();
-        values.put(COLUMN_PRODUCT_NAME, name);
-        values.put(COLUMN_PRODUCT_CATEGORY, category);
-        values.put(COLUMN_PRODUCT_PRICE, price);
-        values.put(COLUMN_PRODUCT_STOCK, stock);
-        values.put(COLUMN_PRODUCT_IMAGE, imageUrl);
-        values.put(COLUMN_PRODUCT_DESCRIPTION, description);
-        values.put(COLUMN_PRODUCT_AVAILABLE, available ? 1 : 0);
-        db.insert(TABLE_PRODUCTS, null, values);
+        values.put(COLUMN_USER_EMAIL, user.getEmail());
+        values.put(COLUMN_USER_FIRST_NAME, user.getFirstName());
+        values.put(COLUMN_USER_LAST_NAME, user.getLastName());
+        values.put(COLUMN_USER_PASSWORD, user.getPassword());
+        values.put(COLUMN_USER_GENDER, user.getGender());
+        values.put(COLUMN_USER_CITY, user.getCity());
+        values.put(COLUMN_USER_PHONE, user.getPhoneNumber());
+        values.put(COLUMN_USER_ROLE, user.getRole() != null ? user.getRole() : "user");
+        return values;
+    }
+
+    /** Reads Users off a cursor, with column indexes looked up once per cursor. */
+    public static final class UserRowMapper {
+        private final int id;
+        private final int email;
+        private final int firstName;
+        private final int lastName;
+        private final int password;
+        private final int gender;
+        private final int city;
+        private final int phone;
+        private final int role;
+
+        public UserRowMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(COLUMN_USER_ID);
+            email = cursor.getColumnIndexOrThrow(COLUMN_USER_EMAIL);
+            firstName = cursor.getColumnIndexOrThrow(COLUMN_USER_FIRST_NAME);
+            lastName = cursor.getColumnIndexOrThrow(COLUMN_USER_LAST_NAME);
+            password = cursor.getColumnIndexOrThrow(COLUMN_USER_PASSWORD);
+            gender = cursor.getColumnIndexOrThrow(COLUMN_USER_GENDER);
+            city = cursor.getColumnIndexOrThrow(COLUMN_USER_CITY);
+            phone = cursor.getColumnIndexOrThrow(COLUMN_USER_PHONE);
+            role = cursor.getColumnIndexOrThrow(COLUMN_USER_ROLE);
+        }
+
+        public User map(Cursor cursor) {
+            User user = new User(cursor.getString(email), cursor.getString(firstName), cursor.getString(lastName),
+                    cursor.getString(password), cursor.getString(gender), cursor.getString(city),
+                    cursor.getString(phone), cursor.getString(role));
+            user.setId(cursor.getInt(id));
+            return user;
+        }
     }
 }
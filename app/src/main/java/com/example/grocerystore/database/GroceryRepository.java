@@ -0,0 +1,352 @@
+package com.example.grocerystore.database;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import com.example.grocerystore.models.CartItem;
+import com.example.grocerystore.models.Offer;
+import com.example.grocerystore.models.Order;
+import com.example.grocerystore.models.Product;
+import com.example.grocerystore.network.OrderSyncScheduler;
+import com.example.grocerystore.utils.ImageIngest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Async facade over DatabaseHelper. Every query runs in the background and
+ * its result is posted back to the main thread, so fragments never block the
+ * UI on SQLite. Reads share a small bounded pool and are dropped when it is
+ * backed up; writes go through their own single thread with an unbounded
+ * queue, so a burst of reads can never lose an order or leak a stock hold.
+ */
+public class GroceryRepository {
+    private static final String TAG = "GroceryRepository";
+
+    // SQLite serializes writers anyway, so a couple of threads is plenty
+    private static final int POOL_SIZE = 2;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static GroceryRepository instance;
+
+    private final Context appContext;
+    private final DatabaseHelper databaseHelper;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor writeExecutor;
+    private final Handler mainHandler;
+    // Set once the seed check has run in this process; see ensureCatalogSeeded
+    private volatile boolean catalogSeeded;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public interface Query<T> {
+        T run(DatabaseHelper db);
+    }
+
+    private GroceryRepository(Context context) {
+        appContext = context.getApplicationContext();
+        databaseHelper = DatabaseHelper.getInstance(context);
+        executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "grocery-db");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        // SQLite serializes writers, so one thread loses nothing
+        writeExecutor = new ThreadPoolExecutor(1, 1,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "grocery-db-write"));
+        writeExecutor.allowCoreThreadTimeOut(true);
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public static synchronized GroceryRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new GroceryRepository(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Run an arbitrary query in the background. The callback receives null
+     * if the query threw or the queue was full.
+     */
+    public <T> void execute(Query<T> query, Callback<T> callback) {
+        execute(query, null, callback);
+    }
+
+    /**
+     * Run an arbitrary write in the background. It is never dropped; the
+     * callback receives null only if the write threw.
+     */
+    public <T> void executeWrite(Query<T> query, Callback<T> callback) {
+        executeWrite(query, null, callback);
+    }
+
+    private <T> void execute(Query<T> query, T fallback, Callback<T> callback) {
+        run(executor, query, fallback, callback);
+    }
+
+    private <T> void executeWrite(Query<T> query, T fallback, Callback<T> callback) {
+        run(writeExecutor, query, fallback, callback);
+    }
+
+    private <T> void run(ThreadPoolExecutor target, Query<T> query, T fallback, Callback<T> callback) {
+        try {
+            target.execute(() -> {
+                T result;
+                try {
+                    result = query.run(databaseHelper);
+                } catch (OperationCanceledException e) {
+                    // Caller cancelled the query and no longer wants the result
+                    result = fallback;
+                } catch (Exception e) {
+                    Log.e(TAG, "Database query failed", e);
+                    result = fallback;
+                }
+                deliver(callback, result);
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Database queue is full, dropping query", e);
+            deliver(callback, fallback);
+        }
+    }
+
+    private <T> void deliver(Callback<T> callback, T result) {
+        if (callback != null) {
+            mainHandler.post(() -> callback.onResult(result));
+        }
+    }
+
+    /** Seed the catalog on a fresh install, or refresh outdated seed data. */
+    public void seedCatalog() {
+        executeWrite(db -> {
+            ensureCatalogSeeded(db);
+            return null;
+        }, null);
+    }
+
+    /**
+     * Runs the seed check once per process, on the calling background thread.
+     * Catalog reads call this first, so the first page can't race the seed and
+     * come back empty on a fresh install; later calls return immediately.
+     */
+    void ensureCatalogSeeded(DatabaseHelper db) {
+        if (catalogSeeded) {
+            return;
+        }
+        synchronized (this) {
+            if (!catalogSeeded) {
+                db.initializeRealProductsIfEmpty();
+                catalogSeeded = true;
+            }
+        }
+    }
+
+    // Product queries
+    public void getAllProducts(Callback<List<Product>> callback) {
+        execute(db -> {
+            ensureCatalogSeeded(db);
+            return db.getAllProducts();
+        }, new ArrayList<>(), callback);
+    }
+
+    public void getAllProductsWithFavorites(int userId, Callback<List<Product>> callback) {
+        execute(db -> {
+            ensureCatalogSeeded(db);
+            return db.getAllProductsWithFavorites(userId);
+        }, new ArrayList<>(), callback);
+    }
+
+    public void searchProducts(String query, int limit, Callback<List<Product>> callback) {
+        searchProducts(query, limit, null, callback);
+    }
+
+    public void searchProducts(String query, int limit, CancellationSignal cancellationSignal,
+                               Callback<List<Product>> callback) {
+        execute(db -> {
+            ensureCatalogSeeded(db);
+            return db.searchProducts(query, limit, cancellationSignal);
+        }, new ArrayList<>(), callback);
+    }
+
+    public void getAllCategories(Callback<List<String>> callback) {
+        execute(db -> {
+            ensureCatalogSeeded(db);
+            return db.getAllCategories();
+        }, new ArrayList<>(), callback);
+    }
+
+    public void addProduct(Product product, Callback<Long> callback) {
+        executeWrite(db -> db.addProduct(product), -1L, callback);
+    }
+
+    public void updateProduct(Product product, Callback<Boolean> callback) {
+        executeWrite(db -> db.updateProduct(product), false, callback);
+    }
+
+    public void deleteProduct(int productId, Callback<Boolean> callback) {
+        executeWrite(db -> db.deleteProduct(productId), false, callback);
+    }
+
+    // Favorite queries
+    public void getFavoriteProducts(int userId, Callback<List<Product>> callback) {
+        execute(db -> db.getFavoriteProducts(userId), new ArrayList<>(), callback);
+    }
+
+    public void isProductFavorite(int userId, int productId, Callback<Boolean> callback) {
+        execute(db -> db.isProductFavorite(userId, productId), false, callback);
+    }
+
+    public void addToFavorites(int userId, int productId, Callback<Boolean> callback) {
+        executeWrite(db -> db.addToFavorites(userId, productId), false, callback);
+    }
+
+    public void removeFromFavorites(int userId, int productId, Callback<Boolean> callback) {
+        executeWrite(db -> db.removeFromFavorites(userId, productId), false, callback);
+    }
+
+    // Order queries
+    public void getUserOrders(int userId, Callback<List<Order>> callback) {
+        execute(db -> db.getUserOrders(userId), new ArrayList<>(), callback);
+    }
+
+    public void getAllOrders(Callback<List<Order>> callback) {
+        execute(DatabaseHelper::getAllOrders, new ArrayList<>(), callback);
+    }
+
+    // Order writes leave the order unsynced, so each one queues a background sync
+    public void addOrder(Order order, Callback<Long> callback) {
+        addOrder(order, -1, callback);
+    }
+
+    // Places the order with the stock held by reservationId; see StockHold
+    public void addOrder(Order order, long reservationId, Callback<Long> callback) {
+        executeWrite(db -> {
+            long orderId = db.addOrder(order, reservationId);
+            if (orderId > 0) {
+                OrderSyncScheduler.requestSync(appContext);
+            }
+            return orderId;
+        }, -4L, callback);
+    }
+
+    public void updateOrderStatus(int orderId, String newStatus, Callback<Boolean> callback) {
+        executeWrite(db -> {
+            boolean updated = db.updateOrderStatus(orderId, newStatus);
+            if (updated) {
+                OrderSyncScheduler.requestSync(appContext);
+            }
+            return updated;
+        }, false, callback);
+    }
+
+    public void deleteOrder(int orderId, Callback<Boolean> callback) {
+        executeWrite(db -> db.deleteOrder(orderId), false, callback);
+    }
+
+    // Stock reservations, used through StockHold
+    public void reserveStock(int userId, int productId, int quantity, Callback<Long> callback) {
+        executeWrite(db -> db.reserveStock(userId, productId, quantity, DatabaseHelper.DEFAULT_RESERVATION_TTL_MS),
+                -4L, callback);
+    }
+
+    public void updateReservation(long reservationId, int quantity, Callback<Boolean> callback) {
+        executeWrite(db -> db.updateReservation(reservationId, quantity, DatabaseHelper.DEFAULT_RESERVATION_TTL_MS),
+                false, callback);
+    }
+
+    public void releaseReservation(long reservationId) {
+        executeWrite(db -> db.releaseReservation(reservationId), false, null);
+    }
+
+    // Cart
+    public void addToCart(int userId, int productId, int quantity, Callback<Integer> callback) {
+        // Answers with the new cart size, or -1 if the line couldn't be added
+        executeWrite(db -> db.addToCart(userId, productId, quantity) ? db.getCartItemCount(userId) : -1, -1, callback);
+    }
+
+    public void getCartItems(int userId, Callback<List<CartItem>> callback) {
+        execute(db -> db.getCartItems(userId), new ArrayList<>(), callback);
+    }
+
+    public void getCartItemCount(int userId, Callback<Integer> callback) {
+        execute(db -> db.getCartItemCount(userId), 0, callback);
+    }
+
+    public void setCartQuantity(int userId, int productId, int quantity, Callback<Boolean> callback) {
+        executeWrite(db -> db.setCartQuantity(userId, productId, quantity), false, callback);
+    }
+
+    public void clearCart(int userId, Callback<Boolean> callback) {
+        executeWrite(db -> {
+            db.clearCart(userId);
+            return true;
+        }, false, callback);
+    }
+
+    // The whole basket is one order, so it queues a single sync
+    public void checkoutCart(int userId, String deliveryMethod, String deliveryAddress, Callback<Long> callback) {
+        executeWrite(db -> {
+            long headerId = db.checkoutCart(userId, deliveryMethod, deliveryAddress);
+            if (headerId > 0) {
+                OrderSyncScheduler.requestSync(appContext);
+            }
+            return headerId;
+        }, -4L, callback);
+    }
+
+    // Offer queries
+    public void getAllOffers(Callback<List<Offer>> callback) {
+        execute(DatabaseHelper::getAllOffers, new ArrayList<>(), callback);
+    }
+
+    public void getActiveOffers(Callback<List<Offer>> callback) {
+        execute(DatabaseHelper::getActiveOffers, new ArrayList<>(), callback);
+    }
+
+    public void addOffer(Offer offer, Callback<Long> callback) {
+        executeWrite(db -> db.addOffer(offer), -1L, callback);
+    }
+
+    // Image renditions the offer stops pointing at are deleted once the row is written
+    public void updateOffer(Offer offer, Callback<Boolean> callback) {
+        executeWrite(db -> {
+            List<String> previous = db.getOfferImagePaths(offer.getId());
+            boolean updated = db.updateOffer(offer);
+            if (updated) {
+                previous.remove(offer.getImageUrl());
+                previous.remove(offer.getThumbnailPath());
+                ImageIngest.deleteRenditions(appContext, previous);
+            }
+            return updated;
+        }, false, callback);
+    }
+
+    public void deleteOffer(int offerId, Callback<Boolean> callback) {
+        executeWrite(db -> {
+            List<String> previous = db.getOfferImagePaths(offerId);
+            boolean deleted = db.deleteOffer(offerId);
+            if (deleted) {
+                ImageIngest.deleteRenditions(appContext, previous);
+            }
+            return deleted;
+        }, false, callback);
+    }
+}
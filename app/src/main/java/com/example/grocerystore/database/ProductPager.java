@@ -0,0 +1,120 @@
+package com.example.grocerystore.database;
+
+import android.os.CancellationSignal;
+
+import com.example.grocerystore.models.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the catalog for a ProductQuery one page at a time, so the first rows
+ * show without reading the whole products table. The first page (plus the
+ * total count) is fetched with {@link #loadFirstPage}, which callers run
+ * through a SearchPipeline to get debouncing and cancellation; further pages
+ * are fetched on demand with {@link #loadNextPage}. Use from the main thread.
+ */
+public class ProductPager {
+    public static final int PAGE_SIZE = 40;
+
+    public interface Listener {
+        void onProductsLoaded(List<Product> products, int totalCount);
+    }
+
+    public static class Page {
+        final ProductQuery query;
+        final int userId;
+        final List<Product> products;
+        final int totalCount;
+
+        Page(ProductQuery query, int userId, List<Product> products, int totalCount) {
+            this.query = query;
+            this.userId = userId;
+            this.products = products;
+            this.totalCount = totalCount;
+        }
+    }
+
+    private final GroceryRepository repository;
+    private final Listener listener;
+
+    private final List<Product> loaded = new ArrayList<>();
+    private ProductQuery query;
+    private int userId = -1;
+    private int totalCount;
+    private boolean endReached = true;
+    private boolean loading;
+    private int generation;
+    private CancellationSignal inFlight;
+
+    public ProductPager(GroceryRepository repository, Listener listener) {
+        this.repository = repository;
+        this.listener = listener;
+    }
+
+    /** Fetch the count and first page for a new query; hand the result to {@link #showFirstPage}. */
+    public void loadFirstPage(ProductQuery query, int userId, CancellationSignal cancellationSignal,
+                              GroceryRepository.Callback<Page> callback) {
+        repository.execute(db -> {
+            repository.ensureCatalogSeeded(db);
+            int total = db.countProducts(query, cancellationSignal);
+            List<Product> products = db.getProductsPage(query, userId, null, 0, PAGE_SIZE, cancellationSignal);
+            return new Page(query, userId, products, total);
+        }, callback);
+    }
+
+    /** Replace whatever is loaded with a freshly fetched first page. */
+    public void showFirstPage(Page page) {
+        cancel();
+        this.query = page.query;
+        this.userId = page.userId;
+        this.totalCount = page.totalCount;
+        loaded.clear();
+        loaded.addAll(page.products);
+        endReached = page.products.size() < PAGE_SIZE;
+        listener.onProductsLoaded(new ArrayList<>(loaded), totalCount);
+    }
+
+    /** Append the next page, unless one is already loading or everything is loaded. */
+    public void loadNextPage() {
+        if (loading || endReached || query == null) {
+            return;
+        }
+        loading = true;
+        final int requestGeneration = generation;
+        final CancellationSignal signal = new CancellationSignal();
+        inFlight = signal;
+        final ProductQuery pageQuery = query;
+        final int pageUserId = userId;
+        final Product after = loaded.isEmpty() ? null : loaded.get(loaded.size() - 1);
+        final int offset = loaded.size();
+
+        repository.execute(db -> db.getProductsPage(pageQuery, pageUserId, after, offset, PAGE_SIZE, signal), products -> {
+            if (requestGeneration != generation) {
+                return; // a new first page replaced this query
+            }
+            loading = false;
+            inFlight = null;
+            if (products == null) {
+                return; // failed; the next scroll will retry
+            }
+            loaded.addAll(products);
+            endReached = products.size() < PAGE_SIZE;
+            listener.onProductsLoaded(new ArrayList<>(loaded), totalCount);
+        });
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /** Drop any in-flight next-page load. */
+    public void cancel() {
+        generation++;
+        loading = false;
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.grocerystore.database;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Catalog filters: search text, category, price range and stock. Build one with
+ * {@link #builder()}, setting only the filters you need; DatabaseHelper turns
+ * the result into a single SQL query using the products indexes.
+ */
+public class ProductQuery {
+    public static final String ALL_CATEGORIES = "All Categories";
+    // Matches Product.getStockStatus()
+    public static final int LOW_STOCK_THRESHOLD = 10;
+
+    // Levels count stock not held by a live reservation
+    public enum StockLevel {
+        IN_STOCK,     // more than LOW_STOCK_THRESHOLD
+        LOW_STOCK,    // 1 to LOW_STOCK_THRESHOLD
+        OUT_OF_STOCK  // none left
+    }
+
+    private final String search;
+    private final String category;
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final boolean availableOnly;
+    private final Set<StockLevel> stockLevels;
+
+    private ProductQuery(Builder builder) {
+        this.search = builder.search;
+        this.category = builder.category;
+        this.minPrice = builder.minPrice;
+        this.maxPrice = builder.maxPrice;
+        this.availableOnly = builder.availableOnly;
+        this.stockLevels = Collections.unmodifiableSet(EnumSet.copyOf(builder.stockLevels));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getSearch() {
+        return search;
+    }
+
+    public boolean hasSearch() {
+        return !search.isEmpty();
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean hasCategory() {
+        return category != null && !category.isEmpty() && !ALL_CATEGORIES.equals(category);
+    }
+
+    // Null when that end of the range is open
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public boolean isAvailableOnly() {
+        return availableOnly;
+    }
+
+    public Set<StockLevel> getStockLevels() {
+        return stockLevels;
+    }
+
+    public boolean hasStockFilter() {
+        return stockLevels.size() < StockLevel.values().length;
+    }
+
+    public static class Builder {
+        private String search = "";
+        private String category;
+        private Double minPrice;
+        private Double maxPrice;
+        private boolean availableOnly;
+        private Set<StockLevel> stockLevels = EnumSet.allOf(StockLevel.class);
+
+        private Builder() {}
+
+        public Builder search(String search) {
+            this.search = search != null ? search.trim() : "";
+            return this;
+        }
+
+        public Builder category(String category) {
+            this.category = category;
+            return this;
+        }
+
+        public Builder minPrice(double minPrice) {
+            this.minPrice = minPrice;
+            return this;
+        }
+
+        public Builder maxPrice(double maxPrice) {
+            this.maxPrice = maxPrice;
+            return this;
+        }
+
+        public Builder priceBetween(double minPrice, double maxPrice) {
+            return minPrice(minPrice).maxPrice(maxPrice);
+        }
+
+        // Only products marked available for sale
+        public Builder availableOnly(boolean availableOnly) {
+            this.availableOnly = availableOnly;
+            return this;
+        }
+
+        public Builder stockLevels(Set<StockLevel> stockLevels) {
+            this.stockLevels = EnumSet.noneOf(StockLevel.class);
+            this.stockLevels.addAll(stockLevels);
+            return this;
+        }
+
+        public ProductQuery build() {
+            return new ProductQuery(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.grocerystore.database;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.grocerystore.utils.DebugLog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically deletes expired stock reservations in small batches. Expired
+ * holds stop counting the moment they lapse; the sweep only stops the table
+ * from growing with dead rows.
+ */
+public class ReservationSweepWorker extends Worker {
+    private static final String TAG = "ReservationSweepWorker";
+    static final String UNIQUE_SWEEP_WORK = "reservation-sweep";
+    // WorkManager's shortest periodic interval
+    private static final long SWEEP_INTERVAL_MINUTES = 15;
+    private static final int SWEEP_BATCH_SIZE = 200;
+
+    public ReservationSweepWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(ReservationSweepWorker.class,
+                SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(UNIQUE_SWEEP_WORK, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            int expired = DatabaseHelper.getInstance(getApplicationContext()).expireReservations(SWEEP_BATCH_SIZE);
+            DebugLog.d(TAG, () -> "Deleted " + expired + " expired reservations");
+            return Result.success();
+        } catch (SQLException e) {
+            // The next run tries again
+            Log.e(TAG, "Reservation sweep failed", e);
+            return Result.failure();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.grocerystore.database;
+
+/**
+ * Holds stock for one open order dialog, so the units a shopper is looking at
+ * can't be sold to someone else in the meantime. A hold lasts
+ * {@link DatabaseHelper#DEFAULT_RESERVATION_TTL_MS} and is renewed whenever
+ * the quantity changes; a dialog left open longer simply loses it, and the
+ * order is then checked against free stock as usual. Main thread only, and
+ * callers should wait for one hold() callback before the next.
+ */
+public class StockHold {
+    private final GroceryRepository repository;
+    private final int userId;
+    private final int productId;
+    private long reservationId = -1;
+    private boolean released;
+
+    public StockHold(GroceryRepository repository, int userId, int productId) {
+        this.repository = repository;
+        this.userId = userId;
+        this.productId = productId;
+    }
+
+    // Reports false, keeping any earlier hold, if the quantity isn't free
+    public void hold(int quantity, GroceryRepository.Callback<Boolean> callback) {
+        if (reservationId > 0) {
+            repository.updateReservation(reservationId, quantity, callback);
+            return;
+        }
+        repository.reserveStock(userId, productId, quantity, id -> {
+            boolean held = id > 0;
+            if (held && released) {
+                // The dialog closed while the hold was on its way
+                repository.releaseReservation(id);
+            } else if (held) {
+                reservationId = id;
+            }
+            callback.onResult(held);
+        });
+    }
+
+    // For addOrder, which consumes the hold; -1 if nothing is held
+    public long getReservationId() {
+        return reservationId;
+    }
+
+    public void release() {
+        released = true;
+        if (reservationId > 0) {
+            repository.releaseReservation(reservationId);
+            reservationId = -1;
+        }
+    }
+}
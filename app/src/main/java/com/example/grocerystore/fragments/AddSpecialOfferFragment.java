@@ -4,7 +4,7 @@ import android.Manifest;
 import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -26,17 +26,20 @@ import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
 import com.example.grocerystore.R;
-import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
 import com.example.grocerystore.models.Offer;
 import com.example.grocerystore.models.Product;
+import com.example.grocerystore.utils.ImageIngest;
+import com.example.grocerystore.utils.ImageSourceResolver;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -52,9 +55,12 @@ public class AddSpecialOfferFragment extends Fragment {
     private MaterialCardView formCard;
     private com.google.android.material.switchmaterial.SwitchMaterial activeStatusSwitch;
     
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
+    private ImageIngest imageIngest;
     private Uri selectedImageUri;
     private String selectedImagePath;
+    // Renditions of the picked photo that no saved offer points at yet
+    private ImageIngest.Renditions pickedImage;
     private Offer editingOffer; // For editing existing offers
     private List<Product> availableProducts;
     private Product selectedProduct;
@@ -102,16 +108,13 @@ public class AddSpecialOfferFragment extends Fragment {
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_add_special_offer, container, false);
         
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = GroceryRepository.getInstance(requireContext());
+        imageIngest = new ImageIngest(requireContext());
         
         initializeViews(view);
-        loadAvailableProducts();
-        setupProductSpinner();
         setupCategorySpinner();
         setupListeners();
-        
-        // Check if we're editing an existing offer
-        checkForEditMode();
+        loadAvailableProducts();
         
         animateCardEntry();
         
@@ -140,8 +143,17 @@ public class AddSpecialOfferFragment extends Fragment {
     }
 
     private void loadAvailableProducts() {
-        availableProducts = databaseHelper.getAllProducts();
-        android.util.Log.d("AddSpecialOfferFragment", "Loaded " + availableProducts.size() + " products for selection");
+        repository.getAllProducts(products -> {
+            if (!isAdded() || getView() == null) {
+                return;
+            }
+            availableProducts = products;
+            android.util.Log.d("AddSpecialOfferFragment", "Loaded " + availableProducts.size() + " products for selection");
+            setupProductSpinner();
+            
+            // Check if we're editing an existing offer
+            checkForEditMode();
+        });
     }
     
     private void setupProductSpinner() {
@@ -191,6 +203,8 @@ public class AddSpecialOfferFragment extends Fragment {
         
         // Auto-load product image if available
         if (product.getImageUrl() != null && !product.getImageUrl().isEmpty()) {
+            imageIngest.discard(pickedImage);
+            pickedImage = null;
             selectedImagePath = product.getImageUrl();
             loadProductImage(product.getImageUrl());
         }
@@ -199,18 +213,13 @@ public class AddSpecialOfferFragment extends Fragment {
     }
     
     private void loadProductImage(String imageUrl) {
-        // This is a simplified version - in a real app you'd use Glide or Picasso
-        try {
-            if (imageUrl.startsWith("drawable://")) {
-                String drawableName = imageUrl.replace("drawable://", "");
-                int resourceId = getResources().getIdentifier(drawableName, "drawable", requireContext().getPackageName());
-                if (resourceId != 0) {
-                    imagePreview.setImageResource(resourceId);
-                    imagePreview.setVisibility(View.VISIBLE);
-                }
-            }
-        } catch (Exception e) {
-            android.util.Log.e("AddSpecialOfferFragment", "Error loading product image: " + e.getMessage());
+        RequestBuilder<Drawable> request = ImageSourceResolver.getInstance(requireContext())
+                .load(Glide.with(this), imageUrl);
+        if (request != null) {
+            request.error(R.drawable.placeholder_image).into(imagePreview);
+            imagePreview.setVisibility(View.VISIBLE);
+        } else {
+            android.util.Log.e("AddSpecialOfferFragment", "No image for " + imageUrl);
         }
     }
 
@@ -298,22 +307,29 @@ public class AddSpecialOfferFragment extends Fragment {
     }
 
     private void displaySelectedImage() {
-        try {
-            Bitmap bitmap = MediaStore.Images.Media.getBitmap(
-                requireContext().getContentResolver(), selectedImageUri);
-            imagePreview.setImageBitmap(bitmap);
-            imagePreview.setVisibility(View.VISIBLE);
-            
-            // Store the image path (simplified - in real app would save to internal storage)
-            selectedImagePath = selectedImageUri.toString();
+        Uri source = selectedImageUri;
+        // Decoding and downsampling run off the main thread; saving waits for them
+        saveOfferButton.setEnabled(false);
+        imageIngest.ingest(source, renditions -> {
+            if (!isAdded() || getView() == null || source != selectedImageUri) {
+                // The form is gone or another image was picked meanwhile
+                imageIngest.discard(renditions);
+                return;
+            }
+            saveOfferButton.setEnabled(true);
+            if (renditions == null) {
+                Toast.makeText(getContext(), "Failed to load image", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            imageIngest.discard(pickedImage);
+            pickedImage = renditions;
+            selectedImagePath = renditions.detailPath;
+            loadProductImage(renditions.detailPath);
             
             // Animate image appearance
             Animation fadeIn = AnimationUtils.loadAnimation(getContext(), android.R.anim.fade_in);
             imagePreview.startAnimation(fadeIn);
-            
-        } catch (IOException e) {
-            Toast.makeText(getContext(), "Failed to load image", Toast.LENGTH_SHORT).show();
-        }
+        });
     }
 
     private void validateAndSaveOffer() {
@@ -344,6 +360,10 @@ public class AddSpecialOfferFragment extends Fragment {
             if (productImageUrl == null || productImageUrl.isEmpty()) {
                 productImageUrl = selectedProduct.getImageUrl();
             }
+            // Only an uploaded image has a thumbnail rendition. Once saving starts the
+            // files belong to the offer, so leaving the form mustn't delete them.
+            ImageIngest.Renditions savingImage = pickedImage;
+            String thumbnailPath = savingImage != null ? savingImage.thumbnailPath : null;
 
             // Create or update offer object
             Offer offer;
@@ -360,8 +380,9 @@ public class AddSpecialOfferFragment extends Fragment {
                 offer.setStockQuantity(stockQuantity);
                 offer.setDescription(description);
                 offer.setActive(isActive);
-                if (productImageUrl != null) {
+                if (productImageUrl != null && !productImageUrl.equals(offer.getImageUrl())) {
                     offer.setImageUrl(productImageUrl);
+                    offer.setThumbnailPath(thumbnailPath);
                 }
             } else {
                 // Create new offer
@@ -374,15 +395,45 @@ public class AddSpecialOfferFragment extends Fragment {
                 offer.setStockQuantity(stockQuantity);
                 offer.setDescription(description);
                 offer.setImageUrl(productImageUrl != null ? productImageUrl : "");
+                offer.setThumbnailPath(thumbnailPath);
                 offer.setActive(isActive);
                 offer.setCreatedAt(System.currentTimeMillis());
                 offer.setExpiresAt(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000)); // 30 days
             }
 
             // Save to database
-            long result;
+            GroceryRepository.Callback<Long> onSaved = result -> {
+                if (!isAdded()) {
+                    return;
+                }
+                saveOfferButton.setEnabled(true);
+                
+                if (result != -1) {
+                    showSuccessMessage(isUpdate ? "Offer updated successfully!" : "Offer created successfully!");
+                    if (!isUpdate) {
+                        clearForm();
+                    } else {
+                        // Navigate back to manage offers
+                        if (getActivity() != null) {
+                            getActivity().getSupportFragmentManager().popBackStack();
+                        }
+                    }
+                    
+                    // TODO: Sync to backend/server (REST API call)
+                    syncToBackend(offer);
+                    
+                } else {
+                    if (pickedImage == null) {
+                        pickedImage = savingImage;
+                    }
+                    showErrorMessage(isUpdate ? "Failed to update offer" : "Failed to save offer to database");
+                }
+            };
+            
+            saveOfferButton.setEnabled(false);
+            pickedImage = null;
             if (isUpdate) {
-                result = databaseHelper.updateOffer(offer) ? 1 : -1;
+                repository.updateOffer(offer, updated -> onSaved.onResult(updated ? 1L : -1L));
             } else {
                 android.util.Log.d("AddSpecialOfferFragment", "=== SAVING NEW OFFER ===");
                 android.util.Log.d("AddSpecialOfferFragment", "Product ID: " + offer.getProductId());
@@ -395,26 +446,10 @@ public class AddSpecialOfferFragment extends Fragment {
                 android.util.Log.d("AddSpecialOfferFragment", "Created At: " + offer.getCreatedAt());
                 android.util.Log.d("AddSpecialOfferFragment", "Expires At: " + offer.getExpiresAt());
                 
-                result = databaseHelper.addOffer(offer);
-                android.util.Log.d("AddSpecialOfferFragment", "Database insert result: " + result);
-            }
-            
-            if (result != -1) {
-                showSuccessMessage(isUpdate ? "Offer updated successfully!" : "Offer created successfully!");
-                if (!isUpdate) {
-                    clearForm();
-                } else {
-                    // Navigate back to manage offers
-                    if (getActivity() != null) {
-                        getActivity().getSupportFragmentManager().popBackStack();
-                    }
-                }
-                
-                // TODO: Sync to backend/server (REST API call)
-                syncToBackend(offer);
-                
-            } else {
-                showErrorMessage(isUpdate ? "Failed to update offer" : "Failed to save offer to database");
+                repository.addOffer(offer, result -> {
+                    android.util.Log.d("AddSpecialOfferFragment", "Database insert result: " + result);
+                    onSaved.onResult(result);
+                });
             }
 
         } catch (NumberFormatException e) {
@@ -570,6 +605,8 @@ public class AddSpecialOfferFragment extends Fragment {
         imagePreview.setImageDrawable(null);
         selectedImageUri = null;
         selectedImagePath = null;
+        imageIngest.discard(pickedImage);
+        pickedImage = null;
         selectedProduct = null;
         
         // Clear any errors
@@ -580,6 +617,15 @@ public class AddSpecialOfferFragment extends Fragment {
         productSpinner.setError(null);
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (imageIngest != null) {
+            imageIngest.discard(pickedImage);
+            pickedImage = null;
+        }
+    }
+
     private void animateCardEntry() {
         if (formCard != null) {
             Animation slideUp = AnimationUtils.loadAnimation(getContext(), R.anim.slide_up);
@@ -11,13 +11,13 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.grocerystore.R;
-import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
 import com.example.grocerystore.utils.UserManager;
 import com.google.android.material.card.MaterialCardView;
 
 public class AdminDashboardFragment extends Fragment {
 
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
     private UserManager userManager;
     
     private TextView totalUsersText;
@@ -53,7 +53,7 @@ public class AdminDashboardFragment extends Fragment {
     }
 
     private void initializeData() {
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = GroceryRepository.getInstance(requireContext());
         userManager = new UserManager(getContext());
     }
 
@@ -111,16 +111,22 @@ public class AdminDashboardFragment extends Fragment {
 
     private void loadDashboardData() {
         // Load statistics
-        int totalUsers = userManager.getUserCount();
-        int totalProducts = databaseHelper.getProductCount();
-        int totalOrders = databaseHelper.getTotalOrdersCount();
-        int pendingOrders = databaseHelper.getPendingOrdersCount();
-
-        // Update UI
-        totalUsersText.setText(String.valueOf(totalUsers));
-        totalProductsText.setText(String.valueOf(totalProducts));
-        totalOrdersText.setText(String.valueOf(totalOrders));
-        pendingOrdersText.setText(String.valueOf(pendingOrders));
+        repository.execute(db -> new int[]{
+                userManager.getUserCount(),
+                db.getProductCount(),
+                db.getTotalOrdersCount(),
+                db.getPendingOrdersCount()
+        }, stats -> {
+            if (!isAdded() || getView() == null || stats == null) {
+                return;
+            }
+
+            // Update UI
+            totalUsersText.setText(String.valueOf(stats[0]));
+            totalProductsText.setText(String.valueOf(stats[1]));
+            totalOrdersText.setText(String.valueOf(stats[2]));
+            pendingOrdersText.setText(String.valueOf(stats[3]));
+        });
     }
 
     @Override
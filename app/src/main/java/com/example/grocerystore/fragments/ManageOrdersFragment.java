@@ -17,7 +17,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grocerystore.R;
 import com.example.grocerystore.adapters.AdminOrdersAdapter;
-import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
 import com.example.grocerystore.models.Order;
 
 import java.util.Arrays;
@@ -27,7 +27,7 @@ public class ManageOrdersFragment extends Fragment implements AdminOrdersAdapter
 
     private RecyclerView ordersRecyclerView;
     private AdminOrdersAdapter ordersAdapter;
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
 
     @Nullable
     @Override
@@ -54,7 +54,7 @@ public class ManageOrdersFragment extends Fragment implements AdminOrdersAdapter
     }
 
     private void initializeData() {
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = GroceryRepository.getInstance(requireContext());
     }
 
     private void setupRecyclerView() {
@@ -64,8 +64,11 @@ public class ManageOrdersFragment extends Fragment implements AdminOrdersAdapter
     }
 
     private void loadOrders() {
-        List<Order> orders = databaseHelper.getAllOrders();
-        ordersAdapter.updateOrders(orders);
+        repository.getAllOrders(orders -> {
+            if (isAdded() && getView() != null) {
+                ordersAdapter.updateOrders(orders);
+            }
+        });
     }
 
     @Override
@@ -84,12 +87,17 @@ public class ManageOrdersFragment extends Fragment implements AdminOrdersAdapter
                 .setTitle("Delete Order")
                 .setMessage("Are you sure you want to delete this order?")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    if (databaseHelper.deleteOrder(order.getId())) {
-                        Toast.makeText(getContext(), "Order deleted successfully", Toast.LENGTH_SHORT).show();
-                        loadOrders(); // Refresh the list
-                    } else {
-                        Toast.makeText(getContext(), "Failed to delete order", Toast.LENGTH_SHORT).show();
-                    }
+                    repository.deleteOrder(order.getId(), success -> {
+                        if (!isAdded()) {
+                            return;
+                        }
+                        if (success) {
+                            Toast.makeText(getContext(), "Order deleted successfully", Toast.LENGTH_SHORT).show();
+                            loadOrders(); // Refresh the list
+                        } else {
+                            Toast.makeText(getContext(), "Failed to delete order", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -117,12 +125,17 @@ public class ManageOrdersFragment extends Fragment implements AdminOrdersAdapter
                 .setView(dialogView)
                 .setPositiveButton("Update", (dialog, which) -> {
                     String newStatus = statusSpinner.getSelectedItem().toString();
-                    if (databaseHelper.updateOrderStatus(order.getId(), newStatus)) {
-                        Toast.makeText(getContext(), "Order status updated successfully", Toast.LENGTH_SHORT).show();
-                        loadOrders(); // Refresh the list
-                    } else {
-                        Toast.makeText(getContext(), "Failed to update order status", Toast.LENGTH_SHORT).show();
-                    }
+                    repository.updateOrderStatus(order.getId(), newStatus, success -> {
+                        if (!isAdded()) {
+                            return;
+                        }
+                        if (success) {
+                            Toast.makeText(getContext(), "Order status updated successfully", Toast.LENGTH_SHORT).show();
+                            loadOrders(); // Refresh the list
+                        } else {
+                            Toast.makeText(getContext(), "Failed to update order status", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
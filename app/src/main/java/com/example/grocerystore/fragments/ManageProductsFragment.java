@@ -17,7 +17,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grocerystore.R;
 import com.example.grocerystore.adapters.AdminProductsAdapter;
-import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
 import com.example.grocerystore.models.Product;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
@@ -27,7 +27,7 @@ public class ManageProductsFragment extends Fragment implements AdminProductsAda
 
     private RecyclerView productsRecyclerView;
     private AdminProductsAdapter productsAdapter;
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
     private FloatingActionButton addProductFab;
 
     @Nullable
@@ -58,7 +58,7 @@ public class ManageProductsFragment extends Fragment implements AdminProductsAda
     }
 
     private void initializeData() {
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = GroceryRepository.getInstance(requireContext());
     }
 
     private void setupRecyclerView() {
@@ -68,8 +68,11 @@ public class ManageProductsFragment extends Fragment implements AdminProductsAda
     }
 
     private void loadProducts() {
-        List<Product> products = databaseHelper.getAllProducts();
-        productsAdapter.updateProducts(products);
+        repository.getAllProducts(products -> {
+            if (isAdded() && getView() != null) {
+                productsAdapter.updateProducts(products);
+            }
+        });
     }
 
     private void showAddProductDialog() {
@@ -82,12 +85,17 @@ public class ManageProductsFragment extends Fragment implements AdminProductsAda
                 .setTitle("Delete Product")
                 .setMessage("Are you sure you want to delete " + product.getName() + "?")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    if (databaseHelper.deleteProduct(product.getId())) {
-                        Toast.makeText(getContext(), "Product deleted successfully", Toast.LENGTH_SHORT).show();
-                        loadProducts(); // Refresh the list
-                    } else {
-                        Toast.makeText(getContext(), "Failed to delete product", Toast.LENGTH_SHORT).show();
-                    }
+                    repository.deleteProduct(product.getId(), success -> {
+                        if (!isAdded()) {
+                            return;
+                        }
+                        if (success) {
+                            Toast.makeText(getContext(), "Product deleted successfully", Toast.LENGTH_SHORT).show();
+                            loadProducts(); // Refresh the list
+                        } else {
+                            Toast.makeText(getContext(), "Failed to delete product", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -176,12 +184,17 @@ public class ManageProductsFragment extends Fragment implements AdminProductsAda
                             product.setCategory(category);
                             product.setImageUrl(imageUrl.isEmpty() ? "https://via.placeholder.com/150" : imageUrl);
 
-                            if (databaseHelper.updateProduct(product)) {
-                                Toast.makeText(getContext(), "Product updated successfully", Toast.LENGTH_SHORT).show();
-                                loadProducts();
-                            } else {
-                                Toast.makeText(getContext(), "Failed to update product", Toast.LENGTH_SHORT).show();
-                            }
+                            repository.updateProduct(product, success -> {
+                                if (!isAdded()) {
+                                    return;
+                                }
+                                if (success) {
+                                    Toast.makeText(getContext(), "Product updated successfully", Toast.LENGTH_SHORT).show();
+                                    loadProducts();
+                                } else {
+                                    Toast.makeText(getContext(), "Failed to update product", Toast.LENGTH_SHORT).show();
+                                }
+                            });
                         } else {
                             // Add new product
                             Product newProduct = new Product(
@@ -194,12 +207,17 @@ public class ManageProductsFragment extends Fragment implements AdminProductsAda
                             );
                             newProduct.setDescription(description);
 
-                            if (databaseHelper.addProduct(newProduct) > 0) {
-                                Toast.makeText(getContext(), "Product added successfully", Toast.LENGTH_SHORT).show();
-                                loadProducts();
-                            } else {
-                                Toast.makeText(getContext(), "Failed to add product", Toast.LENGTH_SHORT).show();
-                            }
+                            repository.addProduct(newProduct, productId -> {
+                                if (!isAdded()) {
+                                    return;
+                                }
+                                if (productId > 0) {
+                                    Toast.makeText(getContext(), "Product added successfully", Toast.LENGTH_SHORT).show();
+                                    loadProducts();
+                                } else {
+                                    Toast.makeText(getContext(), "Failed to add product", Toast.LENGTH_SHORT).show();
+                                }
+                            });
                         }
                     } catch (NumberFormatException e) {
                         Toast.makeText(getContext(), "Please enter a valid price", Toast.LENGTH_SHORT).show();
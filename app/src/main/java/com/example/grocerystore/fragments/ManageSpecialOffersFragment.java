@@ -15,7 +15,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grocerystore.R;
 import com.example.grocerystore.adapters.AdminOffersAdapter;
-import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
 import com.example.grocerystore.models.Offer;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
@@ -27,7 +27,7 @@ public class ManageSpecialOffersFragment extends Fragment implements AdminOffers
     private RecyclerView recyclerView;
     private AdminOffersAdapter adapter;
     private FloatingActionButton fabAddOffer;
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
     private List<Offer> offersList;
 
     @Nullable
@@ -39,7 +39,7 @@ public class ManageSpecialOffersFragment extends Fragment implements AdminOffers
         setupRecyclerView();
         setupFAB();
         
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = GroceryRepository.getInstance(requireContext());
         loadOffers();
         
         return view;
@@ -72,13 +72,18 @@ public class ManageSpecialOffersFragment extends Fragment implements AdminOffers
     }
 
     private void loadOffers() {
-        offersList = databaseHelper.getAllOffers();
-        adapter.updateOffers(offersList);
-        
-        if (offersList.isEmpty()) {
-            // Show empty state message
-            Toast.makeText(getContext(), "No special offers found. Add some offers!", Toast.LENGTH_LONG).show();
-        }
+        repository.getAllOffers(offers -> {
+            if (!isAdded() || getView() == null) {
+                return;
+            }
+            offersList = offers;
+            adapter.updateOffers(offersList);
+            
+            if (offersList.isEmpty()) {
+                // Show empty state message
+                Toast.makeText(getContext(), "No special offers found. Add some offers!", Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     @Override
@@ -87,13 +92,18 @@ public class ManageSpecialOffersFragment extends Fragment implements AdminOffers
             .setTitle("Delete Offer")
             .setMessage("Are you sure you want to delete this special offer: " + offer.getProductName() + "?")
             .setPositiveButton("Delete", (dialog, which) -> {
-                if (databaseHelper.deleteOffer(offer.getId())) {
-                    offersList.remove(offer);
-                    adapter.updateOffers(offersList);
-                    Toast.makeText(getContext(), "Offer deleted successfully", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(getContext(), "Failed to delete offer", Toast.LENGTH_SHORT).show();
-                }
+                repository.deleteOffer(offer.getId(), success -> {
+                    if (!isAdded()) {
+                        return;
+                    }
+                    if (success) {
+                        offersList.remove(offer);
+                        adapter.updateOffers(offersList);
+                        Toast.makeText(getContext(), "Offer deleted successfully", Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(getContext(), "Failed to delete offer", Toast.LENGTH_SHORT).show();
+                    }
+                });
             })
             .setNegativeButton("Cancel", null)
             .show();
@@ -121,14 +131,19 @@ public class ManageSpecialOffersFragment extends Fragment implements AdminOffers
     @Override
     public void onToggleOfferStatus(Offer offer) {
         offer.setActive(!offer.isActive());
-        if (databaseHelper.updateOffer(offer)) {
-            adapter.updateOffers(offersList);
-            String status = offer.isActive() ? "activated" : "deactivated";
-            Toast.makeText(getContext(), "Offer " + status + " successfully", Toast.LENGTH_SHORT).show();
-        } else {
-            offer.setActive(!offer.isActive()); // Revert the change
-            Toast.makeText(getContext(), "Failed to update offer status", Toast.LENGTH_SHORT).show();
-        }
+        repository.updateOffer(offer, success -> {
+            if (!isAdded()) {
+                return;
+            }
+            if (success) {
+                adapter.notifyOfferChanged(offer);
+                String status = offer.isActive() ? "activated" : "deactivated";
+                Toast.makeText(getContext(), "Offer " + status + " successfully", Toast.LENGTH_SHORT).show();
+            } else {
+                offer.setActive(!offer.isActive()); // Revert the change
+                Toast.makeText(getContext(), "Failed to update offer status", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     @Override
@@ -24,10 +24,12 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.grocerystore.NavigationActivity;
 import com.example.grocerystore.R;
 import com.example.grocerystore.adapters.EnhancedFavoritesAdapter;
-import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
+import com.example.grocerystore.database.StockHold;
 import com.example.grocerystore.model.User;
 import com.example.grocerystore.models.Order;
 import com.example.grocerystore.models.Product;
+import com.example.grocerystore.utils.DebugLog;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
@@ -41,7 +43,7 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
     
     private RecyclerView favoritesRecyclerView;
     private EnhancedFavoritesAdapter favoritesAdapter;
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
     private View emptyState;
     private MaterialButton browseProductsButton;
     private TextView favoritesCountText;
@@ -79,7 +81,7 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
     }
 
     private void setupDatabase() {
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = GroceryRepository.getInstance(requireContext());
     }
 
     private void setupRecyclerView() {
@@ -119,32 +121,41 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
         }
         
         int userId = Math.abs(currentUser.getEmail().hashCode()) % 1000;
-        List<Product> favoriteProducts = databaseHelper.getFavoriteProducts(userId);
-        
-        // Debug: Check what image URLs favorites have
-        android.util.Log.d("MyFavoritesFragment", "=== LOADING FAVORITES DEBUG ===");
-        android.util.Log.d("MyFavoritesFragment", "User ID: " + userId);
-        android.util.Log.d("MyFavoritesFragment", "Total favorites found: " + favoriteProducts.size());
-        
-        for (Product product : favoriteProducts) {
-            android.util.Log.d("MyFavoritesFragment", "FAVORITE PRODUCT: " +
-                product.getName() + " | Image URL: " + product.getImageUrl() + 
-                " | Category: " + product.getCategory());
-        }
-        
-        if (favoriteProducts.isEmpty()) {
-            showEmptyState();
-        } else {
-            showFavoriteProducts(favoriteProducts);
-        }
-        
-        updateFavoritesCount(favoriteProducts.size());
+        repository.getFavoriteProducts(userId, favoriteProducts -> {
+            if (!isAdded() || getView() == null) {
+                return;
+            }
+            
+            // Debug: Check what image URLs favorites have
+            android.util.Log.d("MyFavoritesFragment", "=== LOADING FAVORITES DEBUG ===");
+            android.util.Log.d("MyFavoritesFragment", "User ID: " + userId);
+            android.util.Log.d("MyFavoritesFragment", "Total favorites found: " + favoriteProducts.size());
+            
+            for (Product product : favoriteProducts) {
+                DebugLog.d("MyFavoritesFragment", () -> "FAVORITE PRODUCT: " +
+                    product.getName() + " | Image URL: " + product.getImageUrl() + 
+                    " | Category: " + product.getCategory());
+            }
+            
+            if (favoriteProducts.isEmpty()) {
+                showEmptyState();
+            } else {
+                showFavoriteProducts(favoriteProducts);
+            }
+            
+            updateFavoritesCount(favoriteProducts.size());
+        });
     }
 
     private void showFavoriteProducts(List<Product> favoriteProducts) {
-        favoritesAdapter = new EnhancedFavoritesAdapter(getContext(), favoriteProducts);
-        favoritesAdapter.setOnFavoriteActionListener(this);
-        favoritesRecyclerView.setAdapter(favoritesAdapter);
+        if (favoritesAdapter == null || favoritesRecyclerView.getAdapter() != favoritesAdapter) {
+            favoritesAdapter = new EnhancedFavoritesAdapter(getContext(), favoriteProducts);
+            favoritesAdapter.setOnFavoriteActionListener(this);
+            favoritesRecyclerView.setAdapter(favoritesAdapter);
+        } else {
+            // Reuse the adapter so a reload only rebinds rows that changed
+            favoritesAdapter.updateFavorites(favoriteProducts);
+        }
         
         emptyState.setVisibility(View.GONE);
         favoritesRecyclerView.setVisibility(View.VISIBLE);
@@ -205,19 +216,25 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
         int userId = Math.abs(currentUser.getEmail().hashCode()) % 1000;
         
         // Animate removal
-        animateItemRemoval(position, () -> {
-            boolean success = databaseHelper.removeFromFavorites(userId, product.getId());
+        animateItemRemoval(position, () -> repository.removeFromFavorites(userId, product.getId(), success -> {
+            if (!isAdded() || getView() == null) {
+                return;
+            }
             
             if (success) {
                 product.setFavorite(false);
                 
                 if (favoritesAdapter != null) {
-                    favoritesAdapter.removeItem(position);
-                    updateFavoritesCount(favoritesAdapter.getItemCount());
-                    
-                    if (favoritesAdapter.getItemCount() == 0) {
-                        showEmptyState();
-                    }
+                    favoritesAdapter.removeItem(position, () -> {
+                        if (!isAdded() || favoritesAdapter == null) {
+                            return;
+                        }
+                        updateFavoritesCount(favoritesAdapter.getItemCount());
+                        
+                        if (favoritesAdapter.getItemCount() == 0) {
+                            showEmptyState();
+                        }
+                    });
                 }
                 
                 // Show snackbar with undo option
@@ -230,7 +247,7 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
                 }
                 Toast.makeText(getContext(), "Failed to remove from favorites", Toast.LENGTH_SHORT).show();
             }
-        });
+        }));
     }
 
     private void showUndoSnackbar(Product product, int position, int userId) {
@@ -241,16 +258,17 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
             
             snackbar.setAction("UNDO", v -> {
                 // Re-add to favorites
-                boolean success = databaseHelper.addToFavorites(userId, product.getId());
-                if (success) {
-                    product.setFavorite(true);
-                    loadFavoriteProducts(); // Reload to get proper order
-                    
-                    // Animate re-addition with heart pop
-                    animateHeartPop();
-                    
-                    Toast.makeText(getContext(), "Added back to favorites", Toast.LENGTH_SHORT).show();
-                }
+                repository.addToFavorites(userId, product.getId(), success -> {
+                    if (success && isAdded()) {
+                        product.setFavorite(true);
+                        loadFavoriteProducts(); // Reload to get proper order
+                        
+                        // Animate re-addition with heart pop
+                        animateHeartPop();
+                        
+                        Toast.makeText(getContext(), "Added back to favorites", Toast.LENGTH_SHORT).show();
+                    }
+                });
             });
             
             snackbar.show();
@@ -276,6 +294,7 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
         View addressLayout = dialogView.findViewById(R.id.address_layout);
         MaterialButton cancelButton = dialogView.findViewById(R.id.cancel_button);
         MaterialButton confirmOrderButton = dialogView.findViewById(R.id.confirm_order_button);
+        MaterialButton addToCartButton = dialogView.findViewById(R.id.add_to_cart_button);
         
         // Set product info
         productNameDialog.setText(product.getName());
@@ -284,28 +303,41 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
         // Quantity management
         final int[] quantity = {1};
         final double[] deliveryFee = {0.0};
+
+        // Hold the units on screen while the dialog is open
+        User shopper = getCurrentUser();
+        StockHold stockHold = shopper == null ? null
+                : new StockHold(repository, Math.abs(shopper.getEmail().hashCode()) % 1000, product.getId());
+        if (stockHold != null) {
+            changeHeldQuantity(stockHold, quantity[0], () -> {}, decreaseQuantity, increaseQuantity);
+            dialog.setOnDismissListener(d -> stockHold.release());
+        }
         
         updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
         
         decreaseQuantity.setOnClickListener(v -> {
             if (quantity[0] > 1) {
-                quantity[0]--;
-                quantityText.setText(String.valueOf(quantity[0]));
-                updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
+                changeHeldQuantity(stockHold, quantity[0] - 1, () -> {
+                    quantity[0]--;
+                    quantityText.setText(String.valueOf(quantity[0]));
+                    updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
                 
-                // Animate quantity change
-                animateQuantityChange(quantityText, false);
+                    // Animate quantity change
+                    animateQuantityChange(quantityText, false);
+                }, decreaseQuantity, increaseQuantity);
             }
         });
         
         increaseQuantity.setOnClickListener(v -> {
-            if (quantity[0] < product.getStockQuantity()) {
-                quantity[0]++;
-                quantityText.setText(String.valueOf(quantity[0]));
-                updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
+            if (quantity[0] < product.getAvailableQuantity()) {
+                changeHeldQuantity(stockHold, quantity[0] + 1, () -> {
+                    quantity[0]++;
+                    quantityText.setText(String.valueOf(quantity[0]));
+                    updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
                 
-                // Animate quantity change
-                animateQuantityChange(quantityText, true);
+                    // Animate quantity change
+                    animateQuantityChange(quantityText, true);
+                }, decreaseQuantity, increaseQuantity);
             } else {
                 // Animate error
                 animateError(quantityText);
@@ -328,6 +360,29 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
         
         // Cancel button
         cancelButton.setOnClickListener(v -> dialog.dismiss());
+
+        // Add to cart; the basket is checked out as one order from My Orders
+        addToCartButton.setOnClickListener(v -> {
+            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                Toast.makeText(getContext(), "Please log in to place orders", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            int userId = Math.abs(currentUser.getEmail().hashCode()) % 1000;
+            addToCartButton.setEnabled(false);
+            repository.addToCart(userId, product.getId(), quantity[0], cartSize -> {
+                if (!isAdded()) {
+                    return;
+                }
+                addToCartButton.setEnabled(true);
+                if (cartSize > 0) {
+                    Toast.makeText(getContext(), "Added to cart (" + cartSize + " items)", Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                } else {
+                    Toast.makeText(getContext(), "Failed to add to cart. Please try again.", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
         
         // Confirm order
         confirmOrderButton.setOnClickListener(v -> {
@@ -369,18 +424,28 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
             order.setOrderDate(currentDate);
             
             // Save order to database
-            long orderId = databaseHelper.addOrder(order);
-            
-            if (orderId != -1) {
-                // Animate success
-                animateOrderSuccess(confirmOrderButton);
-                
-                Toast.makeText(getContext(), "Order placed successfully! 🎉", Toast.LENGTH_LONG).show();
-                dialog.dismiss();
-            } else {
-                animateError(confirmOrderButton);
-                Toast.makeText(getContext(), "Failed to place order. Please try again.", Toast.LENGTH_SHORT).show();
-            }
+            long reservationId = stockHold != null ? stockHold.getReservationId() : -1;
+            repository.addOrder(order, reservationId, orderId -> {
+                if (!isAdded()) {
+                    return;
+                }
+                if (orderId > 0) {
+                    // Animate success
+                    animateOrderSuccess(confirmOrderButton);
+                    
+                    Toast.makeText(getContext(), "Order placed successfully! 🎉", Toast.LENGTH_LONG).show();
+                    dialog.dismiss();
+                } else if (orderId == -2) {
+                    animateError(confirmOrderButton);
+                    Toast.makeText(getContext(), "Sorry, insufficient stock available!", Toast.LENGTH_SHORT).show();
+                } else if (orderId == -1) {
+                    animateError(confirmOrderButton);
+                    Toast.makeText(getContext(), "Product not found!", Toast.LENGTH_SHORT).show();
+                } else {
+                    animateError(confirmOrderButton);
+                    Toast.makeText(getContext(), "Failed to place order. Please try again.", Toast.LENGTH_SHORT).show();
+                }
+            });
         });
         
         // Animate dialog entrance
@@ -389,6 +454,31 @@ public class MyFavoritesFragment extends Fragment implements EnhancedFavoritesAd
         dialog.show();
     }
 
+    // Moves the hold to the new quantity first and only then updates the
+    // dialog; the buttons stay disabled until the hold answers
+    private void changeHeldQuantity(StockHold stockHold, int quantity, Runnable onHeld, View... buttons) {
+        if (stockHold == null) {
+            onHeld.run();
+            return;
+        }
+        for (View button : buttons) {
+            button.setEnabled(false);
+        }
+        stockHold.hold(quantity, held -> {
+            if (!isAdded()) {
+                return;
+            }
+            for (View button : buttons) {
+                button.setEnabled(true);
+            }
+            if (held) {
+                onHeld.run();
+            } else {
+                Toast.makeText(getContext(), "Not enough stock available", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
     private void updateTotalPrice(Product product, int quantity, double deliveryFee, TextView totalPriceView) {
         double total = (product.getPrice() * quantity) + deliveryFee;
         totalPriceView.setText(String.format(Locale.getDefault(), "$%.2f", total));
@@ -1,11 +1,13 @@
 package com.example.grocerystore.fragments;
 
+import android.app.AlertDialog;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
+import android.widget.RadioGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -19,18 +21,22 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.grocerystore.NavigationActivity;
 import com.example.grocerystore.R;
 import com.example.grocerystore.adapters.OrderAdapter;
-import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
+import com.example.grocerystore.models.CartItem;
 import com.example.grocerystore.models.Order;
 import com.example.grocerystore.model.User;
+import com.example.grocerystore.network.OrderSyncScheduler;
 import com.example.grocerystore.network.OrderSyncService;
 import com.example.grocerystore.utils.PreferencesManager;
 import com.example.grocerystore.utils.UserManager;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderActionListener {
 
@@ -40,9 +46,10 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
     private ChipGroup statusFilterChips;
     private View emptyState, loadingState;
     private MaterialButton startShoppingButton;
+    private MaterialButton cartButton;
 
     private OrderAdapter orderAdapter;
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
     private OrderSyncService syncService;
     private PreferencesManager preferencesManager;
     private UserManager userManager;
@@ -74,10 +81,8 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
         loadCurrentUser();
         loadOrders();
         
-        // Start sync if online
-        if (syncService.isNetworkAvailable()) {
-            syncOrders();
-        }
+        // Queue a sync; it waits for the network if we're offline
+        syncOrders();
     }
 
     private void initializeViews(View view) {
@@ -88,15 +93,16 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
         emptyState = view.findViewById(R.id.empty_state);
         loadingState = view.findViewById(R.id.loading_state);
         startShoppingButton = view.findViewById(R.id.btnStartShopping);
+        cartButton = view.findViewById(R.id.cart_button);
     }
 
     private void setupServices() {
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = GroceryRepository.getInstance(requireContext());
         syncService = new OrderSyncService(getContext());
         preferencesManager = new PreferencesManager(getContext());
         userManager = new UserManager(getContext());
         
-        syncService.setSyncListener(new OrderSyncService.OnSyncCompleteListener() {
+        OrderSyncScheduler.observe(requireContext(), getViewLifecycleOwner(), new OrderSyncService.OnSyncCompleteListener() {
             @Override
             public void onSyncStarted() {
                 if (getActivity() != null) {
@@ -189,6 +195,8 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
             }
         });
 
+        cartButton.setOnClickListener(v -> showCartDialog());
+
         syncStatusHeader.setOnClickListener(v -> {
             if (syncService.isNetworkAvailable()) {
                 syncOrders();
@@ -218,12 +226,18 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
         if (currentUser != null) {
             int userId = generateUserId(currentUser.getEmail());
             
-            // Create sample orders for this user if they don't have any
-            databaseHelper.createSampleOrdersForUser(userId);
-            
-            allOrders = databaseHelper.getUserOrders(userId);
-            applyFilter(currentFilter);
-            updateOrdersCount();
+            repository.execute(db -> {
+                // Create sample orders for this user if they don't have any
+                db.createSampleOrdersForUser(userId);
+                return db.getUserOrders(userId);
+            }, orders -> {
+                if (!isAdded() || getView() == null) {
+                    return;
+                }
+                allOrders = orders != null ? orders : new ArrayList<>();
+                applyFilter(currentFilter);
+                updateOrdersCount();
+            });
         } else {
             allOrders.clear();
             filteredOrders.clear();
@@ -249,11 +263,11 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
     }
 
     private void updateUI() {
+        orderAdapter.updateOrders(filteredOrders);
         if (filteredOrders.isEmpty()) {
             showEmptyState();
         } else {
             showOrdersList();
-            orderAdapter.updateOrders(filteredOrders);
         }
     }
 
@@ -294,6 +308,111 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
         syncService.syncOrders();
     }
 
+    private void updateCartButton() {
+        if (currentUser == null) {
+            return;
+        }
+        repository.getCartItemCount(generateUserId(currentUser.getEmail()), count -> {
+            if (isAdded()) {
+                cartButton.setText("Cart (" + count + ")");
+            }
+        });
+    }
+
+    private void showCartDialog() {
+        if (currentUser == null) {
+            Toast.makeText(getContext(), "Please log in to place orders", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        int userId = generateUserId(currentUser.getEmail());
+        repository.getCartItems(userId, items -> {
+            if (!isAdded()) {
+                return;
+            }
+            if (items.isEmpty()) {
+                Toast.makeText(getContext(), "Your cart is empty", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            showCartDialog(userId, items);
+        });
+    }
+
+    private void showCartDialog(int userId, List<CartItem> items) {
+        View dialogView = LayoutInflater.from(getContext()).inflate(R.layout.dialog_cart, null);
+        AlertDialog dialog = new AlertDialog.Builder(getContext()).setView(dialogView).create();
+
+        TextView cartLines = dialogView.findViewById(R.id.cart_lines);
+        TextView totalPrice = dialogView.findViewById(R.id.total_price);
+        RadioGroup deliveryMethodGroup = dialogView.findViewById(R.id.delivery_method_group);
+        TextInputEditText deliveryAddress = dialogView.findViewById(R.id.delivery_address);
+        View addressLayout = dialogView.findViewById(R.id.address_layout);
+        MaterialButton clearCartButton = dialogView.findViewById(R.id.clear_cart_button);
+        MaterialButton checkoutButton = dialogView.findViewById(R.id.checkout_button);
+
+        StringBuilder lines = new StringBuilder();
+        double subtotal = 0;
+        for (CartItem item : items) {
+            if (lines.length() > 0) {
+                lines.append('\n');
+            }
+            lines.append(item.getQuantity()).append(" × ").append(item.getProductName())
+                    .append("  ").append(item.getFormattedLineTotal());
+            if (!item.isInStock()) {
+                lines.append("  (only ").append(item.getStockQuantity()).append(" left)");
+            }
+            subtotal += item.getLineTotal();
+        }
+        cartLines.setText(lines);
+
+        final double itemsTotal = subtotal;
+        totalPrice.setText(String.format(Locale.getDefault(), "$%.2f", itemsTotal));
+        deliveryMethodGroup.setOnCheckedChangeListener((group, checkedId) -> {
+            boolean home = checkedId == R.id.radio_home_delivery;
+            addressLayout.setVisibility(home ? View.VISIBLE : View.GONE);
+            totalPrice.setText(String.format(Locale.getDefault(), "$%.2f", itemsTotal + (home ? 5.99 : 0.0)));
+        });
+
+        clearCartButton.setOnClickListener(v -> repository.clearCart(userId, cleared -> {
+            if (!isAdded()) {
+                return;
+            }
+            dialog.dismiss();
+            updateCartButton();
+        }));
+
+        checkoutButton.setOnClickListener(v -> {
+            boolean home = deliveryMethodGroup.getCheckedRadioButtonId() == R.id.radio_home_delivery;
+            String address = home ? deliveryAddress.getText().toString().trim() : null;
+            if (home && address.isEmpty()) {
+                Toast.makeText(getContext(), "Please enter delivery address", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            checkoutButton.setEnabled(false);
+            repository.checkoutCart(userId, home ? "home" : "pickup", address, headerId -> {
+                if (!isAdded()) {
+                    return;
+                }
+                checkoutButton.setEnabled(true);
+                if (headerId > 0) {
+                    Toast.makeText(getContext(), "Order placed successfully!", Toast.LENGTH_LONG).show();
+                    dialog.dismiss();
+                    updateCartButton();
+                    loadOrders();
+                } else if (headerId == -2) {
+                    Toast.makeText(getContext(), "Sorry, some items don't have enough stock!", Toast.LENGTH_SHORT).show();
+                } else if (headerId == -1) {
+                    Toast.makeText(getContext(), "Your cart is empty", Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                } else {
+                    Toast.makeText(getContext(), "Failed to place order. Please try again.", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
+
+        dialog.show();
+    }
+
     private int generateUserId(String email) {
         return Math.abs(email.hashCode()) % 1000;
     }
@@ -335,19 +454,22 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
                 java.util.Locale.getDefault());
             newOrder.setOrderDate(sdf.format(new java.util.Date()));
             
-            long result = databaseHelper.addOrder(newOrder);
-            
-            if (result != -1) {
-                Toast.makeText(getContext(), "Reorder placed successfully!", Toast.LENGTH_SHORT).show();
-                loadOrders(); // Reload to show new order
-                
-                // Auto-sync new order if online
-                if (syncService.isNetworkAvailable()) {
-                    syncOrders();
+            repository.addOrder(newOrder, result -> {
+                if (!isAdded()) {
+                    return;
                 }
-            } else {
-                Toast.makeText(getContext(), "Failed to place reorder", Toast.LENGTH_SHORT).show();
-            }
+                if (result > 0) {
+                    Toast.makeText(getContext(), "Reorder placed successfully!", Toast.LENGTH_SHORT).show();
+                    loadOrders(); // Reload to show new order
+                    
+                } else if (result == -2) {
+                    Toast.makeText(getContext(), "Sorry, insufficient stock available!", Toast.LENGTH_SHORT).show();
+                } else if (result == -1) {
+                    Toast.makeText(getContext(), "Product not found!", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Failed to place reorder", Toast.LENGTH_SHORT).show();
+                }
+            });
         }
     }
 
@@ -356,5 +478,6 @@ public class MyOrdersFragment extends Fragment implements OrderAdapter.OnOrderAc
         super.onResume();
         // Refresh orders when fragment becomes visible
         loadOrders();
+        updateCartButton();
     }
 }
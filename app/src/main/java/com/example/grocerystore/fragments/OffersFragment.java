@@ -22,12 +22,15 @@ import com.example.grocerystore.NavigationActivity;
 import com.example.grocerystore.R;
 import com.example.grocerystore.adapters.OffersAdapter;
 import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
 import com.example.grocerystore.models.Offer;
 import com.example.grocerystore.models.Order;
 import com.example.grocerystore.models.Product;
 import com.example.grocerystore.model.User;
+import com.example.grocerystore.network.OrderSyncScheduler;
 import com.example.grocerystore.utils.PreferencesManager;
 import com.example.grocerystore.utils.UserManager;
+import com.example.grocerystore.utils.DebugLog;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 
@@ -46,7 +49,7 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
     private ImageView headerIcon;
 
     private OffersAdapter offersAdapter;
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
     private PreferencesManager preferencesManager;
     private UserManager userManager;
     private User currentUser;
@@ -87,41 +90,42 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
             return;
         }
         
-        DatabaseHelper testHelper = null;
-        try {
+        repository.execute(db -> {
             android.util.Log.d("OffersFragment", "=== DATABASE CONNECTION TEST ===");
-            testHelper = new DatabaseHelper(getContext());
-            List<Offer> testOffers = testHelper.getAllOffers();
+            List<Offer> testOffers = db.getAllOffers();
             android.util.Log.d("OffersFragment", "Database connection successful. Total offers: " + testOffers.size());
             
             // If no offers exist, create some test offers
+            boolean created = false;
             if (testOffers.isEmpty()) {
                 android.util.Log.d("OffersFragment", "No offers found, creating test offers...");
-                testHelper.createTestOffers();
-                testOffers = testHelper.getAllOffers(); // Reload after creating test offers
+                db.createTestOffers();
+                testOffers = db.getAllOffers(); // Reload after creating test offers
+                created = !testOffers.isEmpty();
                 android.util.Log.d("OffersFragment", "After creating test offers, total count: " + testOffers.size());
             }
             
             for (int i = 0; i < testOffers.size(); i++) {
                 Offer offer = testOffers.get(i);
-                android.util.Log.d("OffersFragment", "TEST - Offer " + (i+1) + ": " + offer.getProductName() + 
+                int number = i + 1;
+                DebugLog.d("OffersFragment", () -> "TEST - Offer " + number + ": " + offer.getProductName() + 
                     " | Active: " + offer.isActive() + 
                     " | Expires: " + new java.util.Date(offer.getExpiresAt()));
             }
             android.util.Log.d("OffersFragment", "=== END DATABASE TEST ===");
-        } catch (Exception e) {
-            android.util.Log.e("OffersFragment", "Database connection failed: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            if (testHelper != null) {
-                testHelper.close();
+            return created;
+        }, created -> {
+            if (created == null) {
+                android.util.Log.e("OffersFragment", "Database connection failed");
+            } else if (created && isAdded()) {
+                loadOffers();
             }
-        }
+        });
     }
 
     private void initializeServices() {
         if (getContext() != null) {
-            databaseHelper = new DatabaseHelper(getContext());
+            repository = GroceryRepository.getInstance(getContext());
             preferencesManager = new PreferencesManager(getContext());
             userManager = new UserManager(getContext());
         } else {
@@ -171,6 +175,23 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
     }
     
     private void createTestOffer() {
+        repository.executeWrite(this::insertTestOffer, inserted -> {
+            if (!isAdded()) {
+                return;
+            }
+            if (inserted == null) {
+                Toast.makeText(getContext(), "Error creating test offer", Toast.LENGTH_LONG).show();
+            } else if (inserted) {
+                Toast.makeText(getContext(), "Test offer created! Refreshing...", Toast.LENGTH_SHORT).show();
+                loadOffers(); // Refresh immediately
+            } else {
+                Toast.makeText(getContext(), "Failed to create test offer", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    // Runs on the repository's background thread
+    private boolean insertTestOffer(DatabaseHelper databaseHelper) {
         try {
             android.util.Log.d("OffersFragment", "=== CREATING PROPER TEST OFFER ===");
             
@@ -179,7 +200,7 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
             android.util.Log.d("OffersFragment", "Available products: " + products.size());
             
             for (Product product : products) {
-                android.util.Log.d("OffersFragment", "Product: " + product.getName() + " (ID: " + product.getId() + ")");
+                DebugLog.d("OffersFragment", () -> "Product: " + product.getName() + " (ID: " + product.getId() + ")");
             }
             
             // Create offer based on existing product
@@ -238,17 +259,15 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
             long helperResult = databaseHelper.addOffer(testOffer);
             android.util.Log.d("OffersFragment", "✅ Helper method insert result: " + helperResult);
             
-            if (directResult != -1 || helperResult != -1) {
-                Toast.makeText(getContext(), "Test offer created! Refreshing...", Toast.LENGTH_SHORT).show();
-                loadOffers(); // Refresh immediately
-            } else {
+            if (directResult == -1 && helperResult == -1) {
                 android.util.Log.e("OffersFragment", "❌ Both insert methods failed");
-                Toast.makeText(getContext(), "Failed to create test offer", Toast.LENGTH_SHORT).show();
+                return false;
             }
+            return true;
         } catch (Exception e) {
             android.util.Log.e("OffersFragment", "Error creating test offer: " + e.getMessage());
             e.printStackTrace();
-            Toast.makeText(getContext(), "Exception: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            return false;
         }
     }
 
@@ -282,25 +301,28 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
         
         android.util.Log.d("OffersFragment", "=== SIMPLIFIED LOADING (LIKE ADMIN) ===");
         
-        // Clear previous offers
-        allOffers.clear();
-        
         // Use the EXACT same approach as admin (which works)
-        allOffers = databaseHelper.getAllOffers();
-        
-        android.util.Log.d("OffersFragment", "Loaded " + allOffers.size() + " offers using admin approach");
-        
-        // Log each offer
-        for (int i = 0; i < allOffers.size(); i++) {
-            Offer offer = allOffers.get(i);
-            android.util.Log.d("OffersFragment", "Offer " + (i+1) + ": " + offer.getProductName() + 
-                " | Active: " + offer.isActive());
-        }
-        
-        android.util.Log.d("OffersFragment", "=== END SIMPLIFIED LOADING ===");
-        
-        updateUI();
-        updateOffersCount();
+        repository.getAllOffers(offers -> {
+            if (!isAdded() || getView() == null) {
+                return;
+            }
+            allOffers = offers;
+            
+            android.util.Log.d("OffersFragment", "Loaded " + allOffers.size() + " offers using admin approach");
+            
+            // Log each offer
+            for (int i = 0; i < allOffers.size(); i++) {
+                Offer offer = allOffers.get(i);
+                int number = i + 1;
+                DebugLog.d("OffersFragment", () -> "Offer " + number + ": " + offer.getProductName() + 
+                    " | Active: " + offer.isActive());
+            }
+            
+            android.util.Log.d("OffersFragment", "=== END SIMPLIFIED LOADING ===");
+            
+            updateUI();
+            updateOffersCount();
+        });
     }
 
     private void updateUI() {
@@ -367,24 +389,32 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
         android.util.Log.d("OffersFragment", "Offer Name: " + offer.getName());
         
         // Check if it's already in favorites first
-        boolean isAlreadyFavorite = databaseHelper.isProductFavorite(userId, offer.getProductId());
-        android.util.Log.d("OffersFragment", "Is already favorite: " + isAlreadyFavorite);
-        
-        if (isAlreadyFavorite) {
-            Toast.makeText(getContext(), offer.getName() + " is already in your favorites! ❤️", Toast.LENGTH_SHORT).show();
-            return;
-        }
-        
-        // Try to add to favorites
-        boolean success = databaseHelper.addToFavorites(userId, offer.getProductId());
-        android.util.Log.d("OffersFragment", "Add to favorites result: " + success);
-        
-        if (success) {
-            Toast.makeText(getContext(), "✅ " + offer.getName() + " added to favorites! ❤️", Toast.LENGTH_SHORT).show();
-            animateHeartPop(offer);
-        } else {
-            Toast.makeText(getContext(), "❌ Failed to add to favorites. Please try again.", Toast.LENGTH_SHORT).show();
-        }
+        repository.isProductFavorite(userId, offer.getProductId(), isAlreadyFavorite -> {
+            if (!isAdded()) {
+                return;
+            }
+            android.util.Log.d("OffersFragment", "Is already favorite: " + isAlreadyFavorite);
+            
+            if (isAlreadyFavorite) {
+                Toast.makeText(getContext(), offer.getName() + " is already in your favorites! ❤️", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            
+            // Try to add to favorites
+            repository.addToFavorites(userId, offer.getProductId(), success -> {
+                if (!isAdded()) {
+                    return;
+                }
+                android.util.Log.d("OffersFragment", "Add to favorites result: " + success);
+                
+                if (success) {
+                    Toast.makeText(getContext(), "✅ " + offer.getName() + " added to favorites! ❤️", Toast.LENGTH_SHORT).show();
+                    animateHeartPop(offer);
+                } else {
+                    Toast.makeText(getContext(), "❌ Failed to add to favorites. Please try again.", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
     }
 
     @Override
@@ -396,12 +426,17 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
 
         int userId = Math.abs(currentUser.getEmail().hashCode()) % 1000;
         
-        if (databaseHelper.removeFromFavorites(userId, offer.getProductId())) {
-            Toast.makeText(getContext(), offer.getName() + " removed from favorites!", Toast.LENGTH_SHORT).show();
-            animateHeartBreak(offer);
-        } else {
-            Toast.makeText(getContext(), "Failed to remove from favorites", Toast.LENGTH_SHORT).show();
-        }
+        repository.removeFromFavorites(userId, offer.getProductId(), success -> {
+            if (!isAdded()) {
+                return;
+            }
+            if (success) {
+                Toast.makeText(getContext(), offer.getName() + " removed from favorites!", Toast.LENGTH_SHORT).show();
+                animateHeartBreak(offer);
+            } else {
+                Toast.makeText(getContext(), "Failed to remove from favorites", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     @Override
@@ -479,73 +514,86 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
             android.util.Log.d("OffersFragment", "Offer getProductId(): " + offer.getProductId());
             android.util.Log.d("OffersFragment", "Final offerProductName: " + offerProductName);
             
-            // Find the actual product to ensure valid productId
-            int validProductId = offer.getProductId();
-            
-            // Always try to find product by name since offers don't have reliable productId
-            android.util.Log.d("OffersFragment", "Searching for product by name: " + offerProductName);
-            List<Product> allProducts = databaseHelper.getAllProducts();
-            android.util.Log.d("OffersFragment", "Total products in database: " + allProducts.size());
-            
-            for (Product product : allProducts) {
-                android.util.Log.d("OffersFragment", "Checking product: " + product.getName() + " (ID: " + product.getId() + ")");
+            final String orderProductName = offerProductName;
+            final int orderQuantity = quantity[0];
+            final int orderUserId = Math.abs(preferencesManager.getLoggedInUserEmail().hashCode()) % 1000;
+
+            confirmOrderButton.setEnabled(false);
+            repository.executeWrite(db -> {
+                // Find the actual product to ensure valid productId
+                int validProductId = offer.getProductId();
                 
-                // Try exact match first
-                if (product.getName().equalsIgnoreCase(offerProductName)) {
-                    validProductId = product.getId();
-                    android.util.Log.d("OffersFragment", "✅ Found exact match with ID: " + validProductId);
-                    break;
+                // Always try to find product by name since offers don't have reliable productId
+                android.util.Log.d("OffersFragment", "Searching for product by name: " + orderProductName);
+                List<Product> allProducts = db.getAllProducts();
+                android.util.Log.d("OffersFragment", "Total products in database: " + allProducts.size());
+                
+                for (Product product : allProducts) {
+                    android.util.Log.d("OffersFragment", "Checking product: " + product.getName() + " (ID: " + product.getId() + ")");
+                    
+                    // Try exact match first
+                    if (product.getName().equalsIgnoreCase(orderProductName)) {
+                        validProductId = product.getId();
+                        android.util.Log.d("OffersFragment", "✅ Found exact match with ID: " + validProductId);
+                        break;
+                    }
+                    
+                    // Try partial match (contains)
+                    if (product.getName().toLowerCase().contains(orderProductName.toLowerCase()) || 
+                        orderProductName.toLowerCase().contains(product.getName().toLowerCase())) {
+                        validProductId = product.getId();
+                        android.util.Log.d("OffersFragment", "✅ Found partial match with ID: " + validProductId);
+                        break;
+                    }
                 }
                 
-                // Try partial match (contains)
-                if (product.getName().toLowerCase().contains(offerProductName.toLowerCase()) || 
-                    offerProductName.toLowerCase().contains(product.getName().toLowerCase())) {
-                    validProductId = product.getId();
-                    android.util.Log.d("OffersFragment", "✅ Found partial match with ID: " + validProductId);
-                    break;
+                // If still no valid product found, create a mock product for the order
+                if (validProductId <= 0) {
+                    android.util.Log.d("OffersFragment", "⚠️ No matching product found, using offer data directly");
+                    validProductId = 999; // Use a mock ID for offers without matching products
                 }
-            }
-            
-            // If still no valid product found, create a mock product for the order
-            if (validProductId <= 0) {
-                android.util.Log.d("OffersFragment", "⚠️ No matching product found, using offer data directly");
-                validProductId = 999; // Use a mock ID for offers without matching products
-            }
-            
-            // Create order with valid productId
-            Order order = new Order(
-                Math.abs(preferencesManager.getLoggedInUserEmail().hashCode()) % 1000,
-                validProductId, // Use validated productId
-                offerProductName, // Use the renamed variable
-                quantity[0],
-                offer.getDiscountedPrice(), // Use discounted price
-                "pickup" // Default to pickup for now
-            );
-
-            // Set order date
-            String currentDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
-            order.setOrderDate(currentDate);
-
-            // Save order to database
-            long orderId = databaseHelper.addOrder(order);
-
-            if (orderId > 0) {
-                double savings = (offer.getOriginalPrice() - offer.getDiscountedPrice()) * quantity[0];
-                Toast.makeText(getContext(), 
-                    "Order placed successfully! You saved $" + String.format("%.2f", savings), 
-                    Toast.LENGTH_LONG).show();
-                dialog.dismiss();
-                animateOfferSuccess(offer);
                 
-                // Refresh offers to show updated stock
-                loadOffers();
-            } else if (orderId == -2) {
-                Toast.makeText(getContext(), "Sorry, insufficient stock available!", Toast.LENGTH_SHORT).show();
-            } else if (orderId == -1) {
-                Toast.makeText(getContext(), "Product not found!", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(getContext(), "Failed to place order. Please try again.", Toast.LENGTH_SHORT).show();
-            }
+                // Create order with valid productId
+                Order order = new Order(
+                    orderUserId,
+                    validProductId, // Use validated productId
+                    orderProductName, // Use the renamed variable
+                    orderQuantity,
+                    offer.getDiscountedPrice(), // Use discounted price
+                    "pickup" // Default to pickup for now
+                );
+
+                // Set order date
+                String currentDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
+                order.setOrderDate(currentDate);
+
+                // Save order to database
+                return db.addOrder(order);
+            }, orderId -> {
+                if (!isAdded()) {
+                    return;
+                }
+                confirmOrderButton.setEnabled(true);
+
+                if (orderId != null && orderId > 0) {
+                    double savings = (offer.getOriginalPrice() - offer.getDiscountedPrice()) * orderQuantity;
+                    Toast.makeText(getContext(), 
+                        "Order placed successfully! You saved $" + String.format("%.2f", savings), 
+                        Toast.LENGTH_LONG).show();
+                    dialog.dismiss();
+                    animateOfferSuccess(offer);
+                    
+                    // Refresh offers to show updated stock
+                    loadOffers();
+                    OrderSyncScheduler.requestSync(requireContext());
+                } else if (orderId != null && orderId == -2) {
+                    Toast.makeText(getContext(), "Sorry, insufficient stock available!", Toast.LENGTH_SHORT).show();
+                } else if (orderId != null && orderId == -1) {
+                    Toast.makeText(getContext(), "Product not found!", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Failed to place order. Please try again.", Toast.LENGTH_SHORT).show();
+                }
+            });
         });
 
         dialog.show();
@@ -614,14 +662,4 @@ public class OffersFragment extends Fragment implements OffersAdapter.OnOfferAct
             offersRecyclerView.setAdapter(null);
         }
     }
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        // Close database helper to prevent memory leaks
-        if (databaseHelper != null) {
-            databaseHelper.close();
-            databaseHelper = null;
-        }
-    }
 }
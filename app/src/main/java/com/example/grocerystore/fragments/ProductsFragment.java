@@ -18,10 +18,15 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.grocerystore.NavigationActivity;
 import com.example.grocerystore.R;
 import com.example.grocerystore.adapters.ProductAdapter;
-import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.database.GroceryRepository;
+import com.example.grocerystore.database.ProductPager;
+import com.example.grocerystore.database.ProductQuery;
+import com.example.grocerystore.database.StockHold;
 import com.example.grocerystore.models.Order;
 import com.example.grocerystore.models.Product;
 import com.example.grocerystore.model.User;
+import com.example.grocerystore.utils.SearchPipeline;
+import com.example.grocerystore.utils.DebugLog;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
@@ -29,25 +34,32 @@ import com.google.android.material.textfield.TextInputEditText;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
+import java.util.EnumSet;
 import java.util.Locale;
+import java.util.Set;
 
 public class ProductsFragment extends Fragment implements ProductAdapter.OnProductClickListener {
     
     private RecyclerView productsRecyclerView;
     private ProductAdapter productAdapter;
-    private DatabaseHelper databaseHelper;
+    private GroceryRepository repository;
     private TextInputEditText searchEditText;
     private MaterialButton filterButton;
     private ChipGroup categoryChipGroup;
     private TextView resultsCount;
     private View emptyState;
     
-    private List<Product> allProducts;
+    // Start loading the next page this many rows before the end of what's loaded
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private ProductPager productPager;
+    private SearchPipeline<ProductPager.Page> searchPipeline;
     private String currentSearchQuery = "";
     private String currentCategory = "All Categories";
-    private double minPrice = 0.0;
-    private double maxPrice = 100.0;
+    // Null until the user sets a bound in the filter dialog
+    private Double minPrice;
+    private Double maxPrice;
+    private Set<ProductQuery.StockLevel> stockLevels = EnumSet.allOf(ProductQuery.StockLevel.class);
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
@@ -77,21 +89,53 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
     }
 
     private void setupDatabase() {
-        databaseHelper = new DatabaseHelper(getContext());
+        repository = GroceryRepository.getInstance(requireContext());
     }
 
     private void setupRecyclerView() {
-        productsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        productsRecyclerView.setLayoutManager(layoutManager);
         // Initialize with empty list first, will be updated in loadProducts()
-        if (allProducts == null) {
-            allProducts = new ArrayList<>();
-        }
-        productAdapter = new ProductAdapter(getContext(), allProducts);
+        productAdapter = new ProductAdapter(getContext(), new ArrayList<>());
         productAdapter.setOnProductClickListener(this);
+        productAdapter.setOnListChangedListener(() -> {
+            updateResultsCount();
+            checkEmptyState();
+        });
         productsRecyclerView.setAdapter(productAdapter);
+
+        productPager = new ProductPager(repository, (products, totalCount) -> {
+            if (!isAdded() || getView() == null) {
+                return;
+            }
+            productAdapter.updateProducts(products);
+        });
+
+        // Fetch the next page as the user scrolls toward the end of the loaded rows
+        productsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= productAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    productPager.loadNextPage();
+                }
+            }
+        });
     }
 
     private void setupSearchAndFilters() {
+        // Every filter change loads a fresh first page off the UI thread; only the latest one is shown
+        searchPipeline = new SearchPipeline<>(
+                (query, cancellationSignal, callback) ->
+                        productPager.loadFirstPage(buildProductQuery(query), getCurrentUserId(),
+                                cancellationSignal, callback),
+                (query, page) -> {
+                    if (!isAdded() || getView() == null || page == null) {
+                        return;
+                    }
+                    productPager.showFirstPage(page);
+                });
+
         // Search functionality
         searchEditText.addTextChangedListener(new TextWatcher() {
             @Override
@@ -100,7 +144,11 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 currentSearchQuery = s.toString().trim();
-                applyFilters();
+                if (currentSearchQuery.isEmpty()) {
+                    applyFilters();
+                } else {
+                    searchPipeline.submit(currentSearchQuery);
+                }
             }
 
             @Override
@@ -123,56 +171,63 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
     }
 
     private void loadProducts() {
-        allProducts = databaseHelper.getAllProducts();
-        
-        // Check favorites for current user
-        User currentUser = getCurrentUser();
-        int userId = 1; // Default user ID for demo
-        if (currentUser != null) {
-            userId = Math.abs(currentUser.getEmail().hashCode()) % 1000; // Generate consistent ID from email
-            for (Product product : allProducts) {
-                boolean isFavorite = databaseHelper.isProductFavorite(userId, product.getId());
-                product.setFavorite(isFavorite);
-            }
+        applyFilters();
+    }
+
+    private ProductQuery buildProductQuery(String searchQuery) {
+        ProductQuery.Builder builder = ProductQuery.builder()
+                .search(searchQuery)
+                .category(currentCategory)
+                .stockLevels(stockLevels);
+        if (minPrice != null) {
+            builder.minPrice(minPrice);
         }
-        
-        if (productAdapter != null) {
-            productAdapter.updateProducts(allProducts);
+        if (maxPrice != null) {
+            builder.maxPrice(maxPrice);
         }
-        updateResultsCount();
-        checkEmptyState();
+        return builder.build();
+    }
+
+    // Favorites are joined per user; -1 matches no favorites when nobody is logged in
+    private int getCurrentUserId() {
+        User currentUser = getCurrentUser();
+        return currentUser != null
+                ? Math.abs(currentUser.getEmail().hashCode()) % 1000 // Generate consistent ID from email
+                : -1;
     }
 
     private void loadCategories() {
-        List<String> categories = databaseHelper.getAllCategories();
-        
-        // Clear existing chips except "All Categories"
-        int childCount = categoryChipGroup.getChildCount();
-        for (int i = childCount - 1; i > 0; i--) {
-            categoryChipGroup.removeViewAt(i);
-        }
-        
-        // Add category chips
-        LayoutInflater inflater = LayoutInflater.from(getContext());
-        for (String category : categories) {
-            Chip chip = (Chip) inflater.inflate(R.layout.chip_filter_category, categoryChipGroup, false);
-            chip.setText(category);
-            chip.setCheckable(true);
-            categoryChipGroup.addView(chip);
-        }
+        repository.getAllCategories(categories -> {
+            if (!isAdded() || getView() == null) {
+                return;
+            }
+
+            // Clear existing chips except "All Categories"
+            int childCount = categoryChipGroup.getChildCount();
+            for (int i = childCount - 1; i > 0; i--) {
+                categoryChipGroup.removeViewAt(i);
+            }
+
+            // Add category chips
+            LayoutInflater inflater = LayoutInflater.from(getContext());
+            for (String category : categories) {
+                Chip chip = (Chip) inflater.inflate(R.layout.chip_filter_category, categoryChipGroup, false);
+                chip.setText(category);
+                chip.setCheckable(true);
+                categoryChipGroup.addView(chip);
+            }
+        });
     }
 
     private void applyFilters() {
-        if (productAdapter != null) {
-            productAdapter.applyFilters(currentSearchQuery, currentCategory, minPrice, maxPrice);
-            updateResultsCount();
-            checkEmptyState();
+        if (searchPipeline != null) {
+            searchPipeline.submitNow(currentSearchQuery);
         }
     }
 
     private void updateResultsCount() {
-        if (productAdapter != null) {
-            int count = productAdapter.getItemCount();
+        if (productPager != null) {
+            int count = productPager.getTotalCount();
             String text = count + " product" + (count != 1 ? "s" : "") + " found";
             resultsCount.setText(text);
         }
@@ -198,15 +253,22 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
         TextInputEditText maxPriceEdit = dialogView.findViewById(R.id.max_price_edit);
         MaterialButton clearFiltersButton = dialogView.findViewById(R.id.clear_filters_button);
         MaterialButton applyFiltersButton = dialogView.findViewById(R.id.apply_filters_button);
+        Chip inStockChip = dialogView.findViewById(R.id.chip_in_stock);
+        Chip lowStockChip = dialogView.findViewById(R.id.chip_low_stock);
+        Chip outOfStockChip = dialogView.findViewById(R.id.chip_out_of_stock);
         
         // Set current values
-        minPriceEdit.setText(String.valueOf(minPrice));
-        maxPriceEdit.setText(String.valueOf(maxPrice));
+        minPriceEdit.setText(minPrice != null ? String.valueOf(minPrice) : "");
+        maxPriceEdit.setText(maxPrice != null ? String.valueOf(maxPrice) : "");
+        inStockChip.setChecked(stockLevels.contains(ProductQuery.StockLevel.IN_STOCK));
+        lowStockChip.setChecked(stockLevels.contains(ProductQuery.StockLevel.LOW_STOCK));
+        outOfStockChip.setChecked(stockLevels.contains(ProductQuery.StockLevel.OUT_OF_STOCK));
         
         // Clear filters
         clearFiltersButton.setOnClickListener(v -> {
-            minPrice = 0.0;
-            maxPrice = 100.0;
+            minPrice = null;
+            maxPrice = null;
+            stockLevels = EnumSet.allOf(ProductQuery.StockLevel.class);
             currentCategory = "All Categories";
             currentSearchQuery = "";
             
@@ -224,17 +286,27 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
                 String minText = minPriceEdit.getText().toString().trim();
                 String maxText = maxPriceEdit.getText().toString().trim();
                 
-                if (!minText.isEmpty()) {
-                    minPrice = Double.parseDouble(minText);
-                }
-                if (!maxText.isEmpty()) {
-                    maxPrice = Double.parseDouble(maxText);
-                }
+                // An empty field leaves that side of the range open
+                Double newMin = minText.isEmpty() ? null : Double.parseDouble(minText);
+                Double newMax = maxText.isEmpty() ? null : Double.parseDouble(maxText);
                 
-                if (minPrice > maxPrice) {
+                if (newMin != null && newMax != null && newMin > newMax) {
                     Toast.makeText(getContext(), "Min price cannot be greater than max price", Toast.LENGTH_SHORT).show();
                     return;
                 }
+                minPrice = newMin;
+                maxPrice = newMax;
+                
+                stockLevels = EnumSet.noneOf(ProductQuery.StockLevel.class);
+                if (inStockChip.isChecked()) {
+                    stockLevels.add(ProductQuery.StockLevel.IN_STOCK);
+                }
+                if (lowStockChip.isChecked()) {
+                    stockLevels.add(ProductQuery.StockLevel.LOW_STOCK);
+                }
+                if (outOfStockChip.isChecked()) {
+                    stockLevels.add(ProductQuery.StockLevel.OUT_OF_STOCK);
+                }
                 
                 applyFilters();
                 dialog.dismiss();
@@ -256,30 +328,40 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
         
         int userId = Math.abs(currentUser.getEmail().hashCode()) % 1000; // Generate consistent ID from email
         boolean newFavoriteState = !product.isFavorite();
-        boolean success;
-        
-        if (newFavoriteState) {
-            success = databaseHelper.addToFavorites(userId, product.getId());
-        } else {
-            success = databaseHelper.removeFromFavorites(userId, product.getId());
-        }
-        
-        if (success) {
-            product.setFavorite(newFavoriteState);
-            productAdapter.notifyItemChanged(position);
-            
-            // Add heart animation
-            if (newFavoriteState) {
-                animateHeartPop(position);
-                showHeartBounce();
+
+        GroceryRepository.Callback<Boolean> onUpdated = success -> {
+            if (!isAdded() || getView() == null) {
+                return;
+            }
+
+            if (success) {
+                product.setFavorite(newFavoriteState);
+                // The product was edited in place, so the diff won't catch it; rebind just its row.
+                // Look the row up again since the list may have changed while the write ran.
+                int currentPosition = productAdapter.getCurrentList().indexOf(product);
+                if (currentPosition != RecyclerView.NO_POSITION) {
+                    productAdapter.notifyItemChanged(currentPosition);
+                }
+
+                // Add heart animation
+                if (newFavoriteState) {
+                    animateHeartPop(currentPosition);
+                    showHeartBounce();
+                } else {
+                    animateHeartBreak(currentPosition);
+                }
+
+                String message = newFavoriteState ? "Added to favorites ❤️" : "Removed from favorites 💔";
+                Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
             } else {
-                animateHeartBreak(position);
+                Toast.makeText(getContext(), "Failed to update favorites", Toast.LENGTH_SHORT).show();
             }
-            
-            String message = newFavoriteState ? "Added to favorites ❤️" : "Removed from favorites 💔";
-            Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
+        };
+
+        if (newFavoriteState) {
+            repository.addToFavorites(userId, product.getId(), onUpdated);
         } else {
-            Toast.makeText(getContext(), "Failed to update favorites", Toast.LENGTH_SHORT).show();
+            repository.removeFromFavorites(userId, product.getId(), onUpdated);
         }
     }
 
@@ -307,6 +389,7 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
         View addressLayout = dialogView.findViewById(R.id.address_layout);
         MaterialButton cancelButton = dialogView.findViewById(R.id.cancel_button);
         MaterialButton confirmOrderButton = dialogView.findViewById(R.id.confirm_order_button);
+        MaterialButton addToCartButton = dialogView.findViewById(R.id.add_to_cart_button);
         
         // Set product info
         productNameDialog.setText(product.getName());
@@ -315,22 +398,35 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
         // Quantity management
         final int[] quantity = {1};
         final double[] deliveryFee = {0.0};
+
+        // Hold the units on screen while the dialog is open
+        User shopper = getCurrentUser();
+        StockHold stockHold = shopper == null ? null
+                : new StockHold(repository, Math.abs(shopper.getEmail().hashCode()) % 1000, product.getId());
+        if (stockHold != null) {
+            changeHeldQuantity(stockHold, quantity[0], () -> {}, decreaseQuantity, increaseQuantity, confirmOrderButton);
+            dialog.setOnDismissListener(d -> stockHold.release());
+        }
         
         updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
         
         decreaseQuantity.setOnClickListener(v -> {
             if (quantity[0] > 1) {
-                quantity[0]--;
-                quantityText.setText(String.valueOf(quantity[0]));
-                updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
+                changeHeldQuantity(stockHold, quantity[0] - 1, () -> {
+                    quantity[0]--;
+                    quantityText.setText(String.valueOf(quantity[0]));
+                    updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
+                }, decreaseQuantity, increaseQuantity, confirmOrderButton);
             }
         });
         
         increaseQuantity.setOnClickListener(v -> {
-            if (quantity[0] < product.getStockQuantity()) {
-                quantity[0]++;
-                quantityText.setText(String.valueOf(quantity[0]));
-                updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
+            if (quantity[0] < product.getAvailableQuantity()) {
+                changeHeldQuantity(stockHold, quantity[0] + 1, () -> {
+                    quantity[0]++;
+                    quantityText.setText(String.valueOf(quantity[0]));
+                    updateTotalPrice(product, quantity[0], deliveryFee[0], totalPrice);
+                }, decreaseQuantity, increaseQuantity, confirmOrderButton);
             } else {
                 Toast.makeText(getContext(), "Not enough stock available", Toast.LENGTH_SHORT).show();
             }
@@ -350,6 +446,29 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
         
         // Cancel button
         cancelButton.setOnClickListener(v -> dialog.dismiss());
+
+        // Add to cart; the basket is checked out as one order from My Orders
+        addToCartButton.setOnClickListener(v -> {
+            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                Toast.makeText(getContext(), "Please log in to place orders", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            int userId = Math.abs(currentUser.getEmail().hashCode()) % 1000;
+            addToCartButton.setEnabled(false);
+            repository.addToCart(userId, product.getId(), quantity[0], cartSize -> {
+                if (!isAdded()) {
+                    return;
+                }
+                addToCartButton.setEnabled(true);
+                if (cartSize > 0) {
+                    Toast.makeText(getContext(), "Added to cart (" + cartSize + " items)", Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                } else {
+                    Toast.makeText(getContext(), "Failed to add to cart. Please try again.", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
         
         // Confirm order
         confirmOrderButton.setOnClickListener(v -> {
@@ -389,27 +508,62 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
             String currentDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
             order.setOrderDate(currentDate);
             
-            // Save order to database
-            long orderId = databaseHelper.addOrder(order);
-            
-            if (orderId > 0) {
-                Toast.makeText(getContext(), "Order placed successfully!", Toast.LENGTH_LONG).show();
-                dialog.dismiss();
-                
-                // Refresh the products list to show updated stock
-                loadProducts();
-            } else if (orderId == -2) {
-                Toast.makeText(getContext(), "Sorry, insufficient stock available!", Toast.LENGTH_SHORT).show();
-            } else if (orderId == -1) {
-                Toast.makeText(getContext(), "Product not found!", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(getContext(), "Failed to place order. Please try again.", Toast.LENGTH_SHORT).show();
-            }
+            // Save order to database; the quantity stays fixed until it answers
+            setEnabled(false, confirmOrderButton, decreaseQuantity, increaseQuantity);
+            long reservationId = stockHold != null ? stockHold.getReservationId() : -1;
+            repository.addOrder(order, reservationId, orderId -> {
+                if (!isAdded()) {
+                    return;
+                }
+                setEnabled(true, confirmOrderButton, decreaseQuantity, increaseQuantity);
+
+                if (orderId > 0) {
+                    Toast.makeText(getContext(), "Order placed successfully!", Toast.LENGTH_LONG).show();
+                    dialog.dismiss();
+
+                    // Refresh the products list to show updated stock
+                    loadProducts();
+                } else if (orderId == -2) {
+                    Toast.makeText(getContext(), "Sorry, insufficient stock available!", Toast.LENGTH_SHORT).show();
+                } else if (orderId == -1) {
+                    Toast.makeText(getContext(), "Product not found!", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Failed to place order. Please try again.", Toast.LENGTH_SHORT).show();
+                }
+            });
         });
         
         dialog.show();
     }
 
+    // Moves the hold to the new quantity first and only then updates the
+    // dialog; the buttons, confirm included, stay disabled until the hold
+    // answers so an order never races its own hold
+    private void changeHeldQuantity(StockHold stockHold, int quantity, Runnable onHeld, View... buttons) {
+        if (stockHold == null) {
+            onHeld.run();
+            return;
+        }
+        setEnabled(false, buttons);
+        stockHold.hold(quantity, held -> {
+            if (!isAdded()) {
+                return;
+            }
+            setEnabled(true, buttons);
+            if (held) {
+                onHeld.run();
+            } else {
+                Toast.makeText(getContext(), "Not enough stock available", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private static void setEnabled(boolean enabled, View... views) {
+        for (View view : views) {
+            view.setEnabled(enabled);
+        }
+    }
+
     private void updateTotalPrice(Product product, int quantity, double deliveryFee, TextView totalPriceView) {
         double total = (product.getPrice() * quantity) + deliveryFee;
         totalPriceView.setText(String.format(Locale.getDefault(), "$%.2f", total));
@@ -490,6 +644,19 @@ public class ProductsFragment extends Fragment implements ProductAdapter.OnProdu
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (productPager != null) {
+            productPager.cancel();
+        }
+        if (searchPipeline != null) {
+            searchPipeline.cancel();
+            int staleDrops = searchPipeline.getStaleDropCount();
+            DebugLog.d("ProductsFragment", () -> "Search queries dropped as stale: " + staleDrops);
+        }
+    }
+
     private User getCurrentUser() {
         if (getActivity() instanceof NavigationActivity) {
             return ((NavigationActivity) getActivity()).getCurrentUser();
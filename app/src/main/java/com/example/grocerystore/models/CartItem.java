@@ -0,0 +1,56 @@
+package com.example.grocerystore.models;
+
+import java.util.Locale;
+
+/**
+ * One line of a user's cart: a product and how many of it. Name, price and
+ * stock come from the products table when the cart is read, so they are
+ * always current.
+ */
+public class CartItem {
+    private int productId;
+    private String productName;
+    private double unitPrice;
+    private int quantity;
+    private int stockQuantity;
+
+    public CartItem(int productId, String productName, double unitPrice, int quantity, int stockQuantity) {
+        this.productId = productId;
+        this.productName = productName;
+        this.unitPrice = unitPrice;
+        this.quantity = quantity;
+        this.stockQuantity = stockQuantity;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getStockQuantity() {
+        return stockQuantity;
+    }
+
+    public double getLineTotal() {
+        return unitPrice * quantity;
+    }
+
+    public boolean isInStock() {
+        return stockQuantity >= quantity;
+    }
+
+    public String getFormattedLineTotal() {
+        return String.format(Locale.getDefault(), "$%.2f", getLineTotal());
+    }
+}
@@ -13,6 +13,7 @@ public class Offer implements Serializable {
     private int discountPercent;
     private String imagePath;
     private String imageUrl;
+    private String thumbnailPath;
     private String category;
     private String offerTitle;
     private String offerDescription;
@@ -85,6 +86,14 @@ public class Offer implements Serializable {
     public String getImageUrl() { return imageUrl != null ? imageUrl : imagePath; }
     public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
     
+    public String getThumbnailPath() { return thumbnailPath; }
+    public void setThumbnailPath(String thumbnailPath) { this.thumbnailPath = thumbnailPath; }
+    
+    // What list rows should load: the small rendition when there is one
+    public String getListImageUrl() {
+        return thumbnailPath != null && !thumbnailPath.isEmpty() ? thumbnailPath : getImageUrl();
+    }
+    
     public int getStockQuantity() { return stockQuantity; }
     public void setStockQuantity(int stockQuantity) { this.stockQuantity = stockQuantity; }
     
@@ -15,6 +15,8 @@ public class Order implements Serializable {
     private String orderDate;
     private String deliveryAddress;
     private boolean isSynced; // for offline/online sync
+    private String orderKey; // client-generated, lets the server drop duplicate uploads
+    private String checkoutKey; // shared by the lines of one cart checkout, null for single orders
 
     // Constructors
     public Order() {}
@@ -131,6 +133,22 @@ public class Order implements Serializable {
         isSynced = synced;
     }
 
+    public String getOrderKey() {
+        return orderKey;
+    }
+
+    public void setOrderKey(String orderKey) {
+        this.orderKey = orderKey;
+    }
+
+    public String getCheckoutKey() {
+        return checkoutKey;
+    }
+
+    public void setCheckoutKey(String checkoutKey) {
+        this.checkoutKey = checkoutKey;
+    }
+
     public String getFormattedTotalPrice() {
         return String.format("$%.2f", totalPrice);
     }
@@ -12,6 +12,7 @@ public class Product implements Serializable {
     private String description;
     private boolean isAvailable;
     private boolean isFavorite;
+    private int reservedQuantity; // held by open order dialogs, see getAvailableQuantity
 
     // Constructors
     public Product() {}
@@ -105,11 +106,25 @@ public class Product implements Serializable {
         return String.format("$%.2f", price);
     }
 
+    public int getReservedQuantity() {
+        return reservedQuantity;
+    }
+
+    public void setReservedQuantity(int reservedQuantity) {
+        this.reservedQuantity = reservedQuantity;
+    }
+
+    // What can still be ordered: stock less units other shoppers are holding
+    public int getAvailableQuantity() {
+        return Math.max(0, stockQuantity - reservedQuantity);
+    }
+
     public String getStockStatus() {
-        if (stockQuantity <= 0) {
+        int available = getAvailableQuantity();
+        if (available <= 0) {
             return "Out of Stock";
-        } else if (stockQuantity <= 10) {
-            return "Low Stock (" + stockQuantity + " left)";
+        } else if (available <= 10) {
+            return "Low Stock (" + available + " left)";
         } else {
             return "In Stock";
         }
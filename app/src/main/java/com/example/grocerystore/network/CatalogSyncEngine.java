@@ -0,0 +1,126 @@
+package com.example.grocerystore.network;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.grocerystore.api.ApiService;
+import com.example.grocerystore.api.RetrofitClient;
+import com.example.grocerystore.database.CatalogChanges;
+import com.example.grocerystore.database.DatabaseHelper;
+import com.example.grocerystore.model.ApiProduct;
+import com.example.grocerystore.utils.DebugLog;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retrofit2.Response;
+
+/**
+ * Keeps the local products and offers tables in step with the REST catalog.
+ * Each request carries the ETag and Last-Modified of the previous download,
+ * so an unchanged catalog costs one 304 reply and no database work. A new
+ * catalog is applied in one transaction by
+ * {@link DatabaseHelper#applyCatalogSnapshot}, which only writes the rows
+ * that actually changed.
+ */
+public class CatalogSyncEngine {
+    private static final String TAG = "CatalogSyncEngine";
+
+    // One sync at a time; a second request queues behind the first
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "catalog-sync"));
+
+    private final ApiService apiService;
+    private final DatabaseHelper databaseHelper;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface OnCatalogSyncListener {
+        void onCatalogSynced(Result result);
+    }
+
+    public static final class Result {
+        public final boolean success;
+        public final boolean notModified;
+        public final CatalogChanges changes;
+        public final String error;
+
+        private Result(boolean success, boolean notModified, CatalogChanges changes, String error) {
+            this.success = success;
+            this.notModified = notModified;
+            this.changes = changes;
+            this.error = error;
+        }
+
+        static Result applied(CatalogChanges changes) {
+            return new Result(true, false, changes, null);
+        }
+
+        static Result unchanged() {
+            return new Result(true, true, CatalogChanges.NONE, null);
+        }
+
+        static Result failed(String error) {
+            return new Result(false, false, CatalogChanges.NONE, error);
+        }
+    }
+
+    public CatalogSyncEngine(Context context) {
+        this(RetrofitClient.getInstance().getApiService(), DatabaseHelper.getInstance(context));
+    }
+
+    // Tests pass an ApiService pointed at a local mock server
+    public CatalogSyncEngine(ApiService apiService, DatabaseHelper databaseHelper) {
+        this.apiService = apiService;
+        this.databaseHelper = databaseHelper;
+    }
+
+    /** Runs one sync on the calling thread. Don't call it from the main thread. */
+    public Result sync() {
+        String etag = databaseHelper.getSyncState(DatabaseHelper.SYNC_CATALOG_ETAG);
+        String lastModified = databaseHelper.getSyncState(DatabaseHelper.SYNC_CATALOG_LAST_MODIFIED);
+        try {
+            Response<List<ApiProduct>> response = apiService.getProductsIfChanged(etag, lastModified).execute();
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                DebugLog.d(TAG, () -> "Catalog not modified since " + (etag != null ? etag : lastModified));
+                return Result.unchanged();
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                Log.e(TAG, "Catalog request failed - " + response.code());
+                return Result.failed("Server returned " + response.code());
+            }
+
+            Map<String, String> syncState = new HashMap<>();
+            syncState.put(DatabaseHelper.SYNC_CATALOG_ETAG, response.headers().get("ETag"));
+            syncState.put(DatabaseHelper.SYNC_CATALOG_LAST_MODIFIED, response.headers().get("Last-Modified"));
+            CatalogChanges changes = databaseHelper.applyCatalogSnapshot(response.body(), syncState);
+            Log.i(TAG, "Catalog synced: " + changes);
+            return Result.applied(changes);
+        } catch (IOException | JsonParseException e) {
+            Log.e(TAG, "Catalog request failed", e);
+            return Result.failed(e.getMessage());
+        } catch (SQLException e) {
+            // Nothing was committed, so the next sync starts from the same ETag
+            Log.e(TAG, "Failed to apply catalog", e);
+            return Result.failed(e.getMessage());
+        }
+    }
+
+    /** Runs a sync in the background and reports back on the main thread. */
+    public void syncAsync(OnCatalogSyncListener listener) {
+        EXECUTOR.execute(() -> {
+            Result result = sync();
+            if (listener != null) {
+                mainHandler.post(() -> listener.onCatalogSynced(result));
+            }
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.grocerystore.network;
+
+import android.content.Context;
+
+import androidx.lifecycle.LifecycleOwner;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules order sync through WorkManager, so unsynced orders drain in the
+ * background with no screen open and survive the process being killed.
+ * On-demand requests share one unique name with the KEEP policy: triggers
+ * that arrive while a sync is still pending collapse into that run. A
+ * periodic job catches up on whatever a failed run left behind.
+ */
+public final class OrderSyncScheduler {
+    public static final String UNIQUE_SYNC_WORK = "order-sync";
+    public static final String UNIQUE_PERIODIC_SYNC_WORK = "order-sync-periodic";
+    private static final long BACKOFF_DELAY_SECONDS = 30;
+    private static final long PERIODIC_INTERVAL_HOURS = 1;
+
+    private OrderSyncScheduler() {}
+
+    public static void requestSync(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OrderSyncWorker.class)
+                .setConstraints(networkConstraints())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_SYNC_WORK, ExistingWorkPolicy.KEEP, request);
+    }
+
+    // Safe to call on every launch; an existing schedule is left alone
+    public static void schedulePeriodicSync(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(OrderSyncWorker.class,
+                PERIODIC_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(networkConstraints())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(UNIQUE_PERIODIC_SYNC_WORK, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Reports on-demand syncs to the listener while owner is alive, on the
+     * main thread. A run that had already finished before observing started
+     * isn't reported again.
+     */
+    public static void observe(Context context, LifecycleOwner owner,
+                               OrderSyncService.OnSyncCompleteListener listener) {
+        UUID[] pending = new UUID[1];
+        WorkManager.getInstance(context).getWorkInfosForUniqueWorkLiveData(UNIQUE_SYNC_WORK)
+                .observe(owner, infos -> {
+                    if (infos == null || infos.isEmpty()) {
+                        return;
+                    }
+                    WorkInfo info = infos.get(0);
+                    if (!info.getState().isFinished()) {
+                        if (!info.getId().equals(pending[0])) {
+                            pending[0] = info.getId();
+                            listener.onSyncStarted();
+                        }
+                        return;
+                    }
+                    if (!info.getId().equals(pending[0])) {
+                        return;
+                    }
+                    pending[0] = null;
+                    if (info.getState() == WorkInfo.State.SUCCEEDED) {
+                        listener.onSyncCompleted(true, info.getOutputData().getInt(OrderSyncWorker.KEY_SYNCED_COUNT, 0));
+                    } else {
+                        String error = info.getOutputData().getString(OrderSyncWorker.KEY_ERROR);
+                        listener.onSyncError(error != null ? error : "Sync did not complete");
+                    }
+                });
+    }
+
+    private static Constraints networkConstraints() {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+    }
+}
@@ -1,11 +1,14 @@
 package com.example.grocerystore.network;
 
 import android.content.Context;
+import android.database.SQLException;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import com.example.grocerystore.api.RetrofitClient;
 import com.example.grocerystore.database.DatabaseHelper;
 import com.example.grocerystore.models.Order;
 
@@ -13,25 +16,51 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
 
 public class OrderSyncService {
     private static final String TAG = "OrderSyncService";
     private static final String BASE_URL = "https://api.grocerystore.com"; // Replace with actual API URL
-    private static final String SYNC_ORDERS_ENDPOINT = "/api/orders/sync";
+    private static final String SYNC_ORDERS_BATCH_ENDPOINT = "/api/orders/sync-batch";
     private static final String UPDATE_ORDER_STATUS_ENDPOINT = "/api/orders/update-status";
+    private static final String ORDER_UPDATES_ENDPOINT = "/api/orders/updates";
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    // Upload passes per sync; later passes pick up orders placed mid-sync
+    private static final int MAX_UPLOAD_PASSES = 3;
+    // Status changes per pull request, and pages per sync before the rest waits for the next one
+    public static final int UPDATES_PAGE_SIZE = 200;
+    private static final int MAX_UPDATE_PAGES = 20;
+
+    // Status changes are written one at a time, in the order they were made
+    private static final ExecutorService STATUS_EXECUTOR = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "order-status"));
     
     private Context context;
     private DatabaseHelper databaseHelper;
-    private OnSyncCompleteListener syncListener;
+    private final OkHttpClient httpClient;
+    private final String baseUrl;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     public interface OnSyncCompleteListener {
         void onSyncStarted();
@@ -40,12 +69,23 @@ public class OrderSyncService {
     }
 
     public OrderSyncService(Context context) {
-        this.context = context;
-        this.databaseHelper = new DatabaseHelper(context);
+        this(context, DatabaseHelper.getInstance(context), BASE_URL);
     }
 
-    public void setSyncListener(OnSyncCompleteListener listener) {
-        this.syncListener = listener;
+    // Tests point this at a local server and a throwaway database
+    public OrderSyncService(Context context, DatabaseHelper databaseHelper, String baseUrl) {
+        this.context = context.getApplicationContext();
+        this.databaseHelper = databaseHelper;
+        this.baseUrl = baseUrl;
+        this.httpClient = RetrofitClient.getInstance().getHttpClient();
+    }
+
+    // How many orders go in one upload request
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        this.batchSize = batchSize;
     }
 
     public boolean isNetworkAvailable() {
@@ -55,129 +95,251 @@ public class OrderSyncService {
         return activeNetworkInfo != null && activeNetworkInfo.isConnected();
     }
 
+    /**
+     * Ask for a background sync. It runs through WorkManager once the network
+     * is up; see OrderSyncScheduler.observe for progress callbacks.
+     */
     public void syncOrders() {
-        if (!isNetworkAvailable()) {
-            if (syncListener != null) {
-                syncListener.onSyncError("No internet connection available");
-            }
-            return;
-        }
+        OrderSyncScheduler.requestSync(context);
+    }
 
-        new SyncOrdersTask().execute();
+    /**
+     * One full sync on the calling thread: uploads pending orders, going round
+     * again while passes make progress so orders placed mid-sync go too, then
+     * pulls status updates. Used by OrderSyncWorker.
+     */
+    public SyncResult syncNow() {
+        int syncedCount = 0;
+        int passes = 0;
+        SyncResult pass;
+        do {
+            pass = uploadPendingOrders();
+            syncedCount += pass.syncedCount;
+            passes++;
+        } while (pass.success && pass.syncedCount > 0 && passes < MAX_UPLOAD_PASSES);
+
+        // Fetch updated order statuses from server
+        int pulled = fetchOrderUpdatesFromServer();
+        if (pulled < 0 && pass.success) {
+            return new SyncResult(false, syncedCount, "Order updates could not be fetched");
+        }
+        return new SyncResult(pass.success, syncedCount, pass.message);
     }
 
-    private class SyncOrdersTask extends AsyncTask<Void, Void, SyncResult> {
-        @Override
-        protected void onPreExecute() {
-            if (syncListener != null) {
-                syncListener.onSyncStarted();
+    /**
+     * Uploads unsynced orders in chunks of the batch size, one POST with a JSON
+     * array per chunk. The orders the server accepts are marked synced in one
+     * transaction per chunk; rejected orders stay queued for the next sync.
+     * Stops at the first chunk whose request fails outright, since the rest
+     * would most likely fail too. Runs on the calling thread.
+     *
+     * Every order carries its orderKey, so a chunk that reached the server but
+     * whose reply was lost can be sent again without booking the orders twice.
+     * The lines of one cart checkout always travel in the same chunk.
+     */
+    public SyncResult uploadPendingOrders() {
+        List<Order> unsyncedOrders = databaseHelper.getUnsyncedOrders();
+        int syncedCount = 0;
+        int sent = 0;
+        for (List<Order> batch : batches(unsyncedOrders, batchSize)) {
+            List<Integer> acceptedIds = uploadBatch(batch);
+            if (acceptedIds == null) {
+                int left = unsyncedOrders.size() - sent;
+                Log.w(TAG, "Batch upload failed, " + left + " orders left for next sync");
+                return new SyncResult(false, syncedCount, "Upload failed with " + left + " orders left");
             }
+            syncedCount += databaseHelper.markOrdersAsSynced(acceptedIds);
+            sent += batch.size();
         }
+        return new SyncResult(true, syncedCount, "Sync completed successfully");
+    }
 
-        @Override
-        protected SyncResult doInBackground(Void... voids) {
-            try {
-                // Get unsynced orders from local database
-                List<Order> unsyncedOrders = databaseHelper.getUnsyncedOrders();
-                
-                if (unsyncedOrders.isEmpty()) {
-                    return new SyncResult(true, 0, "No orders to sync");
-                }
-
-                // Sync orders with server
-                int syncedCount = 0;
-                for (Order order : unsyncedOrders) {
-                    if (syncOrderToServer(order)) {
-                        databaseHelper.markOrderAsSynced(order.getId());
-                        syncedCount++;
-                    }
-                }
-
-                // Fetch updated order statuses from server
-                fetchOrderUpdatesFromServer();
-
-                return new SyncResult(true, syncedCount, "Sync completed successfully");
-                
-            } catch (Exception e) {
-                Log.e(TAG, "Error during sync", e);
-                return new SyncResult(false, 0, "Sync failed: " + e.getMessage());
+    /**
+     * Splits orders into chunks of up to batchSize, keeping the lines of a
+     * checkout together; a checkout larger than batchSize gets a chunk of
+     * its own.
+     */
+    static List<List<Order>> batches(List<Order> orders, int batchSize) {
+        Map<Object, List<Order>> groups = new LinkedHashMap<>();
+        for (Order order : orders) {
+            Object group = order.getCheckoutKey() != null ? order.getCheckoutKey() : order;
+            List<Order> lines = groups.get(group);
+            if (lines == null) {
+                lines = new ArrayList<>();
+                groups.put(group, lines);
             }
+            lines.add(order);
         }
 
-        @Override
-        protected void onPostExecute(SyncResult result) {
-            if (syncListener != null) {
-                if (result.success) {
-                    syncListener.onSyncCompleted(true, result.syncedCount);
-                } else {
-                    syncListener.onSyncError(result.message);
-                }
+        List<List<Order>> batches = new ArrayList<>();
+        List<Order> batch = new ArrayList<>();
+        for (List<Order> lines : groups.values()) {
+            if (!batch.isEmpty() && batch.size() + lines.size() > batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<>();
             }
+            batch.addAll(lines);
         }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
     }
 
-    private boolean syncOrderToServer(Order order) {
+    // Returns the ids the server accepted, or null if the request failed
+    private List<Integer> uploadBatch(List<Order> batch) {
         try {
-            // Convert order to JSON
-            JSONObject orderJson = orderToJson(order);
-            
-            // Send to server
-            URL url = new URL(BASE_URL + SYNC_ORDERS_ENDPOINT);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-
-            // Write JSON to request body
-            OutputStream os = conn.getOutputStream();
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-            writer.write(orderJson.toString());
-            writer.flush();
-            writer.close();
-            os.close();
-
-            // Check response
-            int responseCode = conn.getResponseCode();
-            return responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_CREATED;
+            JSONArray ordersJson = new JSONArray();
+            for (Order order : batch) {
+                ordersJson.put(orderToJson(order));
+            }
+            // Recorded before sending, so a reply that never comes still counts
+            databaseHelper.recordOrderSyncAttempt(batch);
+
+            Request request = new Request.Builder()
+                    .url(baseUrl + SYNC_ORDERS_BATCH_ENDPOINT)
+                    .header("Content-Encoding", "gzip")
+                    .post(gzipJson(ordersJson.toString()))
+                    .build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    Log.e(TAG, "Batch upload rejected with HTTP " + response.code());
+                    databaseHelper.recordOrderSyncFailure(batch, "HTTP " + response.code());
+                    return null;
+                }
+                ResponseBody body = response.body();
+                return parseAcceptedIds(body != null ? body.string() : null, batch);
+            }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error syncing order to server", e);
-            return false;
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error uploading order batch", e);
+            databaseHelper.recordOrderSyncFailure(batch, e.toString());
+            return null;
         }
     }
 
-    private void fetchOrderUpdatesFromServer() {
-        // This is a simplified version - in a real app, you'd implement proper API calls
-        // to fetch order status updates from the server and update local database
-        
-        try {
-            // Simulate server response with random status updates
-            simulateServerUpdates();
-        } catch (Exception e) {
-            Log.e(TAG, "Error fetching updates from server", e);
+    /**
+     * Compresses a JSON body up front. Order batches repeat the same keys and
+     * product names over and over, so they shrink several times over, and a
+     * buffered body is sent with a Content-Length rather than chunked.
+     */
+    static RequestBody gzipJson(String json) throws IOException {
+        Buffer compressed = new Buffer();
+        try (BufferedSink gzip = Okio.buffer(new GzipSink(compressed))) {
+            gzip.writeUtf8(json);
         }
+        return RequestBody.create(compressed.readByteString(), JSON);
     }
 
-    private void simulateServerUpdates() {
-        // Simulate some order status updates for demonstration
-        // In a real app, this would be actual API calls
-        
-        // For now, randomly update some pending orders to approved/delivered
-        // This is just for demonstration purposes
-        
-        Log.d(TAG, "Simulating server updates (demo mode)");
-        
-        // You would implement actual server communication here
-        // Example:
-        // 1. Send request to get order updates
-        // 2. Parse server response
-        // 3. Update local database with new statuses
-        // 4. Mark updated orders as synced
+    /**
+     * The server answers {"accepted": [orderKeys], "rejected": [{"orderKey": .., "error": ..}]},
+     * listing an order as accepted whether it was booked now or on an earlier
+     * attempt. A body without "accepted" (or no body at all) acknowledges the
+     * whole batch. Keys that weren't in the batch are ignored. Returns the
+     * local ids of the accepted orders.
+     */
+    static List<Integer> parseAcceptedIds(String responseBody, List<Order> batch) throws JSONException {
+        List<Integer> sentIds = new ArrayList<>(batch.size());
+        Map<String, Integer> idsByKey = new HashMap<>();
+        for (Order order : batch) {
+            sentIds.add(order.getId());
+            idsByKey.put(order.getOrderKey(), order.getId());
+        }
+        if (responseBody == null || responseBody.trim().isEmpty()) {
+            return sentIds;
+        }
+        JSONObject response = new JSONObject(responseBody);
+        JSONArray accepted = response.optJSONArray("accepted");
+        if (accepted == null) {
+            return sentIds;
+        }
+
+        List<Integer> acceptedIds = new ArrayList<>(accepted.length());
+        for (int i = 0; i < accepted.length(); i++) {
+            Integer orderId = idsByKey.get(accepted.getString(i));
+            if (orderId != null) {
+                acceptedIds.add(orderId);
+            }
+        }
+        JSONArray rejected = response.optJSONArray("rejected");
+        if (rejected != null) {
+            for (int i = 0; i < rejected.length(); i++) {
+                JSONObject rejection = rejected.getJSONObject(i);
+                Log.w(TAG, "Server rejected order " + rejection.optString("orderKey") + ": " + rejection.optString("error"));
+            }
+        }
+        return acceptedIds;
+    }
+
+    /**
+     * Pulls status changes made on the server since the stored cursor:
+     * GET /api/orders/updates?since=token answers
+     * {"updates": [{"orderKey": .., "status": ..}], "nextToken": .., "hasMore": ..}.
+     * Each page is applied together with its nextToken in one transaction, so
+     * an interrupted pull resumes after the last page that landed and a sync
+     * with nothing new costs one small request. A 410 means the server no
+     * longer knows the cursor; the pull then starts over from the beginning.
+     * Returns how many orders changed, or -1 if a request failed.
+     */
+    public int fetchOrderUpdatesFromServer() {
+        int applied = 0;
+        boolean restarted = false;
+        for (int page = 0; page < MAX_UPDATE_PAGES; page++) {
+            String token = databaseHelper.getSyncState(DatabaseHelper.SYNC_ORDER_UPDATES_TOKEN);
+            HttpUrl.Builder url = HttpUrl.get(baseUrl + ORDER_UPDATES_ENDPOINT).newBuilder()
+                    .addQueryParameter("limit", String.valueOf(UPDATES_PAGE_SIZE));
+            if (token != null) {
+                url.addQueryParameter("since", token);
+            }
+            Request request = new Request.Builder().url(url.build()).get().build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (response.code() == 410 && token != null && !restarted) {
+                    Log.w(TAG, "Order update cursor expired, pulling from the start");
+                    // An empty page with a null token just clears the cursor
+                    databaseHelper.applyOrderStatusUpdates(new LinkedHashMap<>(), null);
+                    restarted = true;
+                    continue;
+                }
+                ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    Log.e(TAG, "Order update pull failed with HTTP " + response.code());
+                    return -1;
+                }
+
+                JSONObject json = new JSONObject(body.string());
+                JSONArray updates = json.optJSONArray("updates");
+                // Later entries for the same order win
+                Map<String, String> statusByOrderKey = new LinkedHashMap<>();
+                if (updates != null) {
+                    for (int i = 0; i < updates.length(); i++) {
+                        JSONObject update = updates.getJSONObject(i);
+                        statusByOrderKey.put(update.getString("orderKey"), update.getString("status"));
+                    }
+                }
+                String nextToken = json.isNull("nextToken") ? token : json.getString("nextToken");
+                applied += databaseHelper.applyOrderStatusUpdates(statusByOrderKey, nextToken);
+                if (!json.optBoolean("hasMore", false)) {
+                    break;
+                }
+            } catch (IOException | JSONException e) {
+                Log.e(TAG, "Error fetching updates from server", e);
+                return -1;
+            } catch (SQLException e) {
+                Log.e(TAG, "Failed to apply order updates", e);
+                return -1;
+            }
+        }
+        Log.d(TAG, "Applied " + applied + " order status updates from server");
+        return applied;
     }
 
     private JSONObject orderToJson(Order order) throws JSONException {
         JSONObject json = new JSONObject();
         json.put("id", order.getId());
+        json.put("orderKey", order.getOrderKey());
+        if (order.getCheckoutKey() != null) {
+            json.put("checkoutKey", order.getCheckoutKey());
+        }
         json.put("userId", order.getUserId());
         json.put("productId", order.getProductId());
         json.put("productName", order.getProductName());
@@ -193,93 +355,70 @@ public class OrderSyncService {
 
     // Public method to update order status (with server sync)
     public void updateOrderStatus(int orderId, String newStatus, OnOrderUpdateListener listener) {
-        new UpdateOrderStatusTask(orderId, newStatus, listener).execute();
-    }
-
-    public interface OnOrderUpdateListener {
-        void onUpdateCompleted(boolean success, String message);
-    }
-
-    private class UpdateOrderStatusTask extends AsyncTask<Void, Void, Boolean> {
-        private int orderId;
-        private String newStatus;
-        private OnOrderUpdateListener listener;
-        private String errorMessage;
-
-        public UpdateOrderStatusTask(int orderId, String newStatus, OnOrderUpdateListener listener) {
-            this.orderId = orderId;
-            this.newStatus = newStatus;
-            this.listener = listener;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... voids) {
+        STATUS_EXECUTOR.execute(() -> {
+            boolean success;
+            String message;
             try {
                 // Update local database first
-                boolean localUpdateSuccess = databaseHelper.updateOrderStatus(orderId, newStatus);
-                
-                if (!localUpdateSuccess) {
-                    errorMessage = "Failed to update local database";
-                    return false;
-                }
-
-                // If online, try to sync with server
-                if (isNetworkAvailable()) {
-                    boolean serverSyncSuccess = syncStatusUpdateToServer(orderId, newStatus);
-                    // Even if server sync fails, local update succeeded, so return true
-                    if (!serverSyncSuccess) {
-                        Log.w(TAG, "Server sync failed but local update succeeded for order " + orderId);
+                if (databaseHelper.updateOrderStatus(orderId, newStatus)) {
+                    // The local update is what matters to the user. If the server
+                    // can't be told now, the order stays unsynced and the
+                    // scheduled sync uploads it later.
+                    if (!isNetworkAvailable() || !syncStatusUpdateToServer(orderId, newStatus)) {
+                        Log.w(TAG, "Server not updated yet for order " + orderId + ", scheduling sync");
+                        OrderSyncScheduler.requestSync(context);
                     }
-                    return true; // Local update succeeded, that's what matters for user experience
+                    success = true;
+                    message = "Order status updated successfully";
                 } else {
-                    // No internet, but local update succeeded
-                    return true;
+                    success = false;
+                    message = "Failed to update local database";
                 }
-                
             } catch (Exception e) {
                 Log.e(TAG, "Error updating order status", e);
-                errorMessage = e.getMessage();
-                return false;
+                success = false;
+                message = e.getMessage() != null ? e.getMessage() : "Update failed";
             }
-        }
-
-        @Override
-        protected void onPostExecute(Boolean success) {
             if (listener != null) {
-                if (success) {
-                    listener.onUpdateCompleted(true, "Order status updated successfully");
-                } else {
-                    listener.onUpdateCompleted(false, errorMessage != null ? errorMessage : "Update failed");
-                }
+                boolean updated = success;
+                String result = message;
+                mainHandler.post(() -> listener.onUpdateCompleted(updated, result));
             }
-        }
+        });
+    }
+
+    public interface OnOrderUpdateListener {
+        void onUpdateCompleted(boolean success, String message);
     }
 
     private boolean syncStatusUpdateToServer(int orderId, String newStatus) {
         try {
+            String orderKey = databaseHelper.getOrderKey(orderId);
+            // One key per local change: a retry of this push reuses it, while
+            // changing back and forth to the same status gets a fresh one
+            String statusChangeKey = databaseHelper.getStatusChangeKey(orderId);
+            if (statusChangeKey == null) {
+                return false;
+            }
             JSONObject updateData = new JSONObject();
             updateData.put("orderId", orderId);
+            updateData.put("orderKey", orderKey);
             updateData.put("status", newStatus);
             
-            URL url = new URL(BASE_URL + UPDATE_ORDER_STATUS_ENDPOINT);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("PUT");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-
-            OutputStream os = conn.getOutputStream();
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-            writer.write(updateData.toString());
-            writer.flush();
-            writer.close();
-            os.close();
-
-            int responseCode = conn.getResponseCode();
-            boolean success = responseCode == HttpURLConnection.HTTP_OK;
+            Request request = new Request.Builder()
+                    .url(baseUrl + UPDATE_ORDER_STATUS_ENDPOINT)
+                    .header("Content-Encoding", "gzip")
+                    .header("Idempotency-Key", statusChangeKey)
+                    .put(gzipJson(updateData.toString()))
+                    .build();
+            boolean success;
+            try (Response response = httpClient.newCall(request).execute()) {
+                success = response.code() == 200;
+            }
             
             if (success) {
-                // Mark as synced in local database
-                databaseHelper.markOrderAsSynced(orderId);
+                // A change made while this one was in flight stays unsynced
+                databaseHelper.markStatusChangeSynced(orderId, statusChangeKey);
             }
             
             return success;
@@ -290,10 +429,10 @@ public class OrderSyncService {
         }
     }
 
-    private static class SyncResult {
-        boolean success;
-        int syncedCount;
-        String message;
+    public static final class SyncResult {
+        public final boolean success;
+        public final int syncedCount;
+        public final String message;
 
         SyncResult(boolean success, int syncedCount, String message) {
             this.success = success;
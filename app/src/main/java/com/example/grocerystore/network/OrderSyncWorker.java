@@ -0,0 +1,47 @@
+package com.example.grocerystore.network;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.grocerystore.utils.DebugLog;
+
+/**
+ * Background order sync run by WorkManager. A failed upload is retried with
+ * the backoff set by OrderSyncScheduler; after MAX_ATTEMPTS the run gives up
+ * and the periodic sync picks the orders up later.
+ */
+public class OrderSyncWorker extends Worker {
+    private static final String TAG = "OrderSyncWorker";
+    public static final String KEY_SYNCED_COUNT = "synced_count";
+    public static final String KEY_ERROR = "error";
+    private static final int MAX_ATTEMPTS = 5;
+
+    public OrderSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        OrderSyncService.SyncResult result = new OrderSyncService(getApplicationContext()).syncNow();
+        Data output = new Data.Builder()
+                .putInt(KEY_SYNCED_COUNT, result.syncedCount)
+                .putString(KEY_ERROR, result.success ? null : result.message)
+                .build();
+        if (result.success) {
+            DebugLog.d(TAG, () -> "Synced " + result.syncedCount + " orders");
+            return Result.success(output);
+        }
+        if (getRunAttemptCount() + 1 < MAX_ATTEMPTS) {
+            Log.w(TAG, "Sync attempt " + (getRunAttemptCount() + 1) + " failed, retrying: " + result.message);
+            return Result.retry();
+        }
+        Log.e(TAG, "Sync failed after " + MAX_ATTEMPTS + " attempts: " + result.message);
+        return Result.failure(output);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.grocerystore.utils;
+
+import android.util.Log;
+
+import com.example.grocerystore.BuildConfig;
+
+/**
+ * Debug logging for hot paths such as per-row loops and view binding.
+ * ENABLED is a compile-time constant that is false in release builds, so
+ * d() does nothing there and the message is never built. In debug builds
+ * the message is built only when d() actually logs.
+ *
+ * A lambda that captures variables still allocates a small object at the
+ * call site. Where even that matters, wrap the call in
+ * {@code if (DebugLog.ENABLED)} and javac drops the whole block from release.
+ */
+public final class DebugLog {
+    public static final boolean ENABLED = BuildConfig.DEBUG_LOGGING;
+
+    public interface Message {
+        String get();
+    }
+
+    private DebugLog() {}
+
+    public static void d(String tag, Message message) {
+        if (ENABLED) {
+            Log.d(tag, message.get());
+        }
+    }
+}
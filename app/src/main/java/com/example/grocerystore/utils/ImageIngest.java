@@ -0,0 +1,264 @@
+package com.example.grocerystore.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Copies a picked photo into app storage as two WebP renditions: a small
+ * thumbnail for list rows and a larger detail image for the form and detail
+ * views. The source is decoded once, off the main thread, with inSampleSize
+ * so a multi-megapixel photo never lands in memory at full resolution.
+ */
+public final class ImageIngest {
+    private static final String TAG = "ImageIngest";
+    private static final String DIRECTORY = "offer_images";
+
+    // Longest edge, in pixels
+    public static final int THUMBNAIL_SIZE = 320;
+    public static final int DETAIL_SIZE = 1280;
+    private static final int THUMBNAIL_QUALITY = 75;
+    private static final int DETAIL_QUALITY = 85;
+
+    // One photo at a time keeps peak memory to a single decoded bitmap
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-ingest");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    /** Absolute paths of the two files written for one picked image. */
+    public static final class Renditions {
+        public final String thumbnailPath;
+        public final String detailPath;
+
+        Renditions(String thumbnailPath, String detailPath) {
+            this.thumbnailPath = thumbnailPath;
+            this.detailPath = detailPath;
+        }
+    }
+
+    public interface Callback {
+        /** Called on the main thread; renditions is null if the image couldn't be read. */
+        void onIngested(@Nullable Renditions renditions);
+    }
+
+    private final Context appContext;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public ImageIngest(Context context) {
+        appContext = context.getApplicationContext();
+    }
+
+    /** Ingest source in the background and post the result to the main thread. */
+    public void ingest(Uri source, Callback callback) {
+        EXECUTOR.execute(() -> {
+            Renditions renditions = null;
+            try {
+                renditions = ingestNow(source);
+            } catch (IOException | RuntimeException e) {
+                android.util.Log.e(TAG, "Failed to ingest " + source, e);
+            }
+            Renditions result = renditions;
+            mainHandler.post(() -> callback.onIngested(result));
+        });
+    }
+
+    /** Decode source and write both renditions. Blocks; never call on the main thread. */
+    @WorkerThread
+    public Renditions ingestNow(Uri source) throws IOException {
+        ContentResolver resolver = appContext.getContentResolver();
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(resolver, source)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Not an image: " + source);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, DETAIL_SIZE);
+        Bitmap decoded;
+        try (InputStream in = open(resolver, source)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Could not decode " + source);
+        }
+
+        Bitmap detail = null;
+        Bitmap thumbnail = null;
+        File directory = new File(appContext.getFilesDir(), DIRECTORY);
+        String name = UUID.randomUUID().toString();
+        File detailFile = new File(directory, name + "_detail.webp");
+        File thumbnailFile = new File(directory, name + "_thumb.webp");
+        try {
+            detail = orient(scaleToFit(decoded, DETAIL_SIZE), orientation(resolver, source));
+            thumbnail = scaleToFit(detail, THUMBNAIL_SIZE);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            write(detail, detailFile, DETAIL_QUALITY);
+            write(thumbnail, thumbnailFile, THUMBNAIL_QUALITY);
+        } catch (IOException | RuntimeException e) {
+            detailFile.delete();
+            thumbnailFile.delete();
+            throw e;
+        } finally {
+            recycle(decoded, detail, thumbnail);
+        }
+        DebugLog.d(TAG, () -> "Ingested " + source + " (" + bounds.outWidth + "x" + bounds.outHeight
+                + ", sample " + options.inSampleSize + ") as " + detailFile.getName());
+        return new Renditions(thumbnailFile.getAbsolutePath(), detailFile.getAbsolutePath());
+    }
+
+    /** Remove renditions that were written but never saved on an offer. */
+    public void discard(@Nullable Renditions renditions) {
+        if (renditions == null) {
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            new File(renditions.thumbnailPath).delete();
+            new File(renditions.detailPath).delete();
+        });
+    }
+
+    /**
+     * Deletes files an offer no longer uses. Only paths inside the renditions
+     * directory are touched, so product drawables and remote URLs pass
+     * through harmlessly. Runs on the calling thread.
+     */
+    @WorkerThread
+    public static void deleteRenditions(Context context, Collection<String> paths) {
+        File directory = new File(context.getFilesDir(), DIRECTORY);
+        for (String path : paths) {
+            if (path == null) {
+                continue;
+            }
+            File file = new File(path);
+            if (directory.equals(file.getParentFile()) && file.delete()) {
+                DebugLog.d(TAG, () -> "Deleted unused rendition " + file.getName());
+            }
+        }
+    }
+
+    // Largest power of two that still leaves the longest edge at least target
+    static int sampleSize(int width, int height, int target) {
+        int longest = Math.max(width, height);
+        int sample = 1;
+        while (longest / (sample * 2) >= target) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    private static InputStream open(ContentResolver resolver, Uri source) throws IOException {
+        InputStream in = resolver.openInputStream(source);
+        if (in == null) {
+            throw new IOException("Could not open " + source);
+        }
+        return in;
+    }
+
+    private static int orientation(ContentResolver resolver, Uri source) {
+        try (InputStream in = open(resolver, source)) {
+            return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            // No EXIF (e.g. PNG); draw it as stored
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static Bitmap scaleToFit(Bitmap bitmap, int maxEdge) {
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longest <= maxEdge) {
+            return bitmap;
+        }
+        float scale = (float) maxEdge / longest;
+        return Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+    }
+
+    // Recycles bitmap when it returns a new one, so a scaled intermediate
+    // doesn't wait for GC; ingestNow's final recycle skips recycled bitmaps
+    private static Bitmap orient(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            default:
+                return bitmap;
+        }
+        Bitmap oriented = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (oriented != bitmap) {
+            bitmap.recycle();
+        }
+        return oriented;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void write(Bitmap bitmap, File file, int quality) throws IOException {
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (!bitmap.compress(format, quality, out)) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+    // The scaled copies may be the same object as their source
+    private static void recycle(Bitmap... bitmaps) {
+        for (int i = 0; i < bitmaps.length; i++) {
+            Bitmap bitmap = bitmaps[i];
+            if (bitmap == null || bitmap.isRecycled()) {
+                continue;
+            }
+            boolean seen = false;
+            for (int j = 0; j < i; j++) {
+                seen |= bitmaps[j] == bitmap;
+            }
+            if (!seen) {
+                bitmap.recycle();
+            }
+        }
+    }
+}
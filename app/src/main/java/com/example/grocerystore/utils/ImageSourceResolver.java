@@ -0,0 +1,127 @@
+package com.example.grocerystore.utils;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+
+import java.io.File;
+
+/**
+ * Turns the imageUrl strings stored on products and offers into something
+ * Glide can load, and remembers the answer. Resource names are looked up
+ * with getIdentifier once per distinct string instead of on every bind.
+ *
+ * <ul>
+ *   <li>{@code drawable://name} and bare names: the drawable's resource id</li>
+ *   <li>{@code content://}, {@code file://}, {@code android.resource://}: a Uri</li>
+ *   <li>{@code http(s)://}: the URL itself</li>
+ *   <li>absolute paths: a File</li>
+ * </ul>
+ *
+ * Strings that name nothing (blank, or a drawable that doesn't exist) resolve
+ * to null so callers can show their own fallback; misses are cached too.
+ */
+public final class ImageSourceResolver {
+    private static final String DRAWABLE_PREFIX = "drawable://";
+    // Well above the number of distinct images in the catalog
+    private static final int MAX_ENTRIES = 256;
+    // LruCache can't hold null
+    private static final Object MISSING = new Object();
+
+    private static volatile ImageSourceResolver instance;
+
+    private final Context appContext;
+    private final LruCache<String, Object> cache = new LruCache<>(MAX_ENTRIES);
+
+    private ImageSourceResolver(Context context) {
+        appContext = context.getApplicationContext();
+    }
+
+    public static ImageSourceResolver getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ImageSourceResolver.class) {
+                if (instance == null) {
+                    instance = new ImageSourceResolver(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * The Glide model for imageUrl: an Integer resource id, Uri, File or URL
+     * string, or null if it doesn't name an image.
+     */
+    @Nullable
+    public Object resolve(@Nullable String imageUrl) {
+        if (imageUrl == null) {
+            return null;
+        }
+        String key = imageUrl.trim();
+        if (key.isEmpty()) {
+            return null;
+        }
+        Object source = cache.get(key);
+        if (source == null) {
+            // Two threads may both resolve a new key; the answer is the same
+            source = lookup(key);
+            cache.put(key, source != null ? source : MISSING);
+        }
+        return source != MISSING ? source : null;
+    }
+
+    /**
+     * Starts a Glide request for imageUrl, or returns null if it doesn't name
+     * an image. Resource ids go through load(Integer) so Glide keys them by
+     * app version rather than caching them on disk.
+     */
+    @Nullable
+    public RequestBuilder<Drawable> load(RequestManager glide, @Nullable String imageUrl) {
+        Object source = resolve(imageUrl);
+        if (source == null) {
+            return null;
+        }
+        if (source instanceof Integer) {
+            return glide.load((Integer) source);
+        }
+        return glide.load(source);
+    }
+
+    /** Number of distinct strings currently remembered. */
+    public int size() {
+        return cache.size();
+    }
+
+    private Object lookup(String imageUrl) {
+        if (imageUrl.startsWith(DRAWABLE_PREFIX)) {
+            return drawableId(imageUrl.substring(DRAWABLE_PREFIX.length()));
+        }
+        if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
+            return imageUrl;
+        }
+        if (imageUrl.startsWith("content://") || imageUrl.startsWith("file://")
+                || imageUrl.startsWith("android.resource://")) {
+            return Uri.parse(imageUrl);
+        }
+        if (imageUrl.startsWith("/")) {
+            return new File(imageUrl);
+        }
+        // Older rows store just the drawable name
+        return drawableId(imageUrl);
+    }
+
+    private Integer drawableId(String name) {
+        int id = appContext.getResources().getIdentifier(name, "drawable", appContext.getPackageName());
+        if (id == 0) {
+            android.util.Log.w("ImageSourceResolver", "No drawable named " + name);
+            return null;
+        }
+        return id;
+    }
+}
@@ -11,7 +11,7 @@ public class ProductDataPopulator {
     private DatabaseHelper databaseHelper;
     
     public ProductDataPopulator(Context context) {
-        this.databaseHelper = new DatabaseHelper(context);
+        this.databaseHelper = DatabaseHelper.getInstance(context);
     }
     
     public void populateRealProducts() {
@@ -21,11 +21,8 @@ public class ProductDataPopulator {
             return; // Products already exist
         }
         
-        List<Product> realProducts = createRealProductList();
-        
-        for (Product product : realProducts) {
-            databaseHelper.addProduct(product);
-        }
+        // One transaction for the whole list instead of one per product
+        databaseHelper.upsertProducts(createRealProductList());
     }
     
     private List<Product> createRealProductList() {
@@ -0,0 +1,93 @@
+package com.example.grocerystore.utils;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.grocerystore.database.GroceryRepository;
+
+/**
+ * Debounces search input and makes sure only the newest query's results reach
+ * the listener. Starting a new query cancels the one in flight; a result that
+ * still arrives late is dropped and counted. Use from the main thread only.
+ */
+public class SearchPipeline<T> {
+    private static final String TAG = "SearchPipeline";
+    public static final long DEFAULT_DEBOUNCE_MS = 250L;
+
+    public interface Search<T> {
+        void run(String query, CancellationSignal cancellationSignal, GroceryRepository.Callback<T> callback);
+    }
+
+    public interface Listener<T> {
+        void onResults(String query, T results);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Search<T> search;
+    private final Listener<T> listener;
+    private final long debounceMs;
+
+    private Runnable pendingSearch;
+    private CancellationSignal inFlight;
+    private int generation;
+    private int staleDropCount;
+
+    public SearchPipeline(Search<T> search, Listener<T> listener) {
+        this(search, listener, DEFAULT_DEBOUNCE_MS);
+    }
+
+    public SearchPipeline(Search<T> search, Listener<T> listener, long debounceMs) {
+        this.search = search;
+        this.listener = listener;
+        this.debounceMs = debounceMs;
+    }
+
+    /** Schedule a search once input has been quiet for the debounce window. */
+    public void submit(String query) {
+        cancel();
+        final int requestGeneration = generation;
+        pendingSearch = () -> start(query, requestGeneration);
+        handler.postDelayed(pendingSearch, debounceMs);
+    }
+
+    /** Run a search right away, e.g. when a filter changes rather than typed text. */
+    public void submitNow(String query) {
+        cancel();
+        start(query, generation);
+    }
+
+    /** Drop any pending or in-flight search; its results will never be delivered. */
+    public void cancel() {
+        generation++;
+        if (pendingSearch != null) {
+            handler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+    }
+
+    /** Number of searches that started but whose results were discarded as stale. */
+    public int getStaleDropCount() {
+        return staleDropCount;
+    }
+
+    private void start(String query, int requestGeneration) {
+        pendingSearch = null;
+        CancellationSignal signal = new CancellationSignal();
+        inFlight = signal;
+
+        search.run(query, signal, results -> {
+            if (requestGeneration != generation || signal.isCanceled()) {
+                staleDropCount++;
+                DebugLog.d(TAG, () -> "Dropped stale results for \"" + query + "\" (" + staleDropCount + " so far)");
+                return;
+            }
+            inFlight = null;
+            listener.onResults(query, results);
+        });
+    }
+}
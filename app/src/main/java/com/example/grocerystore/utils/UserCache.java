@@ -0,0 +1,119 @@
+package com.example.grocerystore.utils;
+
+import com.example.grocerystore.model.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Process-wide copy of the users table, indexed by lowercased email and by id.
+ * UserManager fills it once and updates it after every successful write, so
+ * every UserManager instance sees the same users without querying again.
+ * Users go in and come out as copies; callers can't change a cached entry
+ * except through UserManager.
+ */
+final class UserCache {
+    private static final UserCache INSTANCE = new UserCache();
+
+    private final Map<String, User> byEmail = new HashMap<>();
+    // Kept in id order, which is registration order
+    private final Map<Integer, User> byId = new LinkedHashMap<>();
+    private boolean loaded;
+
+    private UserCache() {}
+
+    static UserCache getInstance() {
+        return INSTANCE;
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized void load(List<User> users) {
+        byEmail.clear();
+        byId.clear();
+        for (User user : users) {
+            store(copyOf(user));
+        }
+        loaded = true;
+    }
+
+    synchronized User getByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        User user = byEmail.get(key(email));
+        return user != null ? copyOf(user) : null;
+    }
+
+    synchronized User getById(int id) {
+        User user = byId.get(id);
+        return user != null ? copyOf(user) : null;
+    }
+
+    synchronized List<User> getAll() {
+        List<User> users = new ArrayList<>(byId.size());
+        for (User user : byId.values()) {
+            users.add(copyOf(user));
+        }
+        return users;
+    }
+
+    synchronized int size() {
+        return byId.size();
+    }
+
+    // Adds or replaces the user with the same email
+    synchronized void put(User user) {
+        User existing = byEmail.get(key(user.getEmail()));
+        if (existing != null) {
+            byId.remove(existing.getId());
+        }
+        store(copyOf(user));
+    }
+
+    // Replaces the user with the same email but keeps its id, as the table does
+    synchronized void update(User user) {
+        User existing = byEmail.get(key(user.getEmail()));
+        User copy = copyOf(user);
+        if (existing != null) {
+            copy.setId(existing.getId());
+        }
+        store(copy);
+    }
+
+    synchronized void removeByEmail(String email) {
+        User removed = byEmail.remove(key(email));
+        if (removed != null) {
+            byId.remove(removed.getId());
+        }
+    }
+
+    synchronized void removeById(int id) {
+        User removed = byId.remove(id);
+        if (removed != null) {
+            byEmail.remove(key(removed.getEmail()));
+        }
+    }
+
+    private void store(User user) {
+        byEmail.put(key(user.getEmail()), user);
+        byId.put(user.getId(), user);
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User(user.getEmail(), user.getFirstName(), user.getLastName(), user.getPassword(),
+                user.getGender(), user.getCity(), user.getPhoneNumber(), user.getRole());
+        copy.setId(user.getId());
+        return copy;
+    }
+}
@@ -2,26 +2,83 @@ package com.example.grocerystore.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.database.SQLException;
+import com.example.grocerystore.database.DatabaseHelper;
 import com.example.grocerystore.model.User;
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Registered users, stored in the users table (unique, case-insensitive email
+ * index). Older installs kept them as one JSON list in SharedPreferences; that
+ * list is copied into the table the first time a UserManager is created.
+ * Reads are served from a process-wide {@link UserCache} shared by every
+ * instance; writes go to the table first and then update the cache.
+ */
 public class UserManager {
     private static final String PREF_NAME = "UserDatabase";
     private static final String KEY_USERS = "users";
 
+    // Migration and the default admin only need checking once per process
+    private static boolean initialized;
+
     private SharedPreferences prefs;
-    private Gson gson;
+    private DatabaseHelper databaseHelper;
+    private final UserCache cache = UserCache.getInstance();
 
     public UserManager(Context context) {
         prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+        databaseHelper = DatabaseHelper.getInstance(context);
         
-        // Initialize default admin user if not exists
-        initializeDefaultAdmin();
+        synchronized (UserManager.class) {
+            if (!initialized) {
+                migrateLegacyUsers();
+                
+                // Initialize default admin user if not exists
+                initializeDefaultAdmin();
+                initialized = true;
+            }
+        }
+    }
+
+    // Fills the shared cache from the users table the first time it's needed
+    private UserCache users() {
+        synchronized (cache) {
+            if (!cache.isLoaded()) {
+                cache.load(databaseHelper.getAllUsers());
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Move users from the old SharedPreferences JSON list into the users table.
+     * Ids and already-encrypted passwords are kept; the list is removed once copied.
+     */
+    private void migrateLegacyUsers() {
+        String usersJson = prefs.getString(KEY_USERS, null);
+        if (usersJson == null) {
+            return;
+        }
+        try {
+            Type listType = new TypeToken<List<User>>(){}.getType();
+            List<User> users = new Gson().fromJson(usersJson, listType);
+            if (users != null && !users.isEmpty()) {
+                int added = databaseHelper.addUsers(users);
+                android.util.Log.d("UserManager", "Migrated " + added + " of " + users.size() + " users to the users table");
+            }
+        } catch (JsonSyntaxException e) {
+            android.util.Log.e("UserManager", "Unreadable legacy user list, discarding it", e);
+        } catch (SQLException e) {
+            // Keep the list so the next start can retry
+            android.util.Log.e("UserManager", "Failed to migrate users", e);
+            return;
+        }
+        prefs.edit().remove(KEY_USERS).apply();
     }
 
     /**
@@ -47,30 +104,20 @@ public class UserManager {
      * Register a new user
      */
     public boolean registerUser(User user) {
-        List<User> users = getAllUsers();
+        // Encrypt password before storing
+        String password = user.getPassword();
+        user.setPassword(PasswordEncryption.encryptPassword(password));
         
-        // Check if email already exists
-        for (User existingUser : users) {
-            if (existingUser.getEmail().equalsIgnoreCase(user.getEmail())) {
+        // The unique email index rejects duplicates
+        synchronized (cache) {
+            long id = databaseHelper.addUser(user);
+            if (id == -1) {
+                user.setPassword(password);
                 return false; // Email already exists
             }
+            user.setId((int) id);
+            users().put(user);
         }
-        
-        // Assign unique ID to new user
-        int nextId = 1;
-        for (User existingUser : users) {
-            if (existingUser.getId() >= nextId) {
-                nextId = existingUser.getId() + 1;
-            }
-        }
-        user.setId(nextId);
-        
-        // Encrypt password before storing
-        user.setPassword(PasswordEncryption.encryptPassword(user.getPassword()));
-        
-        // Add new user
-        users.add(user);
-        saveUsers(users);
         return true;
     }
 
@@ -78,31 +125,19 @@ public class UserManager {
      * Authenticate user login
      */
     public boolean authenticateUser(String email, String password) {
-        List<User> users = getAllUsers();
-        
-        for (User user : users) {
-            if (user.getEmail().equalsIgnoreCase(email)) {
-                String decryptedPassword = PasswordEncryption.decryptPassword(user.getPassword());
-                return decryptedPassword.equals(password);
-            }
+        User user = getUserByEmail(email);
+        if (user == null) {
+            return false; // User not found
         }
-        
-        return false; // User not found or password incorrect
+        String decryptedPassword = PasswordEncryption.decryptPassword(user.getPassword());
+        return decryptedPassword.equals(password);
     }
 
     /**
      * Get user by email
      */
     public User getUserByEmail(String email) {
-        List<User> users = getAllUsers();
-        
-        for (User user : users) {
-            if (user.getEmail().equalsIgnoreCase(email)) {
-                return user;
-            }
-        }
-        
-        return null; // User not found
+        return users().getByEmail(email);
     }
 
     /**
@@ -116,41 +151,34 @@ public class UserManager {
      * Update an existing user
      */
     public boolean updateUser(User updatedUser) {
-        List<User> users = getAllUsers();
-        
-        for (int i = 0; i < users.size(); i++) {
-            User user = users.get(i);
-            if (user.getEmail().equalsIgnoreCase(updatedUser.getEmail())) {
-                // Update the user at this position
-                users.set(i, updatedUser);
-                saveUsers(users);
-                return true;
+        synchronized (cache) {
+            if (!databaseHelper.updateUser(updatedUser)) {
+                return false; // User not found
             }
+            users().update(updatedUser);
+            return true;
         }
-        
-        return false; // User not found
-    }
-
-    /**
-     * Save users list to SharedPreferences
-     */
-    private void saveUsers(List<User> users) {
-        String usersJson = gson.toJson(users);
-        prefs.edit().putString(KEY_USERS, usersJson).apply();
     }
 
     /**
      * Clear all users (for testing purposes)
      */
     public void clearAllUsers() {
-        prefs.edit().remove(KEY_USERS).apply();
+        synchronized (cache) {
+            databaseHelper.deleteAllUsers();
+            cache.load(new ArrayList<>());
+        }
+        synchronized (UserManager.class) {
+            // Recreate the default admin next time, as before
+            initialized = false;
+        }
     }
 
     /**
      * Get total number of registered users
      */
     public int getUserCount() {
-        return getAllUsers().size();
+        return users().size();
     }
 
     /**
@@ -164,53 +192,45 @@ public class UserManager {
      * Get all users - public method for admin access
      */
     public List<User> getAllUsers() {
-        String usersJson = prefs.getString(KEY_USERS, "[]");
-        Type listType = new TypeToken<List<User>>(){}.getType();
-        List<User> users = gson.fromJson(usersJson, listType);
-        return users != null ? users : new ArrayList<>();
+        return users().getAll();
     }
 
     /**
      * Delete a user by ID (admin function)
      */
     public boolean deleteUser(int userId) {
-        List<User> users = getAllUsers();
-        
-        for (int i = 0; i < users.size(); i++) {
-            User user = users.get(i);
-            if (user.getId() == userId) {
-                // Don't allow deleting admin users
-                if (user.isAdmin()) {
-                    return false;
-                }
-                users.remove(i);
-                saveUsers(users);
-                return true;
+        synchronized (cache) {
+            User user = users().getById(userId);
+            if (user == null) {
+                return false; // User not found
+            }
+            // Don't allow deleting admin users
+            if (user.isAdmin()) {
+                return false;
             }
+            if (!databaseHelper.deleteUser(userId)) {
+                return false;
+            }
+            cache.removeById(userId);
+            return true;
         }
-        
-        return false; // User not found
     }
 
     /**
      * Delete a user by email (admin function)
      */
     public boolean deleteUser(String email) {
-        List<User> users = getAllUsers();
-        
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).getEmail().equalsIgnoreCase(email)) {
-                // Don't allow deleting the main admin
-                if ("admin@admin.com".equals(email)) {
-                    return false;
-                }
-                users.remove(i);
-                saveUsers(users);
-                return true;
+        // Don't allow deleting the main admin
+        if ("admin@admin.com".equals(email)) {
+            return false;
+        }
+        synchronized (cache) {
+            if (!databaseHelper.deleteUserByEmail(email)) {
+                return false; // User not found
             }
+            cache.removeByEmail(email);
+            return true;
         }
-        
-        return false; // User not found
     }
 
     /**
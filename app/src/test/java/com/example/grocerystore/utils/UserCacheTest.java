@@ -0,0 +1,67 @@
+package com.example.grocerystore.utils;
+
+import com.example.grocerystore.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class UserCacheTest {
+    private UserCache cache;
+
+    @Before
+    public void setUp() {
+        cache = UserCache.getInstance();
+        cache.load(Arrays.asList(user(1, "admin@admin.com", "Admin"), user(2, "Jane@Example.com", "Jane")));
+    }
+
+    @Test
+    public void lookupsIgnoreEmailCase() {
+        assertEquals("Jane", cache.getByEmail("jane@example.COM").getFirstName());
+        assertEquals("Jane", cache.getById(2).getFirstName());
+        assertNull(cache.getByEmail("nobody@example.com"));
+    }
+
+    @Test
+    public void returnedUsersAreCopies() {
+        cache.getByEmail("jane@example.com").setFirstName("Changed");
+        assertEquals("Jane", cache.getByEmail("jane@example.com").getFirstName());
+    }
+
+    @Test
+    public void updateKeepsIdAndReplacesFields() {
+        User edited = user(0, "JANE@example.com", "Janet");
+        cache.update(edited);
+
+        User stored = cache.getById(2);
+        assertEquals("Janet", stored.getFirstName());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void removeClearsBothIndexes() {
+        cache.removeByEmail("jane@EXAMPLE.com");
+        assertNull(cache.getById(2));
+        cache.removeById(1);
+        assertNull(cache.getByEmail("admin@admin.com"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void getAllKeepsRegistrationOrder() {
+        cache.put(user(3, "sam@example.com", "Sam"));
+        assertEquals(Arrays.asList("Admin", "Jane", "Sam"), Arrays.asList(
+                cache.getAll().get(0).getFirstName(),
+                cache.getAll().get(1).getFirstName(),
+                cache.getAll().get(2).getFirstName()));
+    }
+
+    private static User user(int id, String email, String firstName) {
+        User user = new User(email, firstName, "Tester", "secret", "Female", "Ramallah", "+970599000000");
+        user.setId(id);
+        return user;
+    }
+}